@@ -41,7 +41,10 @@ dependencies {
     implementation(Deps.springBoot.security)
     runtimeOnly("org.postgresql:postgresql:42.7.3")
     runtimeOnly(Deps.grpc.api)
-    runtimeOnly(Deps.grpc.netty)
+    implementation(Deps.grpc.netty)
+    implementation(Deps.netty.epoll)
+    runtimeOnly("${Deps.netty.epoll}:linux-x86_64")
+    runtimeOnly("${Deps.netty.epoll}:linux-aarch_64")
 
     testImplementation(Deps.springBoot.test)
 }
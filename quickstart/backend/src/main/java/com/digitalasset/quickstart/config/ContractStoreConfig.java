@@ -0,0 +1,56 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "contract-store")
+public class ContractStoreConfig {
+
+    // Serve reads of the app's templates from memory instead of PQS
+    private boolean enabled = false;
+    // Parties whose contracts are mirrored; the store follows the default participant only, so they must be hosted there
+    private List<String> parties = new ArrayList<>();
+    // How long reads may still be served from memory while the update stream is disconnected
+    private long maxStalenessSeconds = 10;
+    private long reconnectDelayMillis = 1_000;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getParties() {
+        return parties;
+    }
+
+    public void setParties(List<String> parties) {
+        this.parties = parties;
+    }
+
+    public long getMaxStalenessSeconds() {
+        return maxStalenessSeconds;
+    }
+
+    public void setMaxStalenessSeconds(long maxStalenessSeconds) {
+        this.maxStalenessSeconds = maxStalenessSeconds;
+    }
+
+    public long getReconnectDelayMillis() {
+        return reconnectDelayMillis;
+    }
+
+    public void setReconnectDelayMillis(long reconnectDelayMillis) {
+        this.reconnectDelayMillis = reconnectDelayMillis;
+    }
+}
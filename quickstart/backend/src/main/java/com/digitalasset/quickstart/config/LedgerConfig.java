@@ -6,12 +6,107 @@ package com.digitalasset.quickstart.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Component
 @ConfigurationProperties(prefix = "ledger")
 public class LedgerConfig {
 
+    /**
+     * How commands whose result is needed are submitted: one blocking {@code submitAndWait} call per command, or
+     * an asynchronous submit whose outcome is picked up from a per-party completion stream.
+     */
+    public enum SubmissionMode {
+        SUBMIT_AND_WAIT,
+        COMPLETION_STREAM
+    }
+
+    /**
+     * A further participant node hosting some of the app's parties.
+     */
+    public static class Participant {
+        private String host;
+        private int port = 6865;
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+    }
+
+    // The default participant; users, rights and parties not routed elsewhere are served by it
     private String host = "localhost";
     private int port = 6865;
+    // Further participants by name; each is connected with the transport settings below
+    private Map<String, Participant> participants = new LinkedHashMap<>();
+    // Party to participant name, taking precedence over the parties the participants report as local;
+    // party ids contain colons, so keys must be bracketed, e.g. "[alice::1220...]": p2
+    private Map<String, String> partyRoutes = new LinkedHashMap<>();
+    // How often the parties hosted by each participant are re-read; 0 reads them once at startup
+    private long routingRefreshSeconds = 60;
+    // Startup waits this long for the first read of the hosted parties before routing commands without it
+    private long routingInitialTimeoutSeconds = 10;
+    // Transport: number of pooled connections, keepalive, message and window sizes, compression and TLS
+    private int channelCount = 1;
+    private long keepAliveTimeSeconds = 30;
+    private long keepAliveTimeoutSeconds = 10;
+    private boolean keepAliveWithoutCalls = false;
+    private int maxInboundMessageSizeBytes = 16 * 1024 * 1024;
+    private int flowControlWindowBytes = 1024 * 1024;
+    // gRPC compressor name for outgoing messages, e.g. "gzip"; empty disables compression
+    private String compression = "";
+    private boolean nativeTransport = true;
+    private boolean tlsEnabled = false;
+    // PEM bundle of trusted CAs; the JVM trust store is used when empty
+    private String tlsTrustCertCollectionFile = "";
+    // Coalesce exercises of the same party on distinct contracts into multi-command transactions; off by default.
+    // Exercises submitted under a caller's command id are never coalesced, so the ledger can deduplicate their retries
+    private boolean batchEnabled = false;
+    private long batchWindowMillis = 5;
+    private int batchMaxSize = 32;
+    private SubmissionMode submissionMode = SubmissionMode.SUBMIT_AND_WAIT;
+    // How long a command submitted in COMPLETION_STREAM mode may wait for its completion
+    private long completionTimeoutSeconds = 60;
+    // A party's completion stream is closed once it had no command to wait for during this long
+    private long completionStreamIdleSeconds = 300;
+    // Retries of transient submission failures (contention, unavailability); 1 attempt disables retrying
+    private int retryMaxAttempts = 5;
+    private long retryInitialBackoffMillis = 100;
+    private long retryMaxBackoffMillis = 2_000;
+    private long retryMaxElapsedMillis = 10_000;
+    // User rights and user info are cached for this long; grantRights reads the rights to skip parties already
+    // granted and invalidates both
+    private long userCacheTtlSeconds = 300;
+    private long userCacheMaxEntries = 1_000;
+    // Bulk rights grants send the rights of up to this many parties per request, with this many requests in flight
+    private int grantRightsBatchSize = 50;
+    private int grantRightsParallelism = 4;
+    // Deduplication period set on every command; command results are remembered for as long
+    private long deduplicationPeriodSeconds = 600;
+    private long idempotencyMaxEntries = 10_000;
+    // Adaptive bound on concurrent submissions; calls beyond it are rejected with 503
+    private int concurrencyLimitInitial = 20;
+    private int concurrencyLimitMin = 4;
+    private int concurrencyLimitMax = 200;
+    // Calls wait at most this long for a free slot, or until their request deadline, before they are rejected
+    private long concurrencyQueueTimeoutMillis = 5_000;
+    // Contracts created or archived by the backend's own commands stay visible to reads for this long
+    private long writeThroughTtlSeconds = 30;
+    private long writeThroughMaxEntries = 10_000;
+    // Upper bound on distinct parties kept by the party intern table of the contract store and write-through cache
+    private int partyInternMaxEntries = 100_000;
 
     // Getters and Setters
     public String getHost() {
@@ -29,5 +124,300 @@ public class LedgerConfig {
     public void setPort(int port) {
         this.port = port;
     }
-}
 
+    public boolean isBatchEnabled() {
+        return batchEnabled;
+    }
+
+    public void setBatchEnabled(boolean batchEnabled) {
+        this.batchEnabled = batchEnabled;
+    }
+
+    public long getBatchWindowMillis() {
+        return batchWindowMillis;
+    }
+
+    public void setBatchWindowMillis(long batchWindowMillis) {
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public SubmissionMode getSubmissionMode() {
+        return submissionMode;
+    }
+
+    public void setSubmissionMode(SubmissionMode submissionMode) {
+        this.submissionMode = submissionMode;
+    }
+
+    public long getCompletionTimeoutSeconds() {
+        return completionTimeoutSeconds;
+    }
+
+    public void setCompletionTimeoutSeconds(long completionTimeoutSeconds) {
+        this.completionTimeoutSeconds = completionTimeoutSeconds;
+    }
+
+    public long getCompletionStreamIdleSeconds() {
+        return completionStreamIdleSeconds;
+    }
+
+    public void setCompletionStreamIdleSeconds(long completionStreamIdleSeconds) {
+        this.completionStreamIdleSeconds = completionStreamIdleSeconds;
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
+
+    public long getRetryInitialBackoffMillis() {
+        return retryInitialBackoffMillis;
+    }
+
+    public void setRetryInitialBackoffMillis(long retryInitialBackoffMillis) {
+        this.retryInitialBackoffMillis = retryInitialBackoffMillis;
+    }
+
+    public long getRetryMaxBackoffMillis() {
+        return retryMaxBackoffMillis;
+    }
+
+    public void setRetryMaxBackoffMillis(long retryMaxBackoffMillis) {
+        this.retryMaxBackoffMillis = retryMaxBackoffMillis;
+    }
+
+    public long getRetryMaxElapsedMillis() {
+        return retryMaxElapsedMillis;
+    }
+
+    public void setRetryMaxElapsedMillis(long retryMaxElapsedMillis) {
+        this.retryMaxElapsedMillis = retryMaxElapsedMillis;
+    }
+
+    public long getUserCacheTtlSeconds() {
+        return userCacheTtlSeconds;
+    }
+
+    public void setUserCacheTtlSeconds(long userCacheTtlSeconds) {
+        this.userCacheTtlSeconds = userCacheTtlSeconds;
+    }
+
+    public long getUserCacheMaxEntries() {
+        return userCacheMaxEntries;
+    }
+
+    public void setUserCacheMaxEntries(long userCacheMaxEntries) {
+        this.userCacheMaxEntries = userCacheMaxEntries;
+    }
+
+    public int getGrantRightsBatchSize() {
+        return grantRightsBatchSize;
+    }
+
+    public void setGrantRightsBatchSize(int grantRightsBatchSize) {
+        this.grantRightsBatchSize = grantRightsBatchSize;
+    }
+
+    public int getGrantRightsParallelism() {
+        return grantRightsParallelism;
+    }
+
+    public void setGrantRightsParallelism(int grantRightsParallelism) {
+        this.grantRightsParallelism = grantRightsParallelism;
+    }
+
+    public long getDeduplicationPeriodSeconds() {
+        return deduplicationPeriodSeconds;
+    }
+
+    public void setDeduplicationPeriodSeconds(long deduplicationPeriodSeconds) {
+        this.deduplicationPeriodSeconds = deduplicationPeriodSeconds;
+    }
+
+    public long getIdempotencyMaxEntries() {
+        return idempotencyMaxEntries;
+    }
+
+    public void setIdempotencyMaxEntries(long idempotencyMaxEntries) {
+        this.idempotencyMaxEntries = idempotencyMaxEntries;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public void setChannelCount(int channelCount) {
+        this.channelCount = channelCount;
+    }
+
+    public long getKeepAliveTimeSeconds() {
+        return keepAliveTimeSeconds;
+    }
+
+    public void setKeepAliveTimeSeconds(long keepAliveTimeSeconds) {
+        this.keepAliveTimeSeconds = keepAliveTimeSeconds;
+    }
+
+    public long getKeepAliveTimeoutSeconds() {
+        return keepAliveTimeoutSeconds;
+    }
+
+    public void setKeepAliveTimeoutSeconds(long keepAliveTimeoutSeconds) {
+        this.keepAliveTimeoutSeconds = keepAliveTimeoutSeconds;
+    }
+
+    public boolean isKeepAliveWithoutCalls() {
+        return keepAliveWithoutCalls;
+    }
+
+    public void setKeepAliveWithoutCalls(boolean keepAliveWithoutCalls) {
+        this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+    }
+
+    public int getMaxInboundMessageSizeBytes() {
+        return maxInboundMessageSizeBytes;
+    }
+
+    public void setMaxInboundMessageSizeBytes(int maxInboundMessageSizeBytes) {
+        this.maxInboundMessageSizeBytes = maxInboundMessageSizeBytes;
+    }
+
+    public int getFlowControlWindowBytes() {
+        return flowControlWindowBytes;
+    }
+
+    public void setFlowControlWindowBytes(int flowControlWindowBytes) {
+        this.flowControlWindowBytes = flowControlWindowBytes;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    public void setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+    }
+
+    public boolean isTlsEnabled() {
+        return tlsEnabled;
+    }
+
+    public void setTlsEnabled(boolean tlsEnabled) {
+        this.tlsEnabled = tlsEnabled;
+    }
+
+    public String getTlsTrustCertCollectionFile() {
+        return tlsTrustCertCollectionFile;
+    }
+
+    public void setTlsTrustCertCollectionFile(String tlsTrustCertCollectionFile) {
+        this.tlsTrustCertCollectionFile = tlsTrustCertCollectionFile;
+    }
+
+    public int getConcurrencyLimitInitial() {
+        return concurrencyLimitInitial;
+    }
+
+    public void setConcurrencyLimitInitial(int concurrencyLimitInitial) {
+        this.concurrencyLimitInitial = concurrencyLimitInitial;
+    }
+
+    public int getConcurrencyLimitMin() {
+        return concurrencyLimitMin;
+    }
+
+    public void setConcurrencyLimitMin(int concurrencyLimitMin) {
+        this.concurrencyLimitMin = concurrencyLimitMin;
+    }
+
+    public int getConcurrencyLimitMax() {
+        return concurrencyLimitMax;
+    }
+
+    public void setConcurrencyLimitMax(int concurrencyLimitMax) {
+        this.concurrencyLimitMax = concurrencyLimitMax;
+    }
+
+    public long getConcurrencyQueueTimeoutMillis() {
+        return concurrencyQueueTimeoutMillis;
+    }
+
+    public void setConcurrencyQueueTimeoutMillis(long concurrencyQueueTimeoutMillis) {
+        this.concurrencyQueueTimeoutMillis = concurrencyQueueTimeoutMillis;
+    }
+
+    public long getWriteThroughTtlSeconds() {
+        return writeThroughTtlSeconds;
+    }
+
+    public void setWriteThroughTtlSeconds(long writeThroughTtlSeconds) {
+        this.writeThroughTtlSeconds = writeThroughTtlSeconds;
+    }
+
+    public long getWriteThroughMaxEntries() {
+        return writeThroughMaxEntries;
+    }
+
+    public void setWriteThroughMaxEntries(long writeThroughMaxEntries) {
+        this.writeThroughMaxEntries = writeThroughMaxEntries;
+    }
+
+    public int getPartyInternMaxEntries() {
+        return partyInternMaxEntries;
+    }
+
+    public void setPartyInternMaxEntries(int partyInternMaxEntries) {
+        this.partyInternMaxEntries = partyInternMaxEntries;
+    }
+
+    public Map<String, Participant> getParticipants() {
+        return participants;
+    }
+
+    public void setParticipants(Map<String, Participant> participants) {
+        this.participants = participants;
+    }
+
+    public Map<String, String> getPartyRoutes() {
+        return partyRoutes;
+    }
+
+    public void setPartyRoutes(Map<String, String> partyRoutes) {
+        this.partyRoutes = partyRoutes;
+    }
+
+    public long getRoutingRefreshSeconds() {
+        return routingRefreshSeconds;
+    }
+
+    public void setRoutingRefreshSeconds(long routingRefreshSeconds) {
+        this.routingRefreshSeconds = routingRefreshSeconds;
+    }
+
+    public long getRoutingInitialTimeoutSeconds() {
+        return routingInitialTimeoutSeconds;
+    }
+
+    public void setRoutingInitialTimeoutSeconds(long routingInitialTimeoutSeconds) {
+        this.routingInitialTimeoutSeconds = routingInitialTimeoutSeconds;
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "outbox")
+public class OutboxConfig {
+
+    // Accept commands sent with "Prefer: respond-async" into the outbox and run the outbox workers
+    private boolean enabled = false;
+    // Schema of the outbox table, created on startup; the database user needs the rights to create it
+    private String schema = "backend";
+    // Enqueued commands are inserted in batches collected over this window, or once this many are waiting
+    private long insertWindowMillis = 5;
+    private int insertBatchMaxSize = 100;
+    // Workers claim up to claimBatchSize commands at a time and run them concurrently
+    private int workerCount = 2;
+    private int claimBatchSize = 16;
+    private long pollIntervalMillis = 200;
+    // Upper bound on commands started per second across all workers
+    private double maxCommandsPerSecond = 50;
+    // Attempts of commands failing with overload, before they are marked failed
+    private int maxAttempts = 5;
+    private long retryBackoffMillis = 1_000;
+    // Running commands claimed longer ago than this are assumed abandoned by a stopped worker and claimed again
+    private long claimTimeoutSeconds = 300;
+    // Succeeded and failed commands are kept for status queries for this long
+    private long retentionHours = 24;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public void setSchema(String schema) {
+        this.schema = schema;
+    }
+
+    public long getInsertWindowMillis() {
+        return insertWindowMillis;
+    }
+
+    public void setInsertWindowMillis(long insertWindowMillis) {
+        this.insertWindowMillis = insertWindowMillis;
+    }
+
+    public int getInsertBatchMaxSize() {
+        return insertBatchMaxSize;
+    }
+
+    public void setInsertBatchMaxSize(int insertBatchMaxSize) {
+        this.insertBatchMaxSize = insertBatchMaxSize;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    public int getClaimBatchSize() {
+        return claimBatchSize;
+    }
+
+    public void setClaimBatchSize(int claimBatchSize) {
+        this.claimBatchSize = claimBatchSize;
+    }
+
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public double getMaxCommandsPerSecond() {
+        return maxCommandsPerSecond;
+    }
+
+    public void setMaxCommandsPerSecond(double maxCommandsPerSecond) {
+        this.maxCommandsPerSecond = maxCommandsPerSecond;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public long getClaimTimeoutSeconds() {
+        return claimTimeoutSeconds;
+    }
+
+    public void setClaimTimeoutSeconds(long claimTimeoutSeconds) {
+        this.claimTimeoutSeconds = claimTimeoutSeconds;
+    }
+
+    public long getRetentionHours() {
+        return retentionHours;
+    }
+
+    public void setRetentionHours(long retentionHours) {
+        this.retentionHours = retentionHours;
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "pqs")
+public class PqsConfig {
+
+    // Result sets with at least this many rows are decoded in parallel; 0 disables parallel decoding
+    private int parallelDecodeThreshold = 1000;
+    private int parallelDecodeChunkSize = 256;
+    private int parallelDecodeParallelism = Runtime.getRuntime().availableProcessors();
+    // Registers the raw JSON list endpoints selected with the X-Json-Passthrough header
+    private boolean jsonPassthroughEnabled = false;
+    // Adaptive bound on concurrent queries; calls beyond it are rejected with 503
+    private int concurrencyLimitInitial = 10;
+    private int concurrencyLimitMin = 2;
+    private int concurrencyLimitMax = 50;
+    // Calls wait at most this long for a free slot, or until their request deadline, before they are rejected
+    private long concurrencyQueueTimeoutMillis = 5_000;
+    // Statement timeout of queries not made on behalf of an HTTP request, which use the request deadline instead
+    private int queryTimeoutSeconds = 30;
+
+    // Getters and Setters
+    public int getParallelDecodeThreshold() {
+        return parallelDecodeThreshold;
+    }
+
+    public void setParallelDecodeThreshold(int parallelDecodeThreshold) {
+        this.parallelDecodeThreshold = parallelDecodeThreshold;
+    }
+
+    public int getParallelDecodeChunkSize() {
+        return parallelDecodeChunkSize;
+    }
+
+    public void setParallelDecodeChunkSize(int parallelDecodeChunkSize) {
+        this.parallelDecodeChunkSize = parallelDecodeChunkSize;
+    }
+
+    public int getParallelDecodeParallelism() {
+        return parallelDecodeParallelism;
+    }
+
+    public void setParallelDecodeParallelism(int parallelDecodeParallelism) {
+        this.parallelDecodeParallelism = parallelDecodeParallelism;
+    }
+
+    public boolean isJsonPassthroughEnabled() {
+        return jsonPassthroughEnabled;
+    }
+
+    public void setJsonPassthroughEnabled(boolean jsonPassthroughEnabled) {
+        this.jsonPassthroughEnabled = jsonPassthroughEnabled;
+    }
+
+    public int getConcurrencyLimitInitial() {
+        return concurrencyLimitInitial;
+    }
+
+    public void setConcurrencyLimitInitial(int concurrencyLimitInitial) {
+        this.concurrencyLimitInitial = concurrencyLimitInitial;
+    }
+
+    public int getConcurrencyLimitMin() {
+        return concurrencyLimitMin;
+    }
+
+    public void setConcurrencyLimitMin(int concurrencyLimitMin) {
+        this.concurrencyLimitMin = concurrencyLimitMin;
+    }
+
+    public int getConcurrencyLimitMax() {
+        return concurrencyLimitMax;
+    }
+
+    public void setConcurrencyLimitMax(int concurrencyLimitMax) {
+        this.concurrencyLimitMax = concurrencyLimitMax;
+    }
+
+    public long getConcurrencyQueueTimeoutMillis() {
+        return concurrencyQueueTimeoutMillis;
+    }
+
+    public void setConcurrencyQueueTimeoutMillis(long concurrencyQueueTimeoutMillis) {
+        this.concurrencyQueueTimeoutMillis = concurrencyQueueTimeoutMillis;
+    }
+
+    public int getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+
+    public void setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
+}
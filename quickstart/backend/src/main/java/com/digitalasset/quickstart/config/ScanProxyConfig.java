@@ -0,0 +1,133 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+
+@Component
+@ConfigurationProperties(prefix = "scan-proxy")
+public class ScanProxyConfig {
+
+    private String baseUri = "http://validator-app-provider:5003/api/validator";
+    // HTTP_2 multiplexes all calls over one connection, falling back to HTTP_1_1 if the validator does not support it
+    private HttpClient.Version httpVersion = HttpClient.Version.HTTP_2;
+    private long connectTimeoutMillis = 2_000;
+    // Calls made on behalf of an HTTP request time out with that request, if it ends sooner
+    private long requestTimeoutMillis = 10_000;
+    // Threads of the HTTP client's own executor, which sends requests and handles responses
+    private int executorThreads = 4;
+    // AmuletRules is served from a cache for this long; a submission failing on a stale disclosed contract drops it earlier
+    private long amuletRulesTtlSeconds = 300;
+    // The DSO party id does not change while the network runs
+    private long dsoPartyIdTtlSeconds = 86_400;
+    // Open mining rounds are re-read when the next known round opens or is due to close (plus the margin, as the
+    // validator sees the change slightly later), at least every max-refresh and at most every min-refresh interval
+    private long openRoundsRefreshMarginMillis = 1_000;
+    private long openRoundsMinRefreshMillis = 1_000;
+    private long openRoundsMaxRefreshSeconds = 300;
+    // Upper bound on the created event blobs held by the cache of disclosed contracts built from scan proxy contracts
+    private long disclosedContractCacheMaxBytes = 16L * 1024 * 1024;
+    // Load the cached values once the application has started, so the first requests don't pay for them
+    private boolean warmUp = true;
+
+    // Getters and Setters
+    public String getBaseUri() {
+        return baseUri;
+    }
+
+    public void setBaseUri(String baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    public HttpClient.Version getHttpVersion() {
+        return httpVersion;
+    }
+
+    public void setHttpVersion(HttpClient.Version httpVersion) {
+        this.httpVersion = httpVersion;
+    }
+
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public void setRequestTimeoutMillis(long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    public void setExecutorThreads(int executorThreads) {
+        this.executorThreads = executorThreads;
+    }
+
+    public long getAmuletRulesTtlSeconds() {
+        return amuletRulesTtlSeconds;
+    }
+
+    public void setAmuletRulesTtlSeconds(long amuletRulesTtlSeconds) {
+        this.amuletRulesTtlSeconds = amuletRulesTtlSeconds;
+    }
+
+    public long getDsoPartyIdTtlSeconds() {
+        return dsoPartyIdTtlSeconds;
+    }
+
+    public void setDsoPartyIdTtlSeconds(long dsoPartyIdTtlSeconds) {
+        this.dsoPartyIdTtlSeconds = dsoPartyIdTtlSeconds;
+    }
+
+    public long getOpenRoundsRefreshMarginMillis() {
+        return openRoundsRefreshMarginMillis;
+    }
+
+    public void setOpenRoundsRefreshMarginMillis(long openRoundsRefreshMarginMillis) {
+        this.openRoundsRefreshMarginMillis = openRoundsRefreshMarginMillis;
+    }
+
+    public long getOpenRoundsMinRefreshMillis() {
+        return openRoundsMinRefreshMillis;
+    }
+
+    public void setOpenRoundsMinRefreshMillis(long openRoundsMinRefreshMillis) {
+        this.openRoundsMinRefreshMillis = openRoundsMinRefreshMillis;
+    }
+
+    public long getOpenRoundsMaxRefreshSeconds() {
+        return openRoundsMaxRefreshSeconds;
+    }
+
+    public void setOpenRoundsMaxRefreshSeconds(long openRoundsMaxRefreshSeconds) {
+        this.openRoundsMaxRefreshSeconds = openRoundsMaxRefreshSeconds;
+    }
+
+    public long getDisclosedContractCacheMaxBytes() {
+        return disclosedContractCacheMaxBytes;
+    }
+
+    public void setDisclosedContractCacheMaxBytes(long disclosedContractCacheMaxBytes) {
+        this.disclosedContractCacheMaxBytes = disclosedContractCacheMaxBytes;
+    }
+
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+}
@@ -0,0 +1,32 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "transcode")
+public class TranscodeConfig {
+
+    // Fully qualified names of generated template classes whose converters are resolved right after startup
+    private List<String> warmTemplates = new ArrayList<>(List.of(
+            "quickstart_licensing.licensing.license.License",
+            "quickstart_licensing.licensing.license.LicenseRenewalRequest",
+            "quickstart_licensing.licensing.appinstall.AppInstall",
+            "quickstart_licensing.licensing.appinstall.AppInstallRequest"
+    ));
+
+    // Getters and Setters
+    public List<String> getWarmTemplates() {
+        return warmTemplates;
+    }
+
+    public void setWarmTemplates(List<String> warmTemplates) {
+        this.warmTemplates = warmTemplates;
+    }
+}
@@ -0,0 +1,386 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.EventOuterClass;
+import com.daml.ledger.api.v2.StateServiceGrpc;
+import com.daml.ledger.api.v2.StateServiceOuterClass;
+import com.daml.ledger.api.v2.TransactionFilterOuterClass;
+import com.daml.ledger.api.v2.TransactionOuterClass;
+import com.daml.ledger.api.v2.UpdateServiceGrpc;
+import com.daml.ledger.api.v2.UpdateServiceOuterClass;
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.quickstart.config.ContractStoreConfig;
+import com.digitalasset.quickstart.pqs.Contract;
+import com.digitalasset.quickstart.utility.ConverterRegistry;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.PartyInterner;
+import com.digitalasset.transcode.java.ContractId;
+import com.digitalasset.transcode.java.Template;
+import com.digitalasset.transcode.java.Utils;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory mirror of the active contracts of the app's templates (see {@link AppTemplates}).
+ * <p>
+ * When {@code contract-store.enabled} is set, the store loads the active contract set of the configured
+ * parties at the ledger end and then follows the update stream from that offset, applying creates and archives.
+ * Contracts are indexed by id, template, stakeholder party and, where defined, business key. {@link #offset()}
+ * is the ledger offset the store reflects. Reads should only be served from the store while {@link #isReady()}
+ * holds, i.e. once the initial load finished and as long as the update stream has not been disconnected for
+ * longer than {@code contract-store.max-staleness-seconds}. If the stream cannot be resumed because the ledger
+ * pruned past the store's offset, the store is loaded again from the current ledger end.
+ * <p>
+ * The store is single-participant: it reads and follows the default participant only, whose offsets it tracks.
+ * Contracts of configured parties that {@code ledger.party-routes} (or the routing refresh) places on another
+ * participant are not visible to it, so such parties are reported at start and should not be configured here.
+ */
+@Component
+public class ActiveContractStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActiveContractStore.class);
+
+    private final LedgerApi ledgerApi;
+    private final ContractStoreConfig config;
+    private final ConverterRegistry converters;
+    private final PartyInterner partyInterner;
+    private final ScheduledExecutorService reconnectScheduler;
+
+    private final Map<String, Entry> byId = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Set<String>> byTemplate = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byParty = new ConcurrentHashMap<>();
+    private final Map<Object, String> byKey = new ConcurrentHashMap<>();
+
+    private volatile long offset;
+    private volatile boolean bootstrapped;
+    private volatile boolean connected;
+    private volatile long disconnectedAtNanos;
+
+    public ActiveContractStore(
+            LedgerApi ledgerApi,
+            ContractStoreConfig config,
+            ConverterRegistry converters,
+            PartyInterner partyInterner
+    ) {
+        this.ledgerApi = ledgerApi;
+        this.config = config;
+        this.converters = converters;
+        this.partyInterner = partyInterner;
+        this.reconnectScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "contract-store-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Metrics.meter()
+                .gaugeBuilder("backend.contractstore.contracts")
+                .setDescription("Active contracts held by the in-memory contract store")
+                .ofLongs()
+                .buildWithCallback(measurement -> measurement.record(byId.size()));
+        Metrics.meter()
+                .gaugeBuilder("backend.contractstore.offset")
+                .setDescription("Ledger offset reflected by the in-memory contract store")
+                .ofLongs()
+                .buildWithCallback(measurement -> measurement.record(offset));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (config.getParties().isEmpty()) {
+            LoggingSpanHelper.logError(logger, "Contract store is enabled but no parties are configured, not starting");
+            return;
+        }
+        for (String party : config.getParties()) {
+            String participant = ledgerApi.participantOf(party);
+            if (!ParticipantRouter.DEFAULT.equals(participant)) {
+                LoggingSpanHelper.logError(logger, "Contract store party is hosted on another participant, its contracts will be missing",
+                        Map.of("party", party, "participant", participant), null);
+            }
+        }
+        bootstrap();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        reconnectScheduler.shutdownNow();
+    }
+
+    public boolean isReady() {
+        if (!bootstrapped) {
+            return false;
+        }
+        return connected || System.nanoTime() - disconnectedAtNanos < TimeUnit.SECONDS.toNanos(config.getMaxStalenessSeconds());
+    }
+
+    /**
+     * The ledger offset up to which all creates and archives have been applied.
+     */
+    public long offset() {
+        return offset;
+    }
+
+    public <T extends Template> List<Contract<T>> active(Class<T> clazz) {
+        return lookup(clazz, byTemplate.getOrDefault(clazz, Collections.emptySet()));
+    }
+
+    /**
+     * Active contracts of a template that {@code party} is a signatory or observer of.
+     */
+    public <T extends Template> List<Contract<T>> activeForParty(Class<T> clazz, String party) {
+        return lookup(clazz, byParty.getOrDefault(party, Collections.emptySet()));
+    }
+
+    public <T extends Template> Optional<Contract<T>> byId(Class<T> clazz, String contractId) {
+        return Optional.ofNullable(byId.get(contractId)).filter(entry -> entry.templateClass == clazz).map(ActiveContractStore::cast);
+    }
+
+    /**
+     * The active contract with the given business key, built with one of the {@link AppTemplates} key functions.
+     */
+    public <T extends Template> Optional<Contract<T>> byKey(Class<T> clazz, Object key) {
+        return Optional.ofNullable(byKey.get(key)).flatMap(contractId -> byId(clazz, contractId));
+    }
+
+    private <T extends Template> List<Contract<T>> lookup(Class<T> clazz, Set<String> contractIds) {
+        List<Contract<T>> contracts = new ArrayList<>();
+        for (String contractId : contractIds) {
+            Entry entry = byId.get(contractId);
+            if (entry != null && entry.templateClass == clazz) {
+                contracts.add(cast(entry));
+            }
+        }
+        return contracts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Template> Contract<T> cast(Entry entry) {
+        return (Contract<T>) entry.contract;
+    }
+
+    private TransactionFilterOuterClass.TransactionFilter filter() {
+        TransactionFilterOuterClass.Filters.Builder filters = TransactionFilterOuterClass.Filters.newBuilder();
+        for (Class<? extends Template> clazz : AppTemplates.TEMPLATES) {
+            filters.addCumulative(TransactionFilterOuterClass.CumulativeFilter.newBuilder()
+                    .setTemplateFilter(TransactionFilterOuterClass.TemplateFilter.newBuilder()
+                            .setTemplateId(LedgerApi.toIdentifier(Utils.getTemplateIdByClass(clazz)))));
+        }
+        TransactionFilterOuterClass.TransactionFilter.Builder filter = TransactionFilterOuterClass.TransactionFilter.newBuilder();
+        for (String party : config.getParties()) {
+            filter.putFiltersByParty(party, filters.build());
+        }
+        return filter.build();
+    }
+
+    private void bootstrap() {
+        bootstrapped = false;
+        LedgerApi.toCompletableFuture(
+                StateServiceGrpc.newFutureStub(ledgerApi.channel())
+                        .getLedgerEnd(StateServiceOuterClass.GetLedgerEndRequest.getDefaultInstance())
+        ).whenComplete((ledgerEnd, ex) -> {
+            if (ex != null) {
+                LoggingSpanHelper.logError(logger, "Failed to read ledger end, retrying contract store bootstrap", ex);
+                reconnectScheduler.schedule(this::bootstrap, config.getReconnectDelayMillis(), TimeUnit.MILLISECONDS);
+                return;
+            }
+            loadActiveContracts(ledgerEnd.getOffset());
+        });
+    }
+
+    private void loadActiveContracts(long activeAt) {
+        clear();
+        LoggingSpanHelper.logInfo(logger, "Loading active contracts into the contract store", Map.of("offset", activeAt));
+
+        StateServiceOuterClass.GetActiveContractsRequest request = StateServiceOuterClass.GetActiveContractsRequest.newBuilder()
+                .setFilter(filter())
+                .setActiveAtOffset(activeAt)
+                .build();
+
+        Context.ROOT.run(() -> StateServiceGrpc.newStub(ledgerApi.channel()).getActiveContracts(request, new StreamObserver<>() {
+            @Override
+            public void onNext(StateServiceOuterClass.GetActiveContractsResponse response) {
+                if (response.hasActiveContract()) {
+                    add(response.getActiveContract().getCreatedEvent());
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                LoggingSpanHelper.logError(logger, "Loading active contracts failed, retrying", t);
+                reconnectScheduler.schedule(ActiveContractStore.this::bootstrap, config.getReconnectDelayMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void onCompleted() {
+                offset = activeAt;
+                bootstrapped = true;
+                LoggingSpanHelper.logInfo(logger, "Contract store loaded", Map.of("offset", activeAt, "contracts", byId.size()));
+                subscribe();
+            }
+        }));
+    }
+
+    private void subscribe() {
+        long beginExclusive = offset;
+        UpdateServiceOuterClass.GetUpdatesRequest request = UpdateServiceOuterClass.GetUpdatesRequest.newBuilder()
+                .setBeginExclusive(beginExclusive)
+                .setFilter(filter())
+                .build();
+
+        connected = true;
+        Context.ROOT.run(() -> UpdateServiceGrpc.newStub(ledgerApi.channel()).getUpdates(request, new StreamObserver<>() {
+            @Override
+            public void onNext(UpdateServiceOuterClass.GetUpdatesResponse response) {
+                if (response.hasTransaction()) {
+                    apply(response.getTransaction());
+                } else if (response.hasOffsetCheckpoint()) {
+                    offset = response.getOffsetCheckpoint().getOffset();
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (isPrunedOffset(t)) {
+                    LoggingSpanHelper.logError(logger, "Contract store offset is no longer available, reloading", Map.of("offset", offset), t);
+                    disconnected(ActiveContractStore.this::bootstrap);
+                    return;
+                }
+                LoggingSpanHelper.logError(logger, "Contract store update stream failed, resubscribing", Map.of("offset", offset), t);
+                disconnected(ActiveContractStore.this::subscribe);
+            }
+
+            @Override
+            public void onCompleted() {
+                LoggingSpanHelper.logInfo(logger, "Contract store update stream closed by the server, resubscribing", Map.of("offset", offset));
+                disconnected(ActiveContractStore.this::subscribe);
+            }
+        }));
+    }
+
+    private void disconnected(Runnable reconnect) {
+        connected = false;
+        disconnectedAtNanos = System.nanoTime();
+        reconnectScheduler.schedule(reconnect, config.getReconnectDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether the update stream failed because its begin offset was pruned, in which case resubscribing from it
+     * can never succeed.
+     */
+    private static boolean isPrunedOffset(Throwable t) {
+        Status.Code code = Status.fromThrowable(t).getCode();
+        return code == Status.Code.FAILED_PRECONDITION || code == Status.Code.OUT_OF_RANGE;
+    }
+
+    private void apply(TransactionOuterClass.Transaction transaction) {
+        for (EventOuterClass.Event event : transaction.getEventsList()) {
+            if (event.hasCreated()) {
+                add(event.getCreated());
+            } else if (event.hasArchived()) {
+                remove(event.getArchived().getContractId());
+            }
+        }
+        // published last, so a reader that sees the offset also sees the transaction's effects
+        offset = transaction.getOffset();
+    }
+
+    private void add(EventOuterClass.CreatedEvent created) {
+        Optional<Class<? extends Template>> templateClass = AppTemplates.classOf(created.getTemplateId());
+        if (templateClass.isEmpty()) {
+            return;
+        }
+        Class<? extends Template> clazz = templateClass.get();
+        // parties are interned before decoding, so the retained payloads share one string per party
+        Object payload = converters.templateDecoder(Utils.getTemplateIdByClass(clazz))
+                .convert(partyInterner.intern(ValueOuterClass.Value.newBuilder().setRecord(created.getCreateArguments()).build()));
+
+        List<String> stakeholders = new ArrayList<>(created.getSignatoriesList());
+        stakeholders.addAll(created.getObserversList());
+        Entry entry = new Entry(clazz, newContract(created.getContractId(), payload), stakeholders, AppTemplates.keyOf(payload));
+
+        String contractId = created.getContractId();
+        byId.put(contractId, entry);
+        byTemplate.computeIfAbsent(clazz, c -> ConcurrentHashMap.newKeySet()).add(contractId);
+        for (String party : stakeholders) {
+            // compute, not computeIfAbsent, so this cannot add to a set that remove() is dropping
+            byParty.compute(partyInterner.intern(party), (p, ids) -> {
+                Set<String> partyIds = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                partyIds.add(contractId);
+                return partyIds;
+            });
+        }
+        if (entry.key != null) {
+            byKey.put(entry.key, contractId);
+        }
+    }
+
+    private void remove(String contractId) {
+        Entry entry = byId.remove(contractId);
+        if (entry == null) {
+            return;
+        }
+        Set<String> templateIds = byTemplate.get(entry.templateClass);
+        if (templateIds != null) {
+            templateIds.remove(contractId);
+        }
+        for (String party : entry.stakeholders) {
+            // parties come and go with tenants, so their sets are dropped once empty
+            byParty.computeIfPresent(party, (p, partyIds) -> {
+                partyIds.remove(contractId);
+                return partyIds.isEmpty() ? null : partyIds;
+            });
+        }
+        if (entry.key != null) {
+            byKey.remove(entry.key, contractId);
+        }
+    }
+
+    private void clear() {
+        byId.clear();
+        byTemplate.clear();
+        byParty.clear();
+        byKey.clear();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Contract<?> newContract(String contractId, Object payload) {
+        return new Contract(new ContractId<>(contractId), (Template) payload);
+    }
+
+    private static final class Entry {
+        private final Class<? extends Template> templateClass;
+        private final Contract<?> contract;
+        private final List<String> stakeholders;
+        private final Object key;
+
+        private Entry(Class<? extends Template> templateClass, Contract<?> contract, List<String> stakeholders, Object key) {
+            this.templateClass = templateClass;
+            this.contract = contract;
+            this.stakeholders = stakeholders;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.transcode.java.Template;
+import com.digitalasset.transcode.java.Utils;
+import com.digitalasset.transcode.schema.Identifier;
+import quickstart_licensing.licensing.appinstall.AppInstall;
+import quickstart_licensing.licensing.appinstall.AppInstallRequest;
+import quickstart_licensing.licensing.license.License;
+import quickstart_licensing.licensing.license.LicenseRenewalRequest;
+import splice_wallet_payments.splice.wallet.payment.AcceptedAppPayment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The templates the backend reads, and the business keys it looks them up by.
+ */
+public final class AppTemplates {
+
+    static final List<Class<? extends Template>> TEMPLATES = List.of(
+            License.class,
+            LicenseRenewalRequest.class,
+            AppInstall.class,
+            AppInstallRequest.class,
+            AcceptedAppPayment.class
+    );
+
+    private static final Map<String, Class<? extends Template>> BY_QUALIFIED_NAME = new ConcurrentHashMap<>();
+
+    static {
+        for (Class<? extends Template> clazz : TEMPLATES) {
+            Identifier id = Utils.getTemplateIdByClass(clazz);
+            BY_QUALIFIED_NAME.put(id.moduleName() + ":" + id.entityName(), clazz);
+        }
+    }
+
+    private AppTemplates() {
+        // Utility class: prevent instantiation
+    }
+
+    /**
+     * The generated class of a ledger template identifier, if it is one of the app's templates.
+     * Package ids are ignored, so every package version of a template maps to the same class.
+     */
+    static Optional<Class<? extends Template>> classOf(ValueOuterClass.Identifier templateId) {
+        return Optional.ofNullable(BY_QUALIFIED_NAME.get(templateId.getModuleName() + ":" + templateId.getEntityName()));
+    }
+
+    /**
+     * Business key of a License: user, provider, license number and DSO.
+     */
+    public static Object licenseKey(String user, String provider, Long licenseNum, String dso) {
+        return List.of(License.class, user, provider, licenseNum, dso);
+    }
+
+    /**
+     * Business key of an AcceptedAppPayment: the payment request it accepts, its sender and provider.
+     */
+    public static Object acceptedAppPaymentKey(String referenceCid, String sender, String provider) {
+        return List.of(AcceptedAppPayment.class, referenceCid, sender, provider);
+    }
+
+    /**
+     * The business key of a decoded payload, or {@code null} for templates that are not looked up by key.
+     */
+    static Object keyOf(Object payload) {
+        if (payload instanceof License license) {
+            return licenseKey(
+                    license.getUser.getParty,
+                    license.getProvider.getParty,
+                    license.getLicenseNum,
+                    license.getDso.getParty
+            );
+        }
+        if (payload instanceof AcceptedAppPayment payment) {
+            return acceptedAppPaymentKey(
+                    payment.getReference.getContractId,
+                    payment.getSender.getParty,
+                    payment.getProvider.getParty
+            );
+        }
+        return null;
+    }
+}
@@ -0,0 +1,260 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.CommandsOuterClass;
+import com.daml.ledger.api.v2.TransactionOuterClass;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.PriorityClass;
+import com.digitalasset.quickstart.utility.RequestDeadline;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.context.Scope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces independent commands of the same party into one multi-command transaction.
+ * <p>
+ * The first command of a party opens a batch that is flushed after the configured window or once it reaches
+ * the maximum size, whichever comes first. The ledger returns one root event per command, in command order,
+ * which is how results are split back to the callers. Commands on the same contract are never put in the same
+ * batch: a second exercise on a contract flushes the open batch and starts a new one.
+ * <p>
+ * A batch is submitted under a fresh command id, so the ledger cannot deduplicate a retry of one of its commands.
+ * Commands that come with a caller's command id are therefore never batched: they are submitted on their own,
+ * right away, so a retry with the same id after an ambiguous failure is deduplicated by the ledger. Only commands
+ * without one are coalesced, under generated ids. A failed batch is only split into single submissions when the
+ * ledger definitely rejected it before commit (an invalid request or an interpretation error). Any other failure,
+ * and a result that does not carry one root event per command, is ambiguous - the batch may have committed - so
+ * every command of the batch fails with it rather than risking to apply it twice.
+ * <p>
+ * Creates are not batched at all. A create names no contract, so there is nothing to tell whether two creates are
+ * independent (two creates of the same contract key would fail the whole transaction), and creates keep the
+ * configured submission mode instead of waiting for a transaction tree to split results from.
+ * <p>
+ * A batch is shared by several requests, so it is submitted outside of their request deadlines (one caller giving
+ * up must not cancel the others' commands), at the most urgent priority of its commands.
+ */
+class CommandBatcher {
+
+    /**
+     * Submits commands for one party as a single transaction and returns the resulting tree.
+     */
+    @FunctionalInterface
+    interface Submitter {
+        CompletableFuture<TransactionOuterClass.TransactionTree> submit(
+                String party,
+                List<CommandsOuterClass.Command> commands,
+                String commandId
+        );
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandBatcher.class);
+
+    private final Submitter submitter;
+    private final long windowMillis;
+    private final int maxSize;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Batch> openBatches = new HashMap<>();
+    private final LongHistogram batchSize;
+    private final DoubleHistogram batchLatency;
+
+    CommandBatcher(Submitter submitter, long windowMillis, int maxSize) {
+        this.submitter = submitter;
+        this.windowMillis = windowMillis;
+        this.maxSize = Math.max(1, maxSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-command-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSize = Metrics.meter()
+                .histogramBuilder("backend.ledger.batch.size")
+                .setDescription("Number of commands per submitted ledger transaction")
+                .ofLongs()
+                .build();
+        this.batchLatency = Metrics.meter()
+                .histogramBuilder("backend.ledger.batch.latency")
+                .setDescription("Time from enqueueing a command to its completion, by outcome")
+                .setUnit("ms")
+                .build();
+    }
+
+    /**
+     * Submits {@code command} for {@code party}, in a batch if {@code commandId} is null.
+     */
+    CompletableFuture<CommandResult> submit(String party, CommandsOuterClass.Command command, String commandId) {
+        if (commandId != null) {
+            Pending single = new Pending(command, commandId);
+            batchSize.record(1);
+            submitSingle(party, single, "single");
+            return single.result;
+        }
+        Pending pending = new Pending(command, "batched-" + UUID.randomUUID());
+        String contractId = command.hasExercise() ? command.getExercise().getContractId() : null;
+        List<Pending> conflicting = null;
+        List<Pending> ready = null;
+        synchronized (openBatches) {
+            Batch open = openBatches.get(party);
+            if (open != null && contractId != null && open.contractIds.contains(contractId)) {
+                // not independent of a command already waiting: send those first, this one opens the next batch
+                openBatches.remove(party);
+                conflicting = open.pending;
+            }
+            Batch batch = openBatches.computeIfAbsent(party, p -> new Batch());
+            batch.pending.add(pending);
+            if (contractId != null) {
+                batch.contractIds.add(contractId);
+            }
+            if (batch.pending.size() >= maxSize) {
+                ready = openBatches.remove(party).pending;
+            } else if (batch.pending.size() == 1) {
+                scheduler.schedule(() -> flush(party, batch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (conflicting != null) {
+            dispatch(party, conflicting);
+        }
+        if (ready != null) {
+            dispatch(party, ready);
+        }
+        return pending.result;
+    }
+
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private void flush(String party, Batch batch) {
+        synchronized (openBatches) {
+            // The batch may already have been dispatched for reaching its maximum size or for a conflicting command
+            if (!openBatches.remove(party, batch)) {
+                return;
+            }
+        }
+        dispatch(party, batch.pending);
+    }
+
+    private void dispatch(String party, List<Pending> batch) {
+        PriorityClass priority = PriorityClass.MAINTENANCE;
+        for (Pending pending : batch) {
+            if (pending.priority.compareTo(priority) < 0) {
+                priority = pending.priority;
+            }
+        }
+        PriorityClass batchPriority = priority;
+        try (Scope ignored = batchPriority.makeCurrent()) {
+            RequestDeadline.detached(() -> {
+                submitBatch(party, batch, batchPriority);
+                return null;
+            });
+        }
+    }
+
+    private void submitBatch(String party, List<Pending> batch, PriorityClass priority) {
+        batchSize.record(batch.size());
+        if (batch.size() == 1) {
+            Pending single = batch.get(0);
+            submitSingle(party, single, "single");
+            return;
+        }
+
+        List<CommandsOuterClass.Command> commands = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            commands.add(pending.command);
+        }
+        String batchId = "batch-" + UUID.randomUUID();
+        Map<String, Object> attrs = Map.of("party", party, "batchId", batchId, "batch.size", batch.size());
+        LoggingSpanHelper.logDebug(logger, "Submitting command batch", attrs);
+
+        submitter.submit(party, commands, batchId).whenComplete((tree, ex) -> {
+            if (ex == null && tree.getRootEventIdsCount() == batch.size()) {
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).complete(new CommandResult(tree, tree.getRootEventIds(i)), "batched");
+                }
+                return;
+            }
+            if (ex == null) {
+                IllegalStateException unexpected = new IllegalStateException("Command batch " + batchId
+                        + " returned " + tree.getRootEventIdsCount() + " root events for " + batch.size()
+                        + " commands; it may have been committed");
+                LoggingSpanHelper.logError(logger, "Command batch returned unexpected root events, failing its commands", attrs, unexpected);
+                for (Pending pending : batch) {
+                    pending.fail(unexpected, "batched");
+                }
+                return;
+            }
+            if (!RetryPolicy.isRejectedBeforeCommit(ex)) {
+                LoggingSpanHelper.logError(logger, "Command batch failed with an ambiguous outcome, failing its commands", attrs, ex);
+                for (Pending pending : batch) {
+                    pending.fail(ex, "batched");
+                }
+                return;
+            }
+            LoggingSpanHelper.logError(logger, "Command batch rejected, falling back to single submissions", attrs, ex);
+            // called back on a gRPC thread, outside of the context the batch was submitted in
+            try (Scope ignored = priority.makeCurrent()) {
+                RequestDeadline.detached(() -> {
+                    for (Pending pending : batch) {
+                        submitSingle(party, pending, "fallback");
+                    }
+                    return null;
+                });
+            }
+        });
+    }
+
+    private void submitSingle(String party, Pending pending, String outcome) {
+        submitter.submit(party, List.of(pending.command), pending.commandId).whenComplete((tree, ex) -> {
+            if (ex != null) {
+                pending.fail(ex, outcome);
+            } else {
+                String rootEventId = tree.getRootEventIdsCount() > 0 ? tree.getRootEventIds(0) : null;
+                pending.complete(new CommandResult(tree, rootEventId), outcome);
+            }
+        });
+    }
+
+    private static final class Batch {
+        private final List<Pending> pending = new ArrayList<>();
+        private final Set<String> contractIds = new HashSet<>();
+    }
+
+    private final class Pending {
+        private final CommandsOuterClass.Command command;
+        private final String commandId;
+        private final PriorityClass priority = PriorityClass.current();
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<CommandResult> result = new CompletableFuture<>();
+
+        private Pending(CommandsOuterClass.Command command, String commandId) {
+            this.command = command;
+            this.commandId = commandId;
+        }
+
+        private void complete(CommandResult commandResult, String outcome) {
+            batchLatency.record(Metrics.millisSince(enqueuedAt), Metrics.attributes("outcome", outcome));
+            result.complete(commandResult);
+        }
+
+        private void fail(Throwable ex, String outcome) {
+            batchLatency.record(Metrics.millisSince(enqueuedAt), Metrics.attributes("outcome", outcome + ".failed"));
+            result.completeExceptionally(ex);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.TransactionOuterClass;
+
+/**
+ * Outcome of a single command: the transaction it was committed in and the id of the root event it produced.
+ * <p>
+ * With batching, several commands share one transaction and are told apart by their root event.
+ */
+final class CommandResult {
+    final TransactionOuterClass.TransactionTree transaction;
+    final String rootEventId;
+
+    CommandResult(TransactionOuterClass.TransactionTree transaction, String rootEventId) {
+        this.transaction = transaction;
+        this.rootEventId = rootEventId;
+    }
+
+    /**
+     * The root event of this command, or {@code null} if the transaction does not contain it.
+     */
+    TransactionOuterClass.TreeEvent rootEvent() {
+        return rootEventId == null ? null : transaction.getEventsByIdMap().get(rootEventId);
+    }
+}
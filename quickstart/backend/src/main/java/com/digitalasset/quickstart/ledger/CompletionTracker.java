@@ -0,0 +1,305 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.CommandCompletionServiceGrpc;
+import com.daml.ledger.api.v2.CommandCompletionServiceOuterClass;
+import com.daml.ledger.api.v2.CompletionOuterClass;
+import com.daml.ledger.api.v2.StateServiceGrpc;
+import com.daml.ledger.api.v2.StateServiceOuterClass;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.google.rpc.Code;
+import io.grpc.Channel;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.StreamObserver;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Correlates asynchronous command submissions with their completions.
+ * <p>
+ * One long-lived {@code CommandCompletionService} stream is kept open per acting party. Callers register the
+ * command id with {@link #track} before submitting; the returned future completes when the matching completion
+ * arrives, successfully or with the rejection status. A stream is opened at the current ledger end before the
+ * first submission of its party, so no completion can be missed, and is reopened from the last seen offset if
+ * it fails, with exponential backoff. A stream the ledger refuses outright (permission denied, invalid argument,
+ * not found) is not reopened: it is closed and the commands waiting on it fail, and the party's next submission
+ * opens a new one. Streams of parties without a command to wait for during the idle timeout are closed as well.
+ * Pending commands time out after the configured completion timeout.
+ */
+class CompletionTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompletionTracker.class);
+
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RECONNECT_DELAY = Duration.ofSeconds(30);
+    private static final Set<Status.Code> PERMANENT = EnumSet.of(
+            Status.Code.PERMISSION_DENIED, Status.Code.INVALID_ARGUMENT, Status.Code.NOT_FOUND);
+
+    private final String applicationId;
+    private final CommandCompletionServiceGrpc.CommandCompletionServiceStub completions;
+    private final StateServiceGrpc.StateServiceFutureStub stateService;
+    private final Duration completionTimeout;
+    private final Duration idleTimeout;
+    private final ScheduledExecutorService reconnectScheduler;
+    private final Map<String, PartyStream> streams = new ConcurrentHashMap<>();
+    private final DoubleHistogram completionLatency;
+
+    CompletionTracker(Channel channel, String applicationId, Duration completionTimeout, Duration idleTimeout) {
+        this.applicationId = applicationId;
+        this.completions = CommandCompletionServiceGrpc.newStub(channel);
+        this.stateService = StateServiceGrpc.newFutureStub(channel);
+        this.completionTimeout = completionTimeout;
+        this.idleTimeout = idleTimeout;
+        this.reconnectScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-completion-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.completionLatency = Metrics.meter()
+                .histogramBuilder("backend.ledger.completion.latency")
+                .setDescription("Time from registering a submitted command to receiving its completion, by status")
+                .setUnit("ms")
+                .build();
+        long sweepMillis = Math.max(1_000, idleTimeout.toMillis() / 2);
+        reconnectScheduler.scheduleWithFixedDelay(this::closeIdleStreams, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers {@code commandId} for {@code party} and makes sure the party's completion stream is open.
+     * <p>
+     * {@code submit} is invoked once the stream is listening, and the returned future completes with the
+     * command's completion. A failed submission fails the future right away.
+     */
+    <S> CompletableFuture<CompletionOuterClass.Completion> track(
+            String party,
+            String commandId,
+            Function<String, CompletableFuture<S>> submit
+    ) {
+        Pending entry = new Pending();
+        PartyStream stream = register(party, commandId, entry);
+        if (stream == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Command " + commandId + " is already awaiting its completion"));
+        }
+        entry.result
+                .orTimeout(completionTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((completion, ex) -> stream.pending.remove(commandId, entry));
+
+        stream.ready
+                .thenCompose(ready -> submit.apply(commandId))
+                .whenComplete((submitted, ex) -> {
+                    if (ex != null) {
+                        entry.result.completeExceptionally(ex);
+                    }
+                });
+        return entry.result;
+    }
+
+    void shutdown() {
+        reconnectScheduler.shutdownNow();
+        streams.values().forEach(stream -> close(stream, null));
+    }
+
+    /**
+     * Adds {@code entry} to the open stream of {@code party}, starting one if there is none. Returns null if the
+     * party already awaits a command with this id.
+     */
+    private PartyStream register(String party, String commandId, Pending entry) {
+        while (true) {
+            PartyStream stream = streams.computeIfAbsent(party, PartyStream::new);
+            boolean start;
+            synchronized (stream) {
+                if (stream.closed) {
+                    // closed between the lookup and now; the next lookup finds or starts its successor
+                    continue;
+                }
+                if (stream.pending.putIfAbsent(commandId, entry) != null) {
+                    return null;
+                }
+                stream.lastUsedNanos = System.nanoTime();
+                start = !stream.started;
+                stream.started = true;
+            }
+            if (start) {
+                start(stream);
+            }
+            return stream;
+        }
+    }
+
+    private void start(PartyStream stream) {
+        LedgerApi.toCompletableFuture(stateService.getLedgerEnd(StateServiceOuterClass.GetLedgerEndRequest.getDefaultInstance()))
+                .whenComplete((ledgerEnd, ex) -> {
+                    if (ex != null) {
+                        // the commands waiting on it fail with the ready future; the next submission starts anew
+                        close(stream, null);
+                        stream.ready.completeExceptionally(ex);
+                        return;
+                    }
+                    stream.offset = ledgerEnd.getOffset();
+                    open(stream);
+                    stream.ready.complete(null);
+                });
+    }
+
+    private void open(PartyStream stream) {
+        long beginExclusive = stream.offset;
+        Context.CancellableContext context = Context.ROOT.withCancellation();
+        synchronized (stream) {
+            if (stream.closed) {
+                return;
+            }
+            stream.call = context;
+        }
+        LoggingSpanHelper.logInfo(logger, "Opening completion stream", Map.of("party", stream.party, "beginExclusive", beginExclusive));
+
+        CommandCompletionServiceOuterClass.CompletionStreamRequest request =
+                CommandCompletionServiceOuterClass.CompletionStreamRequest.newBuilder()
+                        .setApplicationId(applicationId)
+                        .addParties(stream.party)
+                        .setBeginExclusive(beginExclusive)
+                        .build();
+
+        // Detach from the caller's gRPC context so the stream outlives the request that opened it
+        context.run(() -> completions.completionStream(request, new StreamObserver<>() {
+            @Override
+            public void onNext(CommandCompletionServiceOuterClass.CompletionStreamResponse response) {
+                stream.failures = 0;
+                if (response.hasCompletion()) {
+                    onCompletion(stream, response.getCompletion());
+                } else if (response.hasOffsetCheckpoint()) {
+                    stream.offset = response.getOffsetCheckpoint().getOffset();
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (stream.closed) {
+                    return;
+                }
+                Status.Code code = Status.fromThrowable(t).getCode();
+                if (PERMANENT.contains(code)) {
+                    LoggingSpanHelper.logError(logger, "Completion stream rejected, closing it",
+                            Map.of("party", stream.party, "code", code.name()), t);
+                    close(stream, t);
+                    return;
+                }
+                LoggingSpanHelper.logError(logger, "Completion stream failed, reconnecting", Map.of("party", stream.party), t);
+                reconnect(stream);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (stream.closed) {
+                    return;
+                }
+                LoggingSpanHelper.logInfo(logger, "Completion stream closed by the server, reconnecting", Map.of("party", stream.party));
+                reconnect(stream);
+            }
+        }));
+    }
+
+    private void reconnect(PartyStream stream) {
+        int failures = stream.failures++;
+        long delayMillis = Math.min(MAX_RECONNECT_DELAY.toMillis(), RECONNECT_DELAY.toMillis() << Math.min(failures, 16));
+        reconnectScheduler.schedule(() -> open(stream), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes {@code stream} and forgets it, failing the commands still waiting on it with {@code cause}, if given.
+     */
+    private void close(PartyStream stream, Throwable cause) {
+        List<Pending> waiting;
+        Context.CancellableContext call;
+        synchronized (stream) {
+            if (stream.closed) {
+                return;
+            }
+            stream.closed = true;
+            waiting = List.copyOf(stream.pending.values());
+            call = stream.call;
+        }
+        streams.remove(stream.party, stream);
+        if (call != null) {
+            call.cancel(null);
+        }
+        if (cause != null) {
+            waiting.forEach(entry -> entry.result.completeExceptionally(cause));
+        }
+    }
+
+    private void closeIdleStreams() {
+        long idleNanos = idleTimeout.toNanos();
+        for (PartyStream stream : streams.values()) {
+            boolean idle;
+            synchronized (stream) {
+                idle = stream.ready.isDone() && stream.pending.isEmpty() && System.nanoTime() - stream.lastUsedNanos > idleNanos;
+            }
+            if (idle) {
+                LoggingSpanHelper.logInfo(logger, "Closing idle completion stream", Map.of("party", stream.party));
+                close(stream, null);
+            }
+        }
+    }
+
+    private void onCompletion(PartyStream stream, CompletionOuterClass.Completion completion) {
+        stream.offset = completion.getOffset();
+        Pending entry = stream.pending.remove(completion.getCommandId());
+        if (entry == null) {
+            // submitted by another application instance or already timed out
+            return;
+        }
+        Code code = Code.forNumber(completion.getStatus().getCode());
+        String status = code != null ? code.name() : String.valueOf(completion.getStatus().getCode());
+        completionLatency.record(Metrics.millisSince(entry.registeredAt), Metrics.attributes("status", status));
+        if (code == Code.OK) {
+            entry.result.complete(completion);
+        } else {
+            entry.result.completeExceptionally(StatusProto.toStatusRuntimeException(completion.getStatus()));
+        }
+    }
+
+    /**
+     * The completion stream of one party and the commands waiting on it, by command id.
+     */
+    private static final class PartyStream {
+        private final String party;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+        private volatile long offset;
+        // consecutive failures since the last response, for the reconnect backoff
+        private volatile int failures;
+        private volatile boolean closed;
+        // guarded by this
+        private boolean started;
+        private long lastUsedNanos = System.nanoTime();
+        private Context.CancellableContext call;
+
+        private PartyStream(String party) {
+            this.party = party;
+        }
+    }
+
+    private static final class Pending {
+        private final long registeredAt = System.nanoTime();
+        private final CompletableFuture<CompletionOuterClass.Completion> result = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,162 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.EventOuterClass;
+import com.daml.ledger.api.v2.TransactionOuterClass;
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Runs commands that consume the same contract one after the other instead of letting them race.
+ * <p>
+ * Every contract id maps to a lane whose tail is the future of the last command queued on it. Enqueueing swaps
+ * the tail under the lane's lock and chains onto the previous one; the lock is only held for the swap. When a consuming choice recreates
+ * its contract (as {@code AppInstall_CreateLicense} does), the successor is read from the created event of the
+ * same template in the exercise's transaction tree, and the next command in the lane runs against it. The
+ * successor id is registered on the same lane, so callers that already know it queue behind the same work.
+ * Lanes are dropped once they run idle.
+ */
+class ContractSequencer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContractSequencer.class);
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final DoubleHistogram queueTime;
+
+    ContractSequencer() {
+        this.queueTime = Metrics.meter()
+                .histogramBuilder("backend.ledger.sequencer.queue.time")
+                .setDescription("Time a command waited behind earlier commands on the same contract")
+                .setUnit("ms")
+                .build();
+    }
+
+    /**
+     * Queues {@code exercise} behind all earlier commands on {@code contractId}. The function receives the
+     * latest known id of the contract and must submit exactly one exercise on it.
+     */
+    CompletableFuture<CommandResult> sequence(String contractId, Function<String, CompletableFuture<CommandResult>> exercise) {
+        CompletableFuture<String> next = new CompletableFuture<>();
+        Lane lane;
+        CompletableFuture<String> previous;
+        while (true) {
+            lane = lanes.computeIfAbsent(contractId, Lane::new);
+            previous = lane.enqueue(next);
+            if (previous != null) {
+                break;
+            }
+            // the lane was retired between the lookup and the enqueue: take the one that replaces it
+        }
+        long enqueuedAt = System.nanoTime();
+
+        // a failed predecessor leaves the contract as it was
+        CompletableFuture<String> start = previous.handle((latest, ex) -> latest != null ? latest : contractId);
+        Lane queuedOn = lane;
+        CompletableFuture<CommandResult> result = start
+                .thenCompose(latest -> {
+                    queueTime.record(Metrics.millisSince(enqueuedAt));
+                    if (!latest.equals(contractId)) {
+                        LoggingSpanHelper.logDebug(logger, "Re-resolved contract id from preceding command",
+                                Map.of("contractId", contractId, "resolvedContractId", latest));
+                    }
+                    return exercise.apply(latest);
+                })
+                // runs however the command ended, including a submission that threw, so the lane always moves on
+                .whenComplete((commandResult, ex) -> {
+                    String latest = start.join();
+                    String successor = latest;
+                    try {
+                        if (ex == null) {
+                            successor = successorOf(latest, commandResult);
+                        }
+                        if (!successor.equals(latest)) {
+                            queuedOn.register(successor, lanes);
+                        }
+                    } finally {
+                        next.complete(successor);
+                    }
+                });
+
+        // nothing queued behind this command: retire the lane
+        next.thenRun(() -> queuedOn.retireIfIdle(next, lanes));
+        return result;
+    }
+
+    /**
+     * The id the contract has after the exercise: unchanged for non-consuming choices, the id of the newly
+     * created contract of the same template if the choice recreated it, and the consumed id otherwise.
+     */
+    static String successorOf(String contractId, CommandResult result) {
+        TransactionOuterClass.TreeEvent root = result.rootEvent();
+        if (root == null || !root.hasExercised() || !root.getExercised().getConsuming()) {
+            return contractId;
+        }
+        EventOuterClass.ExercisedEvent exercised = root.getExercised();
+        Map<String, TransactionOuterClass.TreeEvent> events = result.transaction.getEventsByIdMap();
+        for (String childId : exercised.getChildEventIdsList()) {
+            TransactionOuterClass.TreeEvent child = events.get(childId);
+            if (child != null && child.hasCreated() && sameTemplate(child.getCreated().getTemplateId(), exercised.getTemplateId())) {
+                return child.getCreated().getContractId();
+            }
+        }
+        return contractId;
+    }
+
+    private static boolean sameTemplate(ValueOuterClass.Identifier a, ValueOuterClass.Identifier b) {
+        return a.getModuleName().equals(b.getModuleName()) && a.getEntityName().equals(b.getEntityName());
+    }
+
+    /**
+     * Enqueueing, registering and retiring all hold the lane's lock, and a retired lane refuses new commands, so a
+     * command can never be queued on a lane that has already left the map.
+     */
+    private static final class Lane {
+        private final List<String> contractIds = new ArrayList<>();
+        private CompletableFuture<String> tail = CompletableFuture.completedFuture(null);
+        private boolean retired;
+
+        private Lane(String contractId) {
+            contractIds.add(contractId);
+        }
+
+        /**
+         * Makes {@code next} the tail and returns the previous one, or {@code null} if the lane is retired.
+         */
+        private synchronized CompletableFuture<String> enqueue(CompletableFuture<String> next) {
+            if (retired) {
+                return null;
+            }
+            CompletableFuture<String> previous = tail;
+            tail = next;
+            return previous;
+        }
+
+        private synchronized void register(String contractId, Map<String, Lane> lanes) {
+            contractIds.add(contractId);
+            lanes.putIfAbsent(contractId, this);
+        }
+
+        private synchronized void retireIfIdle(CompletableFuture<String> last, Map<String, Lane> lanes) {
+            if (tail != last) {
+                return;
+            }
+            retired = true;
+            for (String contractId : contractIds) {
+                lanes.remove(contractId, this);
+            }
+        }
+    }
+}
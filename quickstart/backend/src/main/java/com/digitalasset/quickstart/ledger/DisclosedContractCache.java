@@ -0,0 +1,81 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.CommandsOuterClass;
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.validatorproxy.client.model.Contract;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.UnsafeByteOperations;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+
+import java.util.Base64;
+
+/**
+ * Ready-built {@link CommandsOuterClass.DisclosedContract} messages for contracts read from the scan proxy, by
+ * contract id.
+ * <p>
+ * A contract's created event blob never changes, so the message built for it the first time (template id parsed,
+ * blob decoded) is reused by every later command disclosing it. Entries are weighed by blob size and evicted
+ * least recently used once {@code maxBytes} is exceeded. Lookups are counted in {@code backend.cache.requests}.
+ */
+class DisclosedContractCache {
+
+    private final Cache<String, CommandsOuterClass.DisclosedContract> cache;
+    private final LongCounter requests;
+    private final Attributes hit = Metrics.attributes("cache", "disclosed.contracts", "result", "hit");
+    private final Attributes miss = Metrics.attributes("cache", "disclosed.contracts", "result", "miss");
+
+    DisclosedContractCache(long maxBytes) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String contractId, CommandsOuterClass.DisclosedContract contract) ->
+                        contract.getCreatedEventBlob().size())
+                .build();
+        this.requests = Metrics.meter()
+                .counterBuilder("backend.cache.requests")
+                .setDescription("Cache lookups, by cache and result")
+                .build();
+    }
+
+    CommandsOuterClass.DisclosedContract get(Contract contract) {
+        CommandsOuterClass.DisclosedContract cached = cache.getIfPresent(contract.getContractId());
+        if (cached != null) {
+            requests.add(1, hit);
+            return cached;
+        }
+        requests.add(1, miss);
+        CommandsOuterClass.DisclosedContract built = build(contract);
+        // a concurrent build of the same contract is equal, keep whichever came first
+        CommandsOuterClass.DisclosedContract previous = cache.asMap().putIfAbsent(contract.getContractId(), built);
+        return previous != null ? previous : built;
+    }
+
+    private static CommandsOuterClass.DisclosedContract build(Contract contract) {
+        byte[] blob = Base64.getDecoder().decode(contract.getCreatedEventBlob());
+        return CommandsOuterClass.DisclosedContract.newBuilder()
+                .setTemplateId(parseTemplateIdentifier(contract.getTemplateId()))
+                .setContractId(contract.getContractId())
+                // the decoded array is not shared, so it is wrapped rather than copied
+                .setCreatedEventBlob(UnsafeByteOperations.unsafeWrap(blob))
+                .build();
+    }
+
+    private static ValueOuterClass.Identifier parseTemplateIdentifier(String templateIdStr) {
+        int moduleStart = templateIdStr.indexOf(':');
+        int entityStart = moduleStart < 0 ? -1 : templateIdStr.indexOf(':', moduleStart + 1);
+        if (entityStart < 0) {
+            throw new IllegalArgumentException("Invalid templateId format: " + templateIdStr);
+        }
+        // the entity name keeps any further colons
+        return ValueOuterClass.Identifier.newBuilder()
+                .setPackageId(templateIdStr.substring(0, moduleStart))
+                .setModuleName(templateIdStr.substring(moduleStart + 1, entityStart))
+                .setEntityName(templateIdStr.substring(entityStart + 1))
+                .build();
+    }
+}
@@ -4,38 +4,55 @@
 package com.digitalasset.quickstart.ledger;
 
 import com.daml.ledger.api.v2.*;
-import com.daml.ledger.api.v2.admin.UserManagementServiceGrpc;
 import com.daml.ledger.api.v2.admin.UserManagementServiceOuterClass;
 import com.digitalasset.quickstart.config.LedgerConfig;
-import com.digitalasset.quickstart.oauth.Interceptor;
+import com.digitalasset.quickstart.oauth.ServiceTokenProvider;
+import com.digitalasset.quickstart.utility.AsyncTtlCache;
+import com.digitalasset.quickstart.utility.ConverterRegistry;
 import com.digitalasset.quickstart.utility.LoggingSpanHelper;
-import com.digitalasset.transcode.Converter;
-import com.digitalasset.transcode.codec.proto.ProtobufCodec;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.PriorityClass;
+import com.digitalasset.quickstart.utility.RequestDeadline;
 import com.digitalasset.transcode.java.Choice;
 import com.digitalasset.transcode.java.ContractId;
 import com.digitalasset.transcode.java.Template;
-import com.digitalasset.transcode.java.Utils;
-import com.digitalasset.transcode.schema.Dictionary;
 import com.digitalasset.transcode.schema.Identifier;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
-import daml.Daml;
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.Channel;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongHistogram;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
 
 @Component
 public class LedgerApi {
@@ -51,49 +68,115 @@ public class LedgerApi {
         APP_PROVIDER_USER_ID = appId;
     }
 
-    private final CommandSubmissionServiceGrpc.CommandSubmissionServiceFutureStub submission;
-    private final CommandServiceGrpc.CommandServiceFutureStub commands;
-    private final UserManagementServiceGrpc.UserManagementServiceFutureStub userManagement;
+    // Proto template identifiers are immutable, so one instance per template is shared by all commands
+    private static final Map<String, ValueOuterClass.Identifier> IDENTIFIERS = new ConcurrentHashMap<>();
+    private static final Attributes TREE = Metrics.attributes("mode", "tree");
+    private static final Attributes LEAN = Metrics.attributes("mode", "lean");
+
+    private final ParticipantRouter participants;
     private final StateServiceGrpc.StateServiceFutureStub stateService;
-    private final Dictionary<Converter<Object, ValueOuterClass.Value>> dto2Proto;
-    private final Dictionary<Converter<ValueOuterClass.Value, Object>> proto2Dto;
+    private final ConverterRegistry converters;
+    private final WriteThroughContractCache contractCache;
+    private final CommandBatcher batcher;
+    private final ContractSequencer sequencer = new ContractSequencer();
+    private final RetryPolicy retryPolicy;
+    private final AsyncTtlCache<List<String>, List<UserManagementServiceOuterClass.Right>> userRights;
+    private final AsyncTtlCache<String, UserManagementServiceOuterClass.User> userInfo;
+    private final com.google.protobuf.Duration deduplicationPeriod;
+    private final int grantRightsBatchSize;
+    private final int grantRightsParallelism;
+    private final LongHistogram responseSize;
+    private final DoubleHistogram resultDecodeDuration;
 
     private final Logger logger = LoggerFactory.getLogger(LedgerApi.class);
 
     @Autowired
-    public LedgerApi(LedgerConfig ledgerConfig, Interceptor oAuth2ClientInterceptor) {
-        ManagedChannel channel = ManagedChannelBuilder
-                .forAddress(ledgerConfig.getHost(), ledgerConfig.getPort())
-                .usePlaintext()
-                .intercept(oAuth2ClientInterceptor)
+    public LedgerApi(
+            LedgerConfig ledgerConfig,
+            ServiceTokenProvider serviceTokenProvider,
+            ConverterRegistry converters,
+            WriteThroughContractCache contractCache
+    ) {
+        participants = new ParticipantRouter(ledgerConfig, serviceTokenProvider.callCredentials(), APP_ID);
+
+        stateService = StateServiceGrpc.newFutureStub(participants.defaultParticipant().channel);
+
+        this.converters = converters;
+        this.contractCache = contractCache;
+        this.retryPolicy = new RetryPolicy(ledgerConfig);
+        this.responseSize = Metrics.meter()
+                .histogramBuilder("backend.ledger.response.size")
+                .setDescription("Serialized size of command responses, by mode (tree or lean)")
+                .setUnit("By")
+                .ofLongs()
                 .build();
+        this.resultDecodeDuration = Metrics.meter()
+                .histogramBuilder("backend.ledger.result.decode.duration")
+                .setDescription("Time spent decoding exercise results from transaction trees")
+                .setUnit("ms")
+                .build();
+        this.deduplicationPeriod = com.google.protobuf.Duration.newBuilder()
+                .setSeconds(ledgerConfig.getDeduplicationPeriodSeconds())
+                .build();
+        this.grantRightsBatchSize = ledgerConfig.getGrantRightsBatchSize();
+        this.grantRightsParallelism = ledgerConfig.getGrantRightsParallelism();
+        Duration userCacheTtl = Duration.ofSeconds(ledgerConfig.getUserCacheTtlSeconds());
+        this.userRights = new AsyncTtlCache<>("user.rights", userCacheTtl, ledgerConfig.getUserCacheMaxEntries());
+        this.userInfo = new AsyncTtlCache<>("user.info", userCacheTtl, ledgerConfig.getUserCacheMaxEntries());
+        this.batcher = ledgerConfig.isBatchEnabled()
+                ? new CommandBatcher(
+                        (batchParty, cmds, batchCommandId) ->
+                                submitAndWaitForTree(commandsFor(batchParty, batchCommandId, cmds, List.of()).build()),
+                        ledgerConfig.getBatchWindowMillis(),
+                        ledgerConfig.getBatchMaxSize()
+                )
+                : null;
+    }
 
-        // Single log statement, not duplicating attributes for spans, so leaving as-is:
-        logger.atInfo()
-                .addKeyValue("host", ledgerConfig.getHost())
-                .addKeyValue("port", ledgerConfig.getPort())
-                .log("Connected to ledger");
-
-        submission = CommandSubmissionServiceGrpc.newFutureStub(channel);
-        commands = CommandServiceGrpc.newFutureStub(channel);
-        userManagement = UserManagementServiceGrpc.newFutureStub(channel);
-        stateService = StateServiceGrpc.newFutureStub(channel);
-
-        ProtobufCodec protoCodec = new ProtobufCodec();
-        dto2Proto = Utils.getConverters(Daml.ENTITIES, protoCodec);
-        proto2Dto = Utils.getConverters(protoCodec, Daml.ENTITIES);
+    @PreDestroy
+    void shutdown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+        retryPolicy.shutdown();
+        participants.shutdown();
     }
 
+    /**
+     * Grants the backend's user actAs and readAs rights on the participant hosting {@code actAs}, unless its cached
+     * rights there show it already holds them.
+     */
     public CompletableFuture<Void> grantRights(String actAs, String readAs) {
+        ParticipantConnection participant = participants.forParty(actAs);
         Map<String, Object> attrs = new HashMap<>();
         attrs.put("userId", APP_PROVIDER_USER_ID);
+        attrs.put("participant", participant.name);
         attrs.put("actAs", actAs);
         attrs.put("readAs", readAs);
 
+        // the lookup may complete on a gRPC callback thread; the grant still runs in the caller's context
+        Context context = Context.current();
+        return heldRights(participant).thenCompose(held -> {
+            if (held.canActAs.contains(actAs) && held.canReadAs.contains(readAs)) {
+                LoggingSpanHelper.logDebug(logger, "User rights already granted", attrs);
+                return CompletableFuture.completedFuture(null);
+            }
+            try (Scope ignored = context.makeCurrent()) {
+                return grantRightsNow(participant, actAs, readAs, attrs);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> grantRightsNow(
+            ParticipantConnection participant,
+            String actAs,
+            String readAs,
+            Map<String, Object> attrs
+    ) {
         LoggingSpanHelper.logDebug(logger, "Attempting to grant user rights", attrs);
 
         return toCompletableFuture(
-                userManagement.grantUserRights(
+                participant.userManagement.grantUserRights(
                         UserManagementServiceOuterClass.GrantUserRightsRequest.newBuilder()
                                 .setUserId(APP_PROVIDER_USER_ID)
                                 .addAllRights(
@@ -116,20 +199,203 @@ public class LedgerApi {
                     if (ex != null) {
                         LoggingSpanHelper.logError(logger, "Failed to grant user rights", attrs, ex);
                     } else {
+                        invalidateUser(participant);
                         LoggingSpanHelper.logInfo(logger, "Successfully granted user rights", attrs);
                     }
                 });
     }
 
+    /**
+     * Grants the backend's user actAs and readAs rights for each of {@code parties} on the participant hosting it,
+     * sending the rights of up to {@code ledger.grant-rights-batch-size} parties per request and keeping at most
+     * {@code ledger.grant-rights-parallelism} requests in flight per participant, at {@link PriorityClass#BATCH}
+     * priority.
+     * <p>
+     * Parties the backend's cached rights already cover are skipped, so onboarding the same tenants again costs a
+     * single rights lookup per participant.
+     * <p>
+     * Never fails: the result maps each party whose rights could not be granted to the cause. A failed request
+     * fails all parties in it; granting is idempotent, so they can simply be submitted again.
+     */
+    public CompletableFuture<Map<String, Throwable>> grantRights(Collection<String> parties) {
+        // later chunks are started from gRPC callback threads, so they re-enter the caller's context (and deadline)
+        Context context = Context.current().with(PriorityClass.BATCH);
+        Map<ParticipantConnection, List<String>> byParticipant = new LinkedHashMap<>();
+        for (String party : new LinkedHashSet<>(parties)) {
+            byParticipant.computeIfAbsent(participants.forParty(party), p -> new ArrayList<>()).add(party);
+        }
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> granted = new ArrayList<>(byParticipant.size());
+        byParticipant.forEach((participant, hosted) -> granted.add(heldRights(participant).thenCompose(held -> {
+            List<String> missing = hosted.stream()
+                    .filter(party -> !held.canActAs.contains(party) || !held.canReadAs.contains(party))
+                    .toList();
+            return grantMissingRights(participant, missing, failures, context);
+        })));
+        return CompletableFuture.allOf(granted.toArray(CompletableFuture[]::new)).thenApply(unused -> failures);
+    }
+
+    private CompletableFuture<Void> grantMissingRights(
+            ParticipantConnection participant,
+            List<String> distinct,
+            Map<String, Throwable> failures,
+            Context context
+    ) {
+        if (distinct.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Queue<List<String>> chunks = new ConcurrentLinkedQueue<>(
+                Lists.partition(distinct, Math.max(1, grantRightsBatchSize)));
+        int lanes = Math.max(1, Math.min(grantRightsParallelism, chunks.size()));
+        List<CompletableFuture<Void>> running = new ArrayList<>(lanes);
+        Map<String, Throwable> participantFailures = new ConcurrentHashMap<>();
+        for (int i = 0; i < lanes; i++) {
+            running.add(grantNextChunk(participant, chunks, participantFailures, context));
+        }
+        Map<String, Object> attrs = Map.of(
+                "userId", APP_PROVIDER_USER_ID, "participant", participant.name, "parties.count", distinct.size());
+        return CompletableFuture.allOf(running.toArray(CompletableFuture[]::new))
+                .thenAccept(unused -> {
+                    invalidateUser(participant);
+                    failures.putAll(participantFailures);
+                    Map<String, Object> doneAttrs = new HashMap<>(attrs);
+                    doneAttrs.put("failed.count", participantFailures.size());
+                    LoggingSpanHelper.logInfo(logger, "Granted user rights in bulk", doneAttrs);
+                });
+    }
+
+    private CompletableFuture<Void> grantNextChunk(
+            ParticipantConnection participant,
+            Queue<List<String>> chunks,
+            Map<String, Throwable> failures,
+            Context context
+    ) {
+        List<String> chunk = chunks.poll();
+        if (chunk == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<?> granted;
+        try (Scope ignored = context.makeCurrent()) {
+            granted = grantRightsChunk(participant, chunk);
+        }
+        return granted
+                .handle((res, ex) -> {
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        chunk.forEach(party -> failures.put(party, cause));
+                    }
+                    return null;
+                })
+                .thenCompose(unused -> grantNextChunk(participant, chunks, failures, context));
+    }
+
+    private CompletableFuture<UserManagementServiceOuterClass.GrantUserRightsResponse> grantRightsChunk(
+            ParticipantConnection participant,
+            List<String> parties
+    ) {
+        Map<String, Object> attrs = Map.of(
+                "userId", APP_PROVIDER_USER_ID, "participant", participant.name, "parties.count", parties.size());
+        UserManagementServiceOuterClass.GrantUserRightsRequest.Builder request =
+                UserManagementServiceOuterClass.GrantUserRightsRequest.newBuilder().setUserId(APP_PROVIDER_USER_ID);
+        for (String party : parties) {
+            request.addRights(UserManagementServiceOuterClass.Right.newBuilder()
+                    .setCanReadAs(UserManagementServiceOuterClass.Right.CanReadAs.newBuilder().setParty(party)));
+            request.addRights(UserManagementServiceOuterClass.Right.newBuilder()
+                    .setCanActAs(UserManagementServiceOuterClass.Right.CanActAs.newBuilder().setParty(party)));
+        }
+        PriorityClass priority = PriorityClass.current();
+        return retryPolicy.execute(() -> participant.limiter.execute(priority,
+                        () -> toCompletableFuture(participant.userManagement.grantUserRights(request.build()))), attrs)
+                .whenComplete((res, ex) -> {
+                    if (ex != null) {
+                        LoggingSpanHelper.logError(logger, "Failed to grant user rights", attrs, ex);
+                    } else {
+                        LoggingSpanHelper.logDebug(logger, "Granted user rights", attrs);
+                    }
+                });
+    }
+
+    /**
+     * The rights of {@code userId} on the default participant, served from a cache that {@link #grantRights}
+     * invalidates.
+     */
     public CompletableFuture<List<UserManagementServiceOuterClass.Right>> fetchUserRights(String userId) {
+        return fetchUserRights(participants.defaultParticipant(), userId);
+    }
+
+    /**
+     * The user info of {@code userId} on the default participant, served from a cache that {@link #grantRights}
+     * invalidates.
+     */
+    public CompletableFuture<UserManagementServiceOuterClass.User> fetchUserInfo(String userId) {
+        return userInfo.get(userId, id -> RequestDeadline.detached(() -> loadUserInfo(id)));
+    }
+
+    /**
+     * Whether the backend's user may act as {@code party} on the participant hosting it. Answered locally once the
+     * user's rights there are cached.
+     */
+    public CompletableFuture<Boolean> canActAs(String party) {
+        return fetchUserRights(participants.forParty(party), APP_PROVIDER_USER_ID).thenApply(rights -> rights.stream()
+                .anyMatch(right -> right.hasCanActAs() && right.getCanActAs().getParty().equals(party)));
+    }
+
+    /**
+     * Users and their rights are local to a participant, so they are cached per participant.
+     */
+    private CompletableFuture<List<UserManagementServiceOuterClass.Right>> fetchUserRights(
+            ParticipantConnection participant,
+            String userId
+    ) {
+        // concurrent callers share the load, so it must not be cut short by the first caller's request deadline
+        return userRights.get(List.of(participant.name, userId),
+                key -> RequestDeadline.detached(() -> loadUserRights(participant, userId)));
+    }
+
+    private void invalidateUser(ParticipantConnection participant) {
+        userRights.invalidate(List.of(participant.name, APP_PROVIDER_USER_ID));
+        if (participant == participants.defaultParticipant()) {
+            userInfo.invalidate(APP_PROVIDER_USER_ID);
+        }
+    }
+
+    /**
+     * The parties the backend's user may act and read as on {@code participant}, according to its cached rights. If
+     * they cannot be read, none are assumed, so callers grant everything they need; granting is idempotent.
+     */
+    private CompletableFuture<HeldRights> heldRights(ParticipantConnection participant) {
+        return fetchUserRights(participant, APP_PROVIDER_USER_ID).handle((rights, ex) -> {
+            HeldRights held = new HeldRights();
+            if (ex != null) {
+                LoggingSpanHelper.logDebug(logger, "Could not read user rights, granting all requested rights",
+                        Map.of("userId", APP_PROVIDER_USER_ID, "participant", participant.name,
+                                "error", String.valueOf(ex.getMessage())));
+                return held;
+            }
+            for (UserManagementServiceOuterClass.Right right : rights) {
+                if (right.hasCanActAs()) {
+                    held.canActAs.add(right.getCanActAs().getParty());
+                } else if (right.hasCanReadAs()) {
+                    held.canReadAs.add(right.getCanReadAs().getParty());
+                }
+            }
+            return held;
+        });
+    }
+
+    private CompletableFuture<List<UserManagementServiceOuterClass.Right>> loadUserRights(
+            ParticipantConnection participant,
+            String userId
+    ) {
         Map<String, Object> attrs = new HashMap<>();
         attrs.put("userId", userId);
+        attrs.put("participant", participant.name);
 
         LoggingSpanHelper.logDebug(logger, "Fetching user rights", attrs);
 
         CompletableFuture<UserManagementServiceOuterClass.ListUserRightsResponse> response =
                 toCompletableFuture(
-                        userManagement.listUserRights(
+                        participant.userManagement.listUserRights(
                                 UserManagementServiceOuterClass.ListUserRightsRequest.newBuilder().setUserId(userId).build()
                         )
                 );
@@ -147,7 +413,7 @@ public class LedgerApi {
                 });
     }
 
-    public CompletableFuture<UserManagementServiceOuterClass.User> fetchUserInfo(String userId) {
+    private CompletableFuture<UserManagementServiceOuterClass.User> loadUserInfo(String userId) {
         Map<String, Object> attrs = new HashMap<>();
         attrs.put("userId", userId);
 
@@ -156,7 +422,7 @@ public class LedgerApi {
         UserManagementServiceOuterClass.GetUserRequest request =
                 UserManagementServiceOuterClass.GetUserRequest.newBuilder().setUserId(userId).build();
 
-        return toCompletableFuture(userManagement.getUser(request))
+        return toCompletableFuture(participants.defaultParticipant().userManagement.getUser(request))
                 .thenApply(UserManagementServiceOuterClass.GetUserResponse::getUser)
                 .whenComplete((user, ex) -> {
                     if (ex != null) {
@@ -187,7 +453,7 @@ public class LedgerApi {
         LoggingSpanHelper.logDebug(logger, "Creating contract", attrs);
 
         CommandsOuterClass.Command.Builder command = CommandsOuterClass.Command.newBuilder();
-        ValueOuterClass.Value payload = dto2Proto.template(entity.templateId()).convert(entity);
+        ValueOuterClass.Value payload = converters.templateEncoder(entity.templateId()).convert(entity);
 
         command.getCreateBuilder()
                 .setTemplateId(toIdentifier(entity.templateId()))
@@ -195,6 +461,7 @@ public class LedgerApi {
 
         LoggingSpanHelper.addEventWithAttributes(currentSpan, "built ledger create command", attrs);
 
+        // creates keep the configured submission mode and are never batched, see CommandBatcher
         return submitCommands(party, List.of(command.build()), commandId)
                 .<Void>thenApply(submitResponse -> null)
                 .whenComplete((res, ex) -> {
@@ -226,6 +493,57 @@ public class LedgerApi {
             C choice,
             String commandId,
             List<CommandsOuterClass.DisclosedContract> disclosedContracts
+    ) {
+        return exercise(party, contractId, choice, commandId, disclosedContracts, false);
+    }
+
+    /**
+     * Like {@link #exerciseAndGetResult}, but queued behind other sequenced commands on the same contract.
+     * <p>
+     * Use this for consuming choices that recreate their contract and are invoked concurrently on the same
+     * contract: each command runs against the contract id produced by the previous one instead of failing
+     * with contention.
+     */
+    @WithSpan
+    public <T extends Template, Result, C extends Choice<T, Result>>
+    CompletableFuture<Result> exerciseSequenced(
+            @SpanAttribute("backend.party") String party,
+            ContractId<T> contractId,
+            C choice,
+            String commandId
+    ) {
+        return exercise(party, contractId, choice, commandId, List.of(), true);
+    }
+
+    /**
+     * Like {@link #exerciseAndGetResult}, for consuming choices whose result is not needed and that create no
+     * contracts readers look up, e.g. choices archiving their contract and returning {@code ()}.
+     * <p>
+     * The command is submitted with {@code SubmitAndWait} (or only tracked to its completion in
+     * {@code COMPLETION_STREAM} mode), so no transaction tree is transferred or decoded; the returned future holds
+     * the update id. The exercised contract is recorded as archived in the {@link WriteThroughContractCache}, so
+     * readers stop seeing it right away; anything else the choice changes becomes visible once the read side has
+     * ingested it.
+     */
+    @WithSpan
+    public <T extends Template, Result, C extends Choice<T, Result>>
+    CompletableFuture<String> exerciseWithoutResult(
+            @SpanAttribute("backend.party") String party,
+            ContractId<T> contractId,
+            C choice,
+            String commandId
+    ) {
+        return exerciseWithoutResult(party, contractId, choice, commandId, List.of());
+    }
+
+    @WithSpan
+    public <T extends Template, Result, C extends Choice<T, Result>>
+    CompletableFuture<String> exerciseWithoutResult(
+            @SpanAttribute("backend.party") String party,
+            ContractId<T> contractId,
+            C choice,
+            String commandId,
+            List<CommandsOuterClass.DisclosedContract> disclosedContracts
     ) {
         Span currentSpan = Span.current();
 
@@ -236,47 +554,87 @@ public class LedgerApi {
         attrs.put("templateId", choice.templateId().toString());
         attrs.put("applicationId", APP_ID);
         attrs.put("party", party);
+        attrs.put("lean", true);
 
         LoggingSpanHelper.setSpanAttributes(currentSpan, attrs);
         LoggingSpanHelper.logDebug(logger, "Exercising choice", attrs);
 
         CommandsOuterClass.Command.Builder cmdBuilder = CommandsOuterClass.Command.newBuilder();
-        ValueOuterClass.Value payload =
-                dto2Proto.choiceArgument(choice.templateId(), choice.choiceName()).convert(choice);
-
         cmdBuilder.getExerciseBuilder()
                 .setTemplateId(toIdentifier(choice.templateId()))
                 .setContractId(contractId.getContractId)
                 .setChoice(choice.choiceName())
-                .setChoiceArgument(payload);
+                .setChoiceArgument(converters.choiceArgumentEncoder(choice.templateId(), choice.choiceName()).convert(choice));
 
-        CommandsOuterClass.Commands.Builder commandsBuilder = CommandsOuterClass.Commands.newBuilder()
-                .setApplicationId(APP_ID)
-                .setCommandId(commandId)
-                .addActAs(party)
-                .addReadAs(party)
-                .addCommands(cmdBuilder.build());
+        return submitAndWait(commandsFor(party, commandId, List.of(cmdBuilder.build()), disclosedContracts).build())
+                .whenComplete((updateId, ex) -> {
+                    if (ex != null) {
+                        LoggingSpanHelper.logError(logger, "Failed to exercise choice", attrs, ex);
+                        LoggingSpanHelper.recordException(currentSpan, ex);
+                    } else {
+                        // the consumed contract is known without the tree, so reads stop returning it right away
+                        contractCache.archive(contractId.getContractId);
+                        LoggingSpanHelper.logInfo(logger, "Completed exercising choice", Map.of("commandId", commandId, "updateId", updateId));
+                    }
+                });
+    }
 
-        if (disclosedContracts != null && !disclosedContracts.isEmpty()) {
-            commandsBuilder.addAllDisclosedContracts(disclosedContracts);
-        }
+    private <T extends Template, Result, C extends Choice<T, Result>>
+    CompletableFuture<Result> exercise(
+            String party,
+            ContractId<T> contractId,
+            C choice,
+            String commandId,
+            List<CommandsOuterClass.DisclosedContract> disclosedContracts,
+            boolean sequenced
+    ) {
+        Span currentSpan = Span.current();
 
-        CommandServiceOuterClass.SubmitAndWaitRequest request =
-                CommandServiceOuterClass.SubmitAndWaitRequest.newBuilder()
-                        .setCommands(commandsBuilder.build())
-                        .build();
+        Map<String, Object> attrs = new HashMap<>();
+        attrs.put("commandId", commandId);
+        attrs.put("contractId", contractId.getContractId);
+        attrs.put("choiceName", choice.choiceName());
+        attrs.put("templateId", choice.templateId().toString());
+        attrs.put("applicationId", APP_ID);
+        attrs.put("party", party);
+        attrs.put("sequenced", sequenced);
 
-        LoggingSpanHelper.addEventWithAttributes(currentSpan, "built ledger submit request", attrs);
-        LoggingSpanHelper.logInfo(logger, "Submitting ledger command", attrs);
+        LoggingSpanHelper.setSpanAttributes(currentSpan, attrs);
+        LoggingSpanHelper.logDebug(logger, "Exercising choice", attrs);
 
-        return toCompletableFuture(commands.submitAndWaitForTransactionTree(request))
-                .thenApply(response -> {
-                    TransactionOuterClass.TransactionTree txTree = response.getTransaction();
+        ValueOuterClass.Value payload =
+                converters.choiceArgumentEncoder(choice.templateId(), choice.choiceName()).convert(choice);
+
+        Function<String, CompletableFuture<CommandResult>> submit = targetContractId -> {
+            CommandsOuterClass.Command.Builder cmdBuilder = CommandsOuterClass.Command.newBuilder();
+            cmdBuilder.getExerciseBuilder()
+                    .setTemplateId(toIdentifier(choice.templateId()))
+                    .setContractId(targetContractId)
+                    .setChoice(choice.choiceName())
+                    .setChoiceArgument(payload);
+
+            LoggingSpanHelper.addEventWithAttributes(currentSpan, "built ledger submit request", attrs);
+            LoggingSpanHelper.logInfo(logger, "Submitting ledger command", attrs);
+
+            if (batcher != null && (disclosedContracts == null || disclosedContracts.isEmpty())) {
+                return batcher.submit(party, cmdBuilder.build(), commandId);
+            }
+            return submitAndWaitForTree(
+                    commandsFor(party, commandId, List.of(cmdBuilder.build()), disclosedContracts).build()
+            ).thenApply(tree -> new CommandResult(tree, tree.getRootEventIdsCount() > 0 ? tree.getRootEventIds(0) : null));
+        };
+
+        CompletableFuture<CommandResult> submitted = sequenced
+                ? sequencer.sequence(contractId.getContractId, submit)
+                : submit.apply(contractId.getContractId);
+
+        return submitted
+                .thenApply(commandResult -> {
+                    TransactionOuterClass.TransactionTree txTree = commandResult.transaction;
                     long offset = txTree.getOffset();
                     String workflowId = txTree.getWorkflowId();
-                    String rootEventId = txTree.getRootEventIdsCount() > 0 ? txTree.getRootEventIds(0) : "";
-                    TransactionOuterClass.TreeEvent event = txTree.getEventsByIdMap().get(rootEventId);
-                    String eventId = event != null ? rootEventId : null;
+                    TransactionOuterClass.TreeEvent event = commandResult.rootEvent();
+                    String eventId = event != null ? commandResult.rootEventId : null;
 
                     Map<String, Object> completionAttrs = new HashMap<>(attrs);
                     completionAttrs.put("ledgerOffset", offset);
@@ -291,9 +649,11 @@ public class LedgerApi {
                     ValueOuterClass.Value resultPayload =
                             event != null ? event.getExercised().getExerciseResult() : ValueOuterClass.Value.getDefaultInstance();
 
+                    long decodeStart = System.nanoTime();
                     @SuppressWarnings("unchecked")
-                    Result result = (Result) proto2Dto.choiceResult(choice.templateId(), choice.choiceName())
+                    Result result = (Result) converters.choiceResultDecoder(choice.templateId(), choice.choiceName())
                             .convert(resultPayload);
+                    resultDecodeDuration.record(Metrics.millisSince(decodeStart));
                     return result;
                 })
                 .whenComplete((res, ex) -> {
@@ -333,23 +693,16 @@ public class LedgerApi {
         LoggingSpanHelper.setSpanAttributes(currentSpan, attrs);
         LoggingSpanHelper.logInfo(logger, "Submitting commands", attrs);
 
-        CommandsOuterClass.Commands.Builder commandsBuilder = CommandsOuterClass.Commands.newBuilder()
-                .setApplicationId(APP_ID)
-                .setCommandId(commandId)
-                .addActAs(party)
-                .addReadAs(party)
-                .addAllCommands(cmds);
-
-        if (disclosedContracts != null && !disclosedContracts.isEmpty()) {
-            commandsBuilder.addAllDisclosedContracts(disclosedContracts);
-        }
-
         CommandSubmissionServiceOuterClass.SubmitRequest request =
                 CommandSubmissionServiceOuterClass.SubmitRequest.newBuilder()
-                        .setCommands(commandsBuilder.build())
+                        .setCommands(commandsFor(party, commandId, cmds, disclosedContracts).build())
                         .build();
 
-        return toCompletableFuture(submission.submit(request))
+        // read here, as retries run on the retry scheduler outside the caller's context
+        PriorityClass priority = PriorityClass.current();
+        ParticipantConnection participant = participants.forParty(party);
+        return retryPolicy.execute(() -> participant.limiter.execute(priority, () -> participant.timed(
+                        () -> toCompletableFuture(participant.submission.submit(request)))), attrs)
                 .whenComplete((res, ex) -> {
                     if (ex != null) {
                         LoggingSpanHelper.logError(logger, "Failed to submit commands", attrs, ex);
@@ -360,8 +713,145 @@ public class LedgerApi {
                 });
     }
 
-    private static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenableFuture) {
+    private CompletableFuture<TransactionOuterClass.TransactionTree> submitAndWaitForTree(CommandsOuterClass.Commands cmds) {
+        Map<String, Object> attrs = Map.of("commandId", cmds.getCommandId(), "commands.count", cmds.getCommandsCount());
+        // each attempt holds a slot only while it is in flight, not while it backs off; the priority is read here,
+        // as retries run on the retry scheduler outside the caller's context
+        PriorityClass priority = PriorityClass.current();
+        ParticipantConnection participant = participants.forParty(cmds.getActAs(0));
+        return retryPolicy.execute(() -> participant.limiter.execute(priority, () -> participant.timed(
+                        () -> submitAndWaitForTreeOnce(participant, cmds))), attrs)
+                .thenApply(tree -> {
+                    // makes the backend's own writes readable before PQS has ingested them
+                    contractCache.apply(tree);
+                    return tree;
+                });
+    }
+
+    private CompletableFuture<String> submitAndWait(CommandsOuterClass.Commands cmds) {
+        Map<String, Object> attrs = Map.of("commandId", cmds.getCommandId(), "commands.count", cmds.getCommandsCount());
+        PriorityClass priority = PriorityClass.current();
+        ParticipantConnection participant = participants.forParty(cmds.getActAs(0));
+        return retryPolicy.execute(() -> participant.limiter.execute(priority, () -> participant.timed(
+                () -> submitAndWaitOnce(participant, cmds))), attrs);
+    }
+
+    private CompletableFuture<String> submitAndWaitOnce(ParticipantConnection participant, CommandsOuterClass.Commands cmds) {
+        if (participant.completionTracker != null) {
+            return participant.completionTracker
+                    .track(cmds.getActAs(0), cmds.getCommandId(), commandId -> toCompletableFuture(
+                            participant.submission.submit(CommandSubmissionServiceOuterClass.SubmitRequest.newBuilder().setCommands(cmds).build())
+                    ))
+                    .thenApply(completion -> {
+                        responseSize.record(completion.getSerializedSize(), LEAN);
+                        return completion.getUpdateId();
+                    });
+        }
+        CommandServiceOuterClass.SubmitAndWaitRequest request =
+                CommandServiceOuterClass.SubmitAndWaitRequest.newBuilder().setCommands(cmds).build();
+        return toCompletableFuture(participant.commands.submitAndWait(request))
+                .thenApply(response -> {
+                    responseSize.record(response.getSerializedSize(), LEAN);
+                    return response.getUpdateId();
+                });
+    }
+
+    private CompletableFuture<TransactionOuterClass.TransactionTree> submitAndWaitForTreeOnce(
+            ParticipantConnection participant,
+            CommandsOuterClass.Commands cmds
+    ) {
+        if (participant.completionTracker != null) {
+            // Only the completion is awaited; the tree is fetched afterwards, and only because the caller needs it
+            String party = cmds.getActAs(0);
+            return participant.completionTracker
+                    .track(party, cmds.getCommandId(), commandId -> toCompletableFuture(
+                            participant.submission.submit(CommandSubmissionServiceOuterClass.SubmitRequest.newBuilder().setCommands(cmds).build())
+                    ))
+                    .thenCompose(completion -> toCompletableFuture(
+                            participant.updateService.getTransactionTreeById(
+                                    UpdateServiceOuterClass.GetTransactionByIdRequest.newBuilder()
+                                            .setUpdateId(completion.getUpdateId())
+                                            .addRequestingParties(party)
+                                            .build()
+                            )
+                    ))
+                    .thenApply(response -> {
+                        responseSize.record(response.getSerializedSize(), TREE);
+                        return response.getTransaction();
+                    });
+        }
+        CommandServiceOuterClass.SubmitAndWaitRequest request =
+                CommandServiceOuterClass.SubmitAndWaitRequest.newBuilder().setCommands(cmds).build();
+        return toCompletableFuture(participant.commands.submitAndWaitForTransactionTree(request))
+                .thenApply(response -> {
+                    responseSize.record(response.getSerializedSize(), TREE);
+                    return response.getTransaction();
+                });
+    }
+
+    private CommandsOuterClass.Commands.Builder commandsFor(
+            String party,
+            String commandId,
+            List<CommandsOuterClass.Command> cmds,
+            List<CommandsOuterClass.DisclosedContract> disclosedContracts
+    ) {
+        CommandsOuterClass.Commands.Builder commandsBuilder = CommandsOuterClass.Commands.newBuilder()
+                .setApplicationId(APP_ID)
+                .setCommandId(commandId)
+                .setDeduplicationDuration(deduplicationPeriod)
+                .addActAs(party)
+                .addReadAs(party)
+                .addAllCommands(cmds);
+
+        if (disclosedContracts != null && !disclosedContracts.isEmpty()) {
+            commandsBuilder.addAllDisclosedContracts(disclosedContracts);
+        }
+        return commandsBuilder;
+    }
+
+    /**
+     * The name of the participant that commands of {@code party} are routed to.
+     */
+    String participantOf(String party) {
+        return participants.forParty(party).name;
+    }
+
+    /**
+     * The pooled Ledger API channel of the default participant, for components in this package that open their
+     * own streams.
+     */
+    Channel channel() {
+        return participants.defaultParticipant().channel;
+    }
+
+    /**
+     * Re-reads which participant hosts which party, and the configured party routes, e.g. after parties were
+     * allocated or migrated; served by {@code POST /admin/participant-routes/refresh}. The routing table is
+     * otherwise refreshed every {@code ledger.routing-refresh-seconds}.
+     */
+    public CompletableFuture<Void> refreshParticipantRoutes() {
+        return participants.refresh();
+    }
+
+    /**
+     * Whether a command failed because the ledger already applied a submission with the same command id within
+     * the deduplication period ({@code ledger.deduplication-period-seconds}).
+     */
+    public static boolean isDuplicateCommand(Throwable t) {
+        return RetryPolicy.isDuplicateCommand(t);
+    }
+
+    /**
+     * Adapts a gRPC stub future. Cancelling the result cancels the gRPC call, and so does aborting the
+     * {@link RequestDeadline} of the request being served.
+     */
+    static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenableFuture) {
         CompletableFuture<T> completableFuture = new CompletableFuture<>();
+        completableFuture.whenComplete((result, ex) -> {
+            if (completableFuture.isCancelled()) {
+                listenableFuture.cancel(true);
+            }
+        });
         Futures.addCallback(listenableFuture, new FutureCallback<T>() {
             @Override
             public void onSuccess(T result) {
@@ -373,14 +863,23 @@ public class LedgerApi {
                 completableFuture.completeExceptionally(t);
             }
         }, MoreExecutors.directExecutor());
+        RequestDeadline.current().ifPresent(deadline -> deadline.cancelOnAbort(completableFuture));
         return completableFuture;
     }
 
-    private static ValueOuterClass.Identifier toIdentifier(Identifier id) {
-        return ValueOuterClass.Identifier.newBuilder()
-                .setPackageId(id.packageNameAsPackageId())
-                .setModuleName(id.moduleName())
-                .setEntityName(id.entityName())
-                .build();
+    private static final class HeldRights {
+        private final Set<String> canActAs = new HashSet<>();
+        private final Set<String> canReadAs = new HashSet<>();
+    }
+
+    static ValueOuterClass.Identifier toIdentifier(Identifier id) {
+        return IDENTIFIERS.computeIfAbsent(
+                id.packageNameAsPackageId() + ":" + id.qualifiedName(),
+                key -> ValueOuterClass.Identifier.newBuilder()
+                        .setPackageId(id.packageNameAsPackageId())
+                        .setModuleName(id.moduleName())
+                        .setEntityName(id.entityName())
+                        .build()
+        );
     }
 }
@@ -0,0 +1,241 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.digitalasset.quickstart.config.LedgerConfig;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.RequestDeadline;
+import io.grpc.CallCredentials;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ConnectivityState;
+import io.grpc.Deadline;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.handler.ssl.SslContextBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLException;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of connections to the Ledger API of one participant that presents itself as a single {@link Channel}.
+ * <p>
+ * Each call is placed on the next connection in round-robin order, so stubs created on the pool spread their
+ * load over {@code ledger.channel-count} HTTP/2 connections instead of sharing one connection's stream limit.
+ * Transport settings (keepalive, message size, flow-control window, compression, TLS and the native epoll
+ * transport where available) come from {@link LedgerConfig}. Unary calls made on behalf of an HTTP request get
+ * the request's {@link RequestDeadline} as their gRPC deadline. The number of calls in flight on each connection
+ * is exported as {@code backend.ledger.channel.inflight}, attributed with the participant name.
+ */
+class LedgerChannelPool extends Channel {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerChannelPool.class);
+
+    private final List<ManagedChannel> managedChannels = new ArrayList<>();
+    private final List<Channel> channels = new ArrayList<>();
+    private final List<AtomicInteger> inFlight = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final EventLoopGroup eventLoopGroup;
+    private final String authority;
+
+    LedgerChannelPool(String participant, String host, int port, LedgerConfig config, CallCredentials callCredentials) {
+        int size = Math.max(1, config.getChannelCount());
+        boolean epoll = config.isNativeTransport() && Epoll.isAvailable();
+        this.eventLoopGroup = epoll ? new EpollEventLoopGroup() : null;
+
+        for (int i = 0; i < size; i++) {
+            ManagedChannel managed = builder(host, port, config, epoll).build();
+            AtomicInteger counter = new AtomicInteger();
+            managedChannels.add(managed);
+            inFlight.add(counter);
+
+            List<ClientInterceptor> chain = new ArrayList<>();
+            chain.add(callCredentials(callCredentials));
+            if (!config.getCompression().isBlank()) {
+                chain.add(compression(config.getCompression()));
+            }
+            chain.add(requestDeadline());
+            // innermost, so it counts every call that reaches the connection
+            chain.add(0, inFlightCounter(counter));
+            channels.add(ClientInterceptors.intercept(managed, chain));
+        }
+        this.authority = managedChannels.get(0).authority();
+
+        Metrics.meter()
+                .gaugeBuilder("backend.ledger.channel.inflight")
+                .setDescription("Ledger API calls in flight, per pooled connection")
+                .ofLongs()
+                .buildWithCallback(measurement -> {
+                    for (int i = 0; i < inFlight.size(); i++) {
+                        measurement.record(inFlight.get(i).get(), Metrics.attributes("participant", participant, "channel", String.valueOf(i)));
+                    }
+                });
+
+        logger.atInfo()
+                .addKeyValue("participant", participant)
+                .addKeyValue("host", host)
+                .addKeyValue("port", port)
+                .addKeyValue("channels", size)
+                .addKeyValue("tls", config.isTlsEnabled())
+                .addKeyValue("epoll", epoll)
+                .log("Created ledger channel pool");
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        int index = Math.floorMod(next.getAndIncrement(), channels.size());
+        return channels.get(index).newCall(method, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return authority;
+    }
+
+    /**
+     * Whether at least one pooled connection is connected, connecting or idle, i.e. not failing.
+     */
+    boolean isHealthy() {
+        for (ManagedChannel managed : managedChannels) {
+            ConnectivityState state = managed.getState(false);
+            if (state != ConnectivityState.TRANSIENT_FAILURE && state != ConnectivityState.SHUTDOWN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void shutdown() {
+        managedChannels.forEach(ManagedChannel::shutdown);
+        try {
+            for (ManagedChannel channel : managedChannels) {
+                channel.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (eventLoopGroup != null) {
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+
+    private NettyChannelBuilder builder(String host, int port, LedgerConfig config, boolean epoll) {
+        NettyChannelBuilder builder = NettyChannelBuilder
+                .forAddress(host, port)
+                .keepAliveTime(config.getKeepAliveTimeSeconds(), TimeUnit.SECONDS)
+                .keepAliveTimeout(config.getKeepAliveTimeoutSeconds(), TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(config.isKeepAliveWithoutCalls())
+                .maxInboundMessageSize(config.getMaxInboundMessageSizeBytes())
+                .flowControlWindow(config.getFlowControlWindowBytes());
+
+        if (epoll) {
+            builder.eventLoopGroup(eventLoopGroup).channelType(EpollSocketChannel.class);
+        }
+
+        if (config.isTlsEnabled()) {
+            try {
+                SslContextBuilder ssl = GrpcSslContexts.forClient();
+                if (!config.getTlsTrustCertCollectionFile().isBlank()) {
+                    ssl.trustManager(new File(config.getTlsTrustCertCollectionFile()));
+                }
+                builder.useTransportSecurity().sslContext(ssl.build());
+            } catch (SSLException e) {
+                throw new IllegalStateException("Failed to set up TLS for the ledger connection", e);
+            }
+        } else {
+            builder.usePlaintext();
+        }
+        return builder;
+    }
+
+    private static ClientInterceptor callCredentials(CallCredentials credentials) {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+                    MethodDescriptor<ReqT, RespT> method,
+                    CallOptions callOptions,
+                    Channel next
+            ) {
+                return next.newCall(method, callOptions.withCallCredentials(credentials));
+            }
+        };
+    }
+
+    private static ClientInterceptor compression(String compressor) {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+                    MethodDescriptor<ReqT, RespT> method,
+                    CallOptions callOptions,
+                    Channel next
+            ) {
+                return next.newCall(method, callOptions.withCompression(compressor));
+            }
+        };
+    }
+
+    private static ClientInterceptor requestDeadline() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+                    MethodDescriptor<ReqT, RespT> method,
+                    CallOptions callOptions,
+                    Channel next
+            ) {
+                // streams (updates, completions, active contracts) outlive requests and keep their own deadlines
+                if (method.getType() != MethodDescriptor.MethodType.UNARY || callOptions.getDeadline() != null) {
+                    return next.newCall(method, callOptions);
+                }
+                return RequestDeadline.current()
+                        .map(deadline -> next.newCall(method, callOptions.withDeadline(
+                                Deadline.after(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS))))
+                        .orElseGet(() -> next.newCall(method, callOptions));
+            }
+        };
+    }
+
+    private static ClientInterceptor inFlightCounter(AtomicInteger counter) {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+                    MethodDescriptor<ReqT, RespT> method,
+                    CallOptions callOptions,
+                    Channel next
+            ) {
+                return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+                    @Override
+                    public void start(Listener<RespT> responseListener, Metadata headers) {
+                        counter.incrementAndGet();
+                        super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                            @Override
+                            public void onClose(Status status, Metadata trailers) {
+                                counter.decrementAndGet();
+                                super.onClose(status, trailers);
+                            }
+                        }, headers);
+                    }
+                };
+            }
+        };
+    }
+}
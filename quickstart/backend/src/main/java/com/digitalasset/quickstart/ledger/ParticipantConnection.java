@@ -0,0 +1,101 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.CommandServiceGrpc;
+import com.daml.ledger.api.v2.CommandSubmissionServiceGrpc;
+import com.daml.ledger.api.v2.UpdateServiceGrpc;
+import com.daml.ledger.api.v2.admin.PartyManagementServiceGrpc;
+import com.daml.ledger.api.v2.admin.UserManagementServiceGrpc;
+import com.digitalasset.quickstart.config.LedgerConfig;
+import com.digitalasset.quickstart.utility.AdaptiveConcurrencyLimiter;
+import com.digitalasset.quickstart.utility.Metrics;
+import io.grpc.CallCredentials;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Everything needed to submit commands to one participant node: its channel pool, the stubs (including user
+ * management, as users and their rights are local to a participant), the completion tracker (in
+ * {@code COMPLETION_STREAM} mode) and a concurrency limit of its own, so a slow participant does not hold back
+ * submissions to the others.
+ */
+final class ParticipantConnection {
+
+    final String name;
+    final LedgerChannelPool channel;
+    final CommandSubmissionServiceGrpc.CommandSubmissionServiceFutureStub submission;
+    final CommandServiceGrpc.CommandServiceFutureStub commands;
+    final UpdateServiceGrpc.UpdateServiceFutureStub updateService;
+    final PartyManagementServiceGrpc.PartyManagementServiceFutureStub partyManagement;
+    final UserManagementServiceGrpc.UserManagementServiceFutureStub userManagement;
+    final CompletionTracker completionTracker;
+    final AdaptiveConcurrencyLimiter limiter;
+
+    private final DoubleHistogram latency;
+    private final Attributes succeeded;
+    private final Attributes failed;
+
+    ParticipantConnection(
+            String name,
+            String host,
+            int port,
+            LedgerConfig ledgerConfig,
+            CallCredentials callCredentials,
+            String applicationId
+    ) {
+        this.name = name;
+        this.channel = new LedgerChannelPool(name, host, port, ledgerConfig, callCredentials);
+        this.submission = CommandSubmissionServiceGrpc.newFutureStub(channel);
+        this.commands = CommandServiceGrpc.newFutureStub(channel);
+        this.updateService = UpdateServiceGrpc.newFutureStub(channel);
+        this.partyManagement = PartyManagementServiceGrpc.newFutureStub(channel);
+        this.userManagement = UserManagementServiceGrpc.newFutureStub(channel);
+        this.completionTracker = ledgerConfig.getSubmissionMode() == LedgerConfig.SubmissionMode.COMPLETION_STREAM
+                ? new CompletionTracker(channel, applicationId,
+                        Duration.ofSeconds(ledgerConfig.getCompletionTimeoutSeconds()),
+                        Duration.ofSeconds(ledgerConfig.getCompletionStreamIdleSeconds()))
+                : null;
+        this.limiter = new AdaptiveConcurrencyLimiter(
+                // the default participant keeps the dependency name it had before routing existed
+                ParticipantRouter.DEFAULT.equals(name) ? "ledger" : "ledger-" + name,
+                ledgerConfig.getConcurrencyLimitInitial(),
+                ledgerConfig.getConcurrencyLimitMin(),
+                ledgerConfig.getConcurrencyLimitMax(),
+                Duration.ofMillis(ledgerConfig.getConcurrencyQueueTimeoutMillis()),
+                RetryPolicy::isOverload
+        );
+        this.latency = Metrics.meter()
+                .histogramBuilder("backend.ledger.participant.latency")
+                .setDescription("Latency of command submissions, per participant and outcome")
+                .setUnit("ms")
+                .build();
+        this.succeeded = Metrics.attributes("participant", name, "outcome", "success");
+        this.failed = Metrics.attributes("participant", name, "outcome", "failure");
+    }
+
+    /**
+     * Runs one submission attempt and records its latency.
+     */
+    <T> CompletableFuture<T> timed(Supplier<CompletableFuture<T>> attempt) {
+        long start = System.nanoTime();
+        return attempt.get().whenComplete((result, ex) ->
+                latency.record(Metrics.millisSince(start), ex == null ? succeeded : failed));
+    }
+
+    boolean isHealthy() {
+        return channel.isHealthy();
+    }
+
+    void shutdown() {
+        if (completionTracker != null) {
+            completionTracker.shutdown();
+        }
+        channel.shutdown();
+    }
+}
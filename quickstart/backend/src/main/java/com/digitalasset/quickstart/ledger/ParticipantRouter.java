@@ -0,0 +1,211 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.admin.PartyManagementServiceOuterClass;
+import com.digitalasset.quickstart.config.LedgerConfig;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import io.grpc.CallCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.digitalasset.quickstart.ledger.LedgerApi.toCompletableFuture;
+
+/**
+ * Routes each party's commands to the participant node hosting it.
+ * <p>
+ * The participant at {@code ledger.host}/{@code ledger.port} is the {@link #DEFAULT} one; further participants
+ * come from {@code ledger.participants}. The routing table is built from the parties each participant reports as
+ * local ({@code ListKnownParties}, which needs participant admin rights), overlaid with the explicit
+ * {@code ledger.party-routes}; parties found in neither go to the default participant, and a party hosted on
+ * several participants goes to the first one in configuration order. The table is rebuilt every
+ * {@code ledger.routing-refresh-seconds} and on {@link #refresh()} (exposed as
+ * {@code POST /admin/participant-routes/refresh}), re-reading {@code ledger.party-routes} each time, and swapped in
+ * as a whole. A participant that cannot be reached during a refresh keeps the parties it reported last.
+ * <p>
+ * The configured routes apply from the start. The first read of the hosted parties is awaited for up to
+ * {@code ledger.routing-initial-timeout-seconds} at startup, so commands are not sent to the default participant
+ * merely because the table was not built yet; if it takes longer, it is swapped in once it completes.
+ * <p>
+ * With only the default participant configured, nothing is looked up and all parties route to it.
+ * Exports {@code backend.ledger.participant.healthy} and {@code backend.ledger.participant.parties}.
+ */
+class ParticipantRouter {
+
+    static final String DEFAULT = "default";
+
+    private static final Logger logger = LoggerFactory.getLogger(ParticipantRouter.class);
+
+    private final LedgerConfig ledgerConfig;
+    private final Map<String, ParticipantConnection> participants = new LinkedHashMap<>();
+    private final Map<String, Set<String>> hostedParties = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refreshScheduler;
+    private volatile Map<String, ParticipantConnection> routes = Map.of();
+
+    ParticipantRouter(LedgerConfig ledgerConfig, CallCredentials callCredentials, String applicationId) {
+        this.ledgerConfig = ledgerConfig;
+        participants.put(DEFAULT, new ParticipantConnection(
+                DEFAULT, ledgerConfig.getHost(), ledgerConfig.getPort(), ledgerConfig, callCredentials, applicationId));
+        ledgerConfig.getParticipants().forEach((name, participant) -> {
+            if (DEFAULT.equals(name) || participant.getHost() == null || participant.getHost().isBlank()) {
+                throw new IllegalStateException("Invalid ledger participant configuration: " + name);
+            }
+            participants.put(name, new ParticipantConnection(
+                    name, participant.getHost(), participant.getPort(), ledgerConfig, callCredentials, applicationId));
+        });
+        ledgerConfig.getPartyRoutes().forEach((party, name) -> {
+            if (!participants.containsKey(name)) {
+                throw new IllegalStateException("Party " + party + " is routed to unknown ledger participant " + name);
+            }
+        });
+        this.routes = buildRoutes();
+
+        Metrics.meter()
+                .gaugeBuilder("backend.ledger.participant.healthy")
+                .setDescription("Whether the participant's connections are up (1) or failing (0)")
+                .ofLongs()
+                .buildWithCallback(measurement -> participants.values().forEach(participant ->
+                        measurement.record(participant.isHealthy() ? 1 : 0, Metrics.attributes("participant", participant.name))));
+        Metrics.meter()
+                .gaugeBuilder("backend.ledger.participant.parties")
+                .setDescription("Parties routed to the participant, not counting those routed to the default one by fallback")
+                .ofLongs()
+                .buildWithCallback(measurement -> {
+                    Map<String, Long> counts = new HashMap<>();
+                    routes.values().forEach(participant -> counts.merge(participant.name, 1L, Long::sum));
+                    participants.keySet().forEach(name ->
+                            measurement.record(counts.getOrDefault(name, 0L), Metrics.attributes("participant", name)));
+                });
+
+        if (participants.size() > 1) {
+            awaitInitialRefresh(ledgerConfig.getRoutingInitialTimeoutSeconds());
+        }
+        long period = ledgerConfig.getRoutingRefreshSeconds();
+        if (participants.size() > 1 && period > 0) {
+            this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ledger-participant-routing");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refreshScheduler.scheduleWithFixedDelay(() -> refresh().join(), period, period, TimeUnit.SECONDS);
+        } else {
+            this.refreshScheduler = null;
+        }
+    }
+
+    ParticipantConnection defaultParticipant() {
+        return participants.get(DEFAULT);
+    }
+
+    ParticipantConnection forParty(String party) {
+        ParticipantConnection participant = routes.get(party);
+        return participant != null ? participant : defaultParticipant();
+    }
+
+    Collection<ParticipantConnection> all() {
+        return participants.values();
+    }
+
+    /**
+     * Re-reads the parties hosted by every participant and swaps in the rebuilt routing table. Never fails;
+     * participants that could not be read are logged and keep their previous parties.
+     */
+    CompletableFuture<Void> refresh() {
+        if (participants.size() == 1) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        for (ParticipantConnection participant : participants.values()) {
+            reads.add(localParties(participant, "", new HashSet<>())
+                    .handle((parties, ex) -> {
+                        if (ex != null) {
+                            LoggingSpanHelper.logError(logger, "Failed to read parties hosted by participant",
+                                    Map.of("participant", participant.name), ex);
+                        } else {
+                            hostedParties.put(participant.name, parties);
+                        }
+                        return null;
+                    }));
+        }
+        return CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new))
+                .thenRun(() -> {
+                    routes = buildRoutes();
+                    LoggingSpanHelper.logDebug(logger, "Refreshed participant routing",
+                            Map.of("participants", participants.size(), "routedParties", routes.size()));
+                });
+    }
+
+    void shutdown() {
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdownNow();
+        }
+        participants.values().forEach(ParticipantConnection::shutdown);
+    }
+
+    private void awaitInitialRefresh(long timeoutSeconds) {
+        try {
+            refresh().get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LoggingSpanHelper.logError(logger, "Participant routing not read in time, routing unknown parties to the default participant until it is",
+                    Map.of("timeoutSeconds", timeoutSeconds), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // refresh() never fails
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private CompletableFuture<Set<String>> localParties(ParticipantConnection participant, String pageToken, Set<String> parties) {
+        PartyManagementServiceOuterClass.ListKnownPartiesRequest request =
+                PartyManagementServiceOuterClass.ListKnownPartiesRequest.newBuilder().setPageToken(pageToken).build();
+        return toCompletableFuture(participant.partyManagement.listKnownParties(request))
+                .thenCompose(response -> {
+                    for (PartyManagementServiceOuterClass.PartyDetails details : response.getPartyDetailsList()) {
+                        if (details.getIsLocal()) {
+                            parties.add(details.getParty());
+                        }
+                    }
+                    return response.getNextPageToken().isEmpty()
+                            ? CompletableFuture.completedFuture(parties)
+                            : localParties(participant, response.getNextPageToken(), parties);
+                });
+    }
+
+    private Map<String, ParticipantConnection> buildRoutes() {
+        Map<String, ParticipantConnection> table = new HashMap<>();
+        // in configuration order, default first, so multi-hosted parties stay on the first participant hosting them
+        for (ParticipantConnection participant : participants.values()) {
+            hostedParties.getOrDefault(participant.name, Set.of()).forEach(party -> table.putIfAbsent(party, participant));
+        }
+        ledgerConfig.getPartyRoutes().forEach((party, name) -> {
+            ParticipantConnection participant = participants.get(name);
+            if (participant == null) {
+                // validated at startup, so only a route changed since then can get here
+                LoggingSpanHelper.logError(logger, "Ignoring party route to unknown ledger participant",
+                        Map.of("party", party, "participant", name), null);
+            } else {
+                table.put(party, participant);
+            }
+        });
+        return Map.copyOf(table);
+    }
+}
@@ -0,0 +1,264 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.digitalasset.quickstart.config.LedgerConfig;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.RequestDeadline;
+import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.rpc.ErrorInfo;
+import com.google.rpc.RetryInfo;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.StatusProto;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.context.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retries ledger submissions that failed for transient reasons.
+ * <p>
+ * A failure is retried when its gRPC status is one of {@link #RETRYABLE_CODES}, when Canton attached a
+ * {@link RetryInfo} to it, or when its Canton error reason is a known contention or back-pressure reason.
+ * Anything else, e.g. an interpretation error or a missing contract, fails immediately. Retries reuse the
+ * original command, including its command id, so the ledger's command deduplication prevents a command from
+ * being applied twice. Backoff is exponential with full jitter, never shorter than a server-provided retry
+ * delay, and the total time spent retrying is capped, as well as by the {@link RequestDeadline} of the request
+ * being served, if any.
+ */
+class RetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private static final Set<Status.Code> RETRYABLE_CODES = Set.of(
+            Status.Code.ABORTED,
+            Status.Code.UNAVAILABLE,
+            Status.Code.DEADLINE_EXCEEDED,
+            Status.Code.RESOURCE_EXHAUSTED
+    );
+
+    // Canton error reasons signalling contention or overload, independent of the gRPC status they are mapped to
+    private static final Set<String> RETRYABLE_REASONS = Set.of(
+            "LOCAL_VERDICT_LOCKED_CONTRACTS",
+            "LOCAL_VERDICT_LOCKED_KEYS",
+            "SEQUENCER_BACKPRESSURE",
+            "PARTICIPANT_BACKPRESSURE",
+            "SUBMISSION_ALREADY_IN_FLIGHT"
+    );
+
+    // Canton error reasons of commands rejected during interpretation, i.e. before anything was sequenced
+    private static final Set<String> INTERPRETATION_REASONS = Set.of(
+            "DAML_INTERPRETATION_ERROR",
+            "DAML_AUTHORIZATION_ERROR",
+            "CONTRACT_NOT_FOUND",
+            "DUPLICATE_CONTRACT_KEY",
+            "INCONSISTENT_CONTRACT_KEY",
+            "COMMAND_PREPROCESSING_FAILED"
+    );
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long maxElapsedMillis;
+    private final ScheduledExecutorService scheduler;
+    private final LongCounter retries;
+
+    RetryPolicy(LedgerConfig ledgerConfig) {
+        this.maxAttempts = Math.max(1, ledgerConfig.getRetryMaxAttempts());
+        this.initialBackoffMillis = Math.max(1, ledgerConfig.getRetryInitialBackoffMillis());
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, ledgerConfig.getRetryMaxBackoffMillis());
+        this.maxElapsedMillis = ledgerConfig.getRetryMaxElapsedMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retries = Metrics.meter()
+                .counterBuilder("backend.ledger.command.retries")
+                .setDescription("Retryable ledger command failures, by reason and whether they were retried or gave up")
+                .build();
+    }
+
+    /**
+     * Runs {@code attempt} and re-runs it on retryable failures until it succeeds, fails permanently or the
+     * attempt and time budgets are used up.
+     */
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt, Map<String, Object> attrs) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // retries run on the scheduler thread, but still on behalf of (and within the deadline of) the caller
+        Optional<RequestDeadline> deadline = RequestDeadline.current();
+        run(Context.current().wrapSupplier(attempt), attrs, deadline, 1, System.nanoTime(), result);
+        return result;
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private <T> void run(
+            Supplier<CompletableFuture<T>> attempt,
+            Map<String, Object> attrs,
+            Optional<RequestDeadline> deadline,
+            int attemptNumber,
+            long startNanos,
+            CompletableFuture<T> result
+    ) {
+        attempt.get().whenComplete((value, ex) -> {
+            if (ex == null) {
+                result.complete(value);
+                return;
+            }
+            if (result.isDone()) {
+                // cancelled by the caller, nobody is waiting for another attempt
+                return;
+            }
+            Throwable cause = unwrap(ex);
+            Classification classification = classify(cause);
+            if (!classification.retryable) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attemptNumber - 1, 20));
+            long delay = Math.max(ThreadLocalRandom.current().nextLong(backoff + 1), classification.retryDelayMillis);
+            long elapsed = (long) Metrics.millisSince(startNanos);
+
+            Map<String, Object> retryAttrs = new HashMap<>(attrs);
+            retryAttrs.put("retry.attempt", attemptNumber);
+            retryAttrs.put("retry.reason", classification.reason);
+            retryAttrs.put("retry.delayMs", delay);
+
+            if (attemptNumber >= maxAttempts || elapsed + delay > maxElapsedMillis) {
+                retries.add(1, Metrics.attributes("reason", classification.reason, "decision", "exhausted"));
+                LoggingSpanHelper.logError(logger, "Giving up retrying ledger command", retryAttrs, cause);
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (deadline.isPresent() && deadline.get().remaining().toMillis() <= delay) {
+                retries.add(1, Metrics.attributes("reason", classification.reason, "decision", "deadline"));
+                LoggingSpanHelper.logError(logger, "Not retrying ledger command past the request deadline", retryAttrs, cause);
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            retries.add(1, Metrics.attributes("reason", classification.reason, "decision", "retry"));
+            LoggingSpanHelper.logInfo(logger, "Retrying ledger command after transient failure", retryAttrs);
+            scheduler.schedule(
+                    () -> run(attempt, attrs, deadline, attemptNumber + 1, startNanos, result),
+                    delay,
+                    TimeUnit.MILLISECONDS
+            );
+        });
+    }
+
+    static Classification classify(Throwable t) {
+        if (!(t instanceof StatusRuntimeException) && !(t instanceof StatusException)) {
+            // not a ledger response, e.g. a local encoding error
+            return new Classification(false, t.getClass().getSimpleName(), 0);
+        }
+        Status status = Status.fromThrowable(t);
+
+        String reason = status.getCode().name();
+        long retryDelayMillis = 0;
+        boolean retryable = RETRYABLE_CODES.contains(status.getCode());
+
+        com.google.rpc.Status details = StatusProto.fromThrowable(t);
+        if (details != null) {
+            for (Any detail : details.getDetailsList()) {
+                try {
+                    if (detail.is(ErrorInfo.class)) {
+                        String errorReason = detail.unpack(ErrorInfo.class).getReason();
+                        if (!errorReason.isEmpty()) {
+                            reason = errorReason;
+                            retryable |= RETRYABLE_REASONS.contains(errorReason);
+                        }
+                    } else if (detail.is(RetryInfo.class)) {
+                        com.google.protobuf.Duration delay = detail.unpack(RetryInfo.class).getRetryDelay();
+                        retryDelayMillis = Duration.ofSeconds(delay.getSeconds(), delay.getNanos()).toMillis();
+                        retryable = true;
+                    }
+                } catch (InvalidProtocolBufferException e) {
+                    logger.atDebug().setCause(e).log("Ignoring malformed error detail");
+                }
+            }
+        }
+        return new Classification(retryable, reason, retryDelayMillis);
+    }
+
+    /**
+     * Whether {@code t} signals that the participant is overloaded rather than that the command itself failed.
+     */
+    static boolean isOverload(Throwable t) {
+        Classification classification = classify(unwrap(t));
+        return classification.reason.endsWith("BACKPRESSURE")
+                || classification.reason.equals(Status.Code.RESOURCE_EXHAUSTED.name())
+                || classification.reason.equals(Status.Code.UNAVAILABLE.name())
+                || classification.reason.equals(Status.Code.DEADLINE_EXCEEDED.name());
+    }
+
+    /**
+     * Whether {@code t} is a definite rejection of the command before it could have been committed: the request was
+     * invalid or its interpretation failed. Timeouts and unavailability are ambiguous and never count.
+     */
+    static boolean isRejectedBeforeCommit(Throwable t) {
+        Throwable cause = unwrap(t);
+        if (!(cause instanceof StatusRuntimeException) && !(cause instanceof StatusException)) {
+            return false;
+        }
+        if (Status.fromThrowable(cause).getCode() == Status.Code.INVALID_ARGUMENT) {
+            return true;
+        }
+        return INTERPRETATION_REASONS.contains(classify(cause).reason);
+    }
+
+    /**
+     * Whether {@code t} is the ledger's rejection of a command id it already accepted within the deduplication
+     * period, i.e. the command was applied by an earlier submission.
+     */
+    static boolean isDuplicateCommand(Throwable t) {
+        Throwable cause = unwrap(t);
+        if (!(cause instanceof StatusRuntimeException) && !(cause instanceof StatusException)) {
+            return false;
+        }
+        return Status.fromThrowable(cause).getCode() == Status.Code.ALREADY_EXISTS
+                || "DUPLICATE_COMMAND".equals(classify(cause).reason);
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    static final class Classification {
+        final boolean retryable;
+        final String reason;
+        final long retryDelayMillis;
+
+        Classification(boolean retryable, String reason, long retryDelayMillis) {
+            this.retryable = retryable;
+            this.reason = reason;
+            this.retryDelayMillis = retryDelayMillis;
+        }
+    }
+}
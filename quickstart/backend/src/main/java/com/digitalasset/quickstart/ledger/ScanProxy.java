@@ -3,36 +3,285 @@
 
 package com.digitalasset.quickstart.ledger;
 
+import com.daml.ledger.api.v2.CommandsOuterClass;
+import com.digitalasset.quickstart.config.ScanProxyConfig;
+import com.digitalasset.quickstart.utility.AsyncTtlCache;
 import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.RequestDeadline;
 import com.digitalasset.quickstart.validatorproxy.client.ApiException;
 import com.digitalasset.quickstart.validatorproxy.client.api.ScanProxyApi;
+import com.digitalasset.quickstart.validatorproxy.client.model.Contract;
+import com.digitalasset.quickstart.validatorproxy.client.model.ContractWithState;
 import com.digitalasset.quickstart.validatorproxy.client.model.GetAmuletRulesProxyResponse;
 import com.digitalasset.quickstart.validatorproxy.client.model.GetDsoPartyIdResponse;
 import com.digitalasset.quickstart.validatorproxy.client.model.GetOpenAndIssuingMiningRoundsProxyResponse;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Client of the validator's scan proxy.
+ * <p>
+ * AmuletRules and the DSO party id are served from caches ({@code scan-proxy.amulet-rules-ttl-seconds},
+ * {@code scan-proxy.dso-party-id-ttl-seconds}); concurrent callers missing the cache share one load, which is not
+ * bound to any caller's request deadline. A submission that failed because a disclosed contract was no longer
+ * active is reported to {@link #invalidateOnStaleContract}, so the next attempt discloses the current contracts.
+ * <p>
+ * Open mining rounds are kept in a map by round number. It is re-read shortly after the next known round opens or
+ * is due to close, which is when the set of open rounds changes, and when a round is asked for that it does not
+ * hold; concurrent refreshes share one call.
+ * <p>
+ * The {@code *Disclosure} methods return the contracts as ready-built disclosed contracts, shared by all commands
+ * disclosing the same contract.
+ */
 @Component
 public class ScanProxy {
+    private static final String KEY = "";
+    // rejections of a command whose (disclosed) input contract has been archived in the meantime
+    private static final Set<String> STALE_CONTRACT_REASONS = Set.of(
+            "CONTRACT_NOT_FOUND",
+            "LOCAL_VERDICT_INACTIVE_CONTRACTS"
+    );
+
     private final ScanProxyApi scanProxyApi;
+    private final ScanProxyConfig config;
+    private final AsyncTtlCache<String, GetAmuletRulesProxyResponse> amuletRules;
+    private final AsyncTtlCache<String, GetDsoPartyIdResponse> dsoPartyId;
+    private final DisclosedContractCache disclosedContracts;
+    private final AtomicReference<CompletableFuture<Map<Long, Contract>>> roundsRefresh = new AtomicReference<>();
+    private final ScheduledExecutorService roundsScheduler;
+    private final LongCounter cacheRequests;
+    private final DoubleHistogram duration;
+    private final Attributes roundsHit = Metrics.attributes("cache", "scan.open.mining.rounds", "result", "hit");
+    private final Attributes roundsMiss = Metrics.attributes("cache", "scan.open.mining.rounds", "result", "miss");
+    private volatile Map<Long, Contract> openRounds = Map.of();
+    private volatile long roundsRefreshedAtNanos;
+    private ScheduledFuture<?> nextRoundsRefresh;
     private final Logger logger = LoggerFactory.getLogger(ScanProxy.class);
 
-    public ScanProxy(ScanProxyApi scanProxyApi) {
+    public ScanProxy(ScanProxyApi scanProxyApi, ScanProxyConfig config) {
         this.scanProxyApi = scanProxyApi;
+        this.config = config;
+        this.amuletRules = new AsyncTtlCache<>("scan.amulet.rules", Duration.ofSeconds(config.getAmuletRulesTtlSeconds()), 1);
+        this.dsoPartyId = new AsyncTtlCache<>("scan.dso.party.id", Duration.ofSeconds(config.getDsoPartyIdTtlSeconds()), 1);
+        this.disclosedContracts = new DisclosedContractCache(config.getDisclosedContractCacheMaxBytes());
+        this.roundsScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scan-proxy-rounds");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cacheRequests = Metrics.meter()
+                .counterBuilder("backend.cache.requests")
+                .setDescription("Cache lookups, by cache and result")
+                .build();
+        this.duration = Metrics.meter()
+                .histogramBuilder("backend.scan.request.duration")
+                .setDescription("Scan proxy call latency, by operation and HTTP status (2xx on success, 0 if no response was received)")
+                .setUnit("ms")
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        roundsScheduler.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!config.isWarmUp()) {
+            return;
+        }
+        CompletableFuture.allOf(getDsoPartyId(), getAmuletRules(), refreshOpenMiningRounds()).whenComplete((res, ex) -> {
+            if (ex != null) {
+                LoggingSpanHelper.logError(logger, "Scan proxy cache warm-up failed, values are loaded on first use", ex);
+            } else {
+                LoggingSpanHelper.logInfo(logger, "Scan proxy cache warm-up finished");
+            }
+        });
     }
 
     @WithSpan
     public CompletableFuture<GetDsoPartyIdResponse> getDsoPartyId() {
+        // the shared load must not be cancelled when one waiting request is aborted, so callers get a copy
+        return abandonOnAbort(dsoPartyId.get(KEY, key -> RequestDeadline.detached(this::loadDsoPartyId)).copy());
+    }
+
+    @WithSpan
+    public CompletableFuture<GetAmuletRulesProxyResponse> getAmuletRules() {
+        return abandonOnAbort(amuletRules.get(KEY, key -> RequestDeadline.detached(this::loadAmuletRules)).copy());
+    }
+
+    /**
+     * The open mining round with the given number, from the local map, or after re-reading the open rounds if
+     * the map does not hold it. Fails if the round is not open.
+     */
+    public CompletableFuture<Contract> getOpenMiningRound(long roundNumber) {
+        Contract round = openRounds.get(roundNumber);
+        if (round != null) {
+            cacheRequests.add(1, roundsHit);
+            return CompletableFuture.completedFuture(round);
+        }
+        cacheRequests.add(1, roundsMiss);
+        return abandonOnAbort(refreshOpenMiningRounds().copy()).thenCompose(rounds -> {
+            Contract refreshed = rounds.get(roundNumber);
+            return refreshed != null
+                    ? CompletableFuture.completedFuture(refreshed)
+                    : CompletableFuture.failedFuture(
+                            new IllegalStateException("No open mining round found with number: " + roundNumber));
+        });
+    }
+
+    public CompletableFuture<CommandsOuterClass.DisclosedContract> getAmuletRulesDisclosure() {
+        return getAmuletRules().thenApply(response -> disclosedContracts.get(response.getAmuletRules().getContract()));
+    }
+
+    public CompletableFuture<CommandsOuterClass.DisclosedContract> getOpenMiningRoundDisclosure(long roundNumber) {
+        return getOpenMiningRound(roundNumber).thenApply(disclosedContracts::get);
+    }
+
+    public void invalidateAmuletRules() {
+        amuletRules.invalidateAll();
+    }
+
+    /**
+     * Drops the cached contracts if {@code failure} is a ledger rejection caused by an archived input contract.
+     * Returns whether it was.
+     */
+    public boolean invalidateOnStaleContract(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        String reason = RetryPolicy.classify(cause).reason;
+        if (!STALE_CONTRACT_REASONS.contains(reason)) {
+            return false;
+        }
+        LoggingSpanHelper.logInfo(logger, "Dropping cached scan proxy contracts after stale contract rejection",
+                Map.of("reason", reason));
+        invalidateAmuletRules();
+        refreshOpenMiningRounds();
+        return true;
+    }
+
+    /**
+     * Re-reads the open mining rounds, or joins the refresh in flight, and schedules the next refresh.
+     */
+    private CompletableFuture<Map<Long, Contract>> refreshOpenMiningRounds() {
+        CompletableFuture<Map<Long, Contract>> created = new CompletableFuture<>();
+        CompletableFuture<Map<Long, Contract>> inFlight = roundsRefresh.compareAndExchange(null, created);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        // misses for rounds that are not open (yet) must not turn into a call per request
+        long sinceLast = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - roundsRefreshedAtNanos);
+        if (roundsRefreshedAtNanos != 0 && sinceLast < config.getOpenRoundsMinRefreshMillis()) {
+            roundsRefresh.set(null);
+            created.complete(openRounds);
+            return created;
+        }
+        CompletableFuture<GetOpenAndIssuingMiningRoundsProxyResponse> fetched;
+        try {
+            fetched = RequestDeadline.detached(this::getOpenAndIssuingMiningRounds);
+        } catch (RuntimeException e) {
+            fetched = CompletableFuture.failedFuture(e);
+        }
+        fetched.whenComplete((response, ex) -> {
+            // whatever happens, the refresh must end: clear it before completing so dependents can start a new one
+            long delayMillis = config.getOpenRoundsMinRefreshMillis();
+            Throwable failure = ex;
+            Map<Long, Contract> refreshed = null;
+            if (failure == null) {
+                try {
+                    refreshed = byRoundNumber(response);
+                    openRounds = refreshed;
+                    roundsRefreshedAtNanos = System.nanoTime();
+                    delayMillis = millisUntilNextRoundChange(refreshed.values());
+                } catch (RuntimeException e) {
+                    LoggingSpanHelper.logError(logger, "Failed to read open mining rounds from the scan proxy response", e);
+                    failure = e;
+                }
+            }
+            roundsRefresh.set(null);
+            if (failure != null) {
+                created.completeExceptionally(failure);
+            } else {
+                created.complete(refreshed);
+            }
+            scheduleRoundsRefresh(delayMillis);
+        });
+        return created;
+    }
+
+    private static Map<Long, Contract> byRoundNumber(GetOpenAndIssuingMiningRoundsProxyResponse response) {
+        Map<Long, Contract> rounds = new HashMap<>();
+        for (ContractWithState round : response.getOpenMiningRounds()) {
+            Contract contract = round.getContract();
+            rounds.put(Long.parseLong(contract.getPayload().getRound().getNumber()), contract);
+        }
+        return Map.copyOf(rounds);
+    }
+
+    private long millisUntilNextRoundChange(Collection<Contract> rounds) {
+        Instant now = Instant.now();
+        Instant next = now.plusSeconds(config.getOpenRoundsMaxRefreshSeconds());
+        for (Contract round : rounds) {
+            for (String time : new String[]{round.getPayload().getOpensAt(), round.getPayload().getTargetClosesAt()}) {
+                if (time == null) {
+                    continue;
+                }
+                try {
+                    Instant at = Instant.parse(time).plusMillis(config.getOpenRoundsRefreshMarginMillis());
+                    if (at.isAfter(now) && at.isBefore(next)) {
+                        next = at;
+                    }
+                } catch (DateTimeParseException e) {
+                    logger.atDebug().setCause(e).log("Ignoring unparseable mining round time");
+                }
+            }
+        }
+        return Math.max(config.getOpenRoundsMinRefreshMillis(), Duration.between(now, next).toMillis());
+    }
+
+    private synchronized void scheduleRoundsRefresh(long delayMillis) {
+        if (roundsScheduler.isShutdown()) {
+            return;
+        }
+        if (nextRoundsRefresh != null) {
+            nextRoundsRefresh.cancel(false);
+        }
+        nextRoundsRefresh = roundsScheduler.schedule(this::refreshOpenMiningRounds, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private CompletableFuture<GetDsoPartyIdResponse> loadDsoPartyId() {
         Span span = Span.current();
         LoggingSpanHelper.logDebug(logger, "Fetching DSO party id");
         try {
-            return scanProxyApi.getDsoPartyId()
+            return abandonOnAbort(timed("getDsoPartyId", System.nanoTime(), scanProxyApi.getDsoPartyId())
                     .whenComplete((result, ex) -> {
                         if (ex != null) {
                             LoggingSpanHelper.logError(logger, "Error fetching DSO party id", ex);
@@ -42,7 +291,7 @@ public class ScanProxy {
                             LoggingSpanHelper.setSpanAttributes(span, attributes);
                             LoggingSpanHelper.logInfo(logger, "Successfully fetched DSO party id", attributes);
                         }
-                    });
+                    }));
         } catch (ApiException e) {
             // should not be possible - OpenAPI codegen adds false checked `throws` declaration
             LoggingSpanHelper.logError(logger, "Unexpected ApiException thrown while fetching DSO party id", e);
@@ -51,12 +300,11 @@ public class ScanProxy {
         }
     }
 
-    @WithSpan
-    public CompletableFuture<GetAmuletRulesProxyResponse> getAmuletRules() {
+    private CompletableFuture<GetAmuletRulesProxyResponse> loadAmuletRules() {
         Span span = Span.current();
         LoggingSpanHelper.logDebug(logger, "Fetching AmuletRules");
         try {
-            return scanProxyApi.getAmuletRules()
+            return abandonOnAbort(timed("getAmuletRules", System.nanoTime(), scanProxyApi.getAmuletRules())
                     .whenComplete((result, ex) -> {
                         if (ex != null) {
                             LoggingSpanHelper.logError(logger, "Error fetching AmuletRules", ex);
@@ -66,7 +314,7 @@ public class ScanProxy {
                             LoggingSpanHelper.setSpanAttributes(span, attributes);
                             LoggingSpanHelper.logInfo(logger, "Successfully fetched AmuletRules", attributes);
                         }
-                    });
+                    }));
         } catch (ApiException e) {
             // should not be possible - OpenAPI codegen adds false checked `throws` declaration
             LoggingSpanHelper.logError(logger, "Unexpected ApiException thrown while fetching AmuletRules", e);
@@ -80,7 +328,7 @@ public class ScanProxy {
         Span span = Span.current();
         LoggingSpanHelper.logDebug(logger, "Fetching Open and Issuing MiningRounds");
         try {
-            return scanProxyApi.getOpenAndIssuingMiningRounds()
+            return abandonOnAbort(timed("getOpenAndIssuingMiningRounds", System.nanoTime(), scanProxyApi.getOpenAndIssuingMiningRounds())
                     .whenComplete((result, ex) -> {
                         if (ex != null) {
                             LoggingSpanHelper.logError(logger, "Error fetching Open and Issuing MiningRounds", ex);
@@ -90,7 +338,7 @@ public class ScanProxy {
                             LoggingSpanHelper.setSpanAttributes(span, attributes);
                             LoggingSpanHelper.logInfo(logger, "Successfully fetched Open and Issuing MiningRounds", attributes);
                         }
-                    });
+                    }));
         } catch (ApiException e) {
             // should not be possible - OpenAPI codegen adds false checked `throws` declaration
             LoggingSpanHelper.logError(logger, "Unexpected ApiException thrown while fetching Open and Issuing MiningRounds", e);
@@ -98,4 +346,20 @@ public class ScanProxy {
             throw new RuntimeException(e);
         }
     }
+
+    private <T> CompletableFuture<T> timed(String operation, long startNanos, CompletableFuture<T> call) {
+        return call.whenComplete((result, ex) -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            String status = cause == null ? "2xx" : cause instanceof ApiException api ? String.valueOf(api.getCode()) : "0";
+            duration.record(Metrics.millisSince(startNanos), Metrics.attributes("operation", operation, "status", status));
+        });
+    }
+
+    /**
+     * Lets callers stop waiting once their request is aborted; the HTTP exchange itself is bounded by the
+     * request timeout set from the same deadline.
+     */
+    private static <T> CompletableFuture<T> abandonOnAbort(CompletableFuture<T> future) {
+        return RequestDeadline.current().map(deadline -> deadline.cancelOnAbort(future)).orElse(future);
+    }
 }
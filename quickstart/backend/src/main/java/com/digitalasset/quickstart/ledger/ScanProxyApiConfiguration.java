@@ -3,34 +3,64 @@
 
 package com.digitalasset.quickstart.ledger;
 
+import com.digitalasset.quickstart.config.ScanProxyConfig;
+import com.digitalasset.quickstart.oauth.ServiceTokenProvider;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.RequestDeadline;
 import com.digitalasset.quickstart.validatorproxy.client.ApiClient;
 import com.digitalasset.quickstart.validatorproxy.client.api.ScanProxyApi;
+import io.opentelemetry.api.metrics.LongCounter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The scan proxy client, configured by {@code scan-proxy.*}: one shared {@link HttpClient} (and so one connection
+ * pool) on its own executor. Responses are counted in {@code backend.scan.responses} by status and the HTTP
+ * version actually used; with HTTP/2 the calls share a single multiplexed connection.
+ */
 @Configuration
 public class ScanProxyApiConfiguration {
 
-    private static final String CLIENT_REGISTRATION_ID = "AppProvider-client-credentials";
-
     @Bean
-    public ScanProxyApi scanProxyApi(OAuth2AuthorizedClientManager authorizedClientManager) {
+    public ScanProxyApi scanProxyApi(ServiceTokenProvider serviceTokenProvider, ScanProxyConfig config) {
+        AtomicInteger threadCount = new AtomicInteger();
+        HttpClient.Builder httpClient = HttpClient.newBuilder()
+                .version(config.getHttpVersion())
+                .executor(Executors.newFixedThreadPool(Math.max(1, config.getExecutorThreads()), runnable -> {
+                    Thread thread = new Thread(runnable, "scan-proxy-http-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+        Duration requestTimeout = Duration.ofMillis(config.getRequestTimeoutMillis());
+
+        LongCounter responses = Metrics.meter()
+                .counterBuilder("backend.scan.responses")
+                .setDescription("Scan proxy responses, by HTTP status and protocol version")
+                .build();
+
         ApiClient apiClient = new ApiClient();
-        apiClient.updateBaseUri("http://validator-app-provider:5003/api/validator"); // TODO: configure this properly
-        apiClient.setRequestInterceptor(requestBuilder -> {
-            OAuth2AuthorizeRequest req = OAuth2AuthorizeRequest.withClientRegistrationId(CLIENT_REGISTRATION_ID)
-                    .principal("N/A")
-                    .build();
-            var authorizedClient = authorizedClientManager.authorize(req);
-            if (authorizedClient != null && authorizedClient.getAccessToken() != null) {
-                String accessToken = authorizedClient.getAccessToken().getTokenValue();
-                requestBuilder.header("Authorization", "Bearer " + accessToken);
-            } else {
-                throw new IllegalStateException("Failed to obtain access token for ScanProxyApi");
-            }
-        });
+        // ScanProxyApi builds its HttpClient from this builder once, so all calls share it
+        apiClient.setHttpClientBuilder(httpClient);
+        apiClient.updateBaseUri(config.getBaseUri());
+        apiClient.setConnectTimeout(Duration.ofMillis(config.getConnectTimeoutMillis()));
+        apiClient.setReadTimeout(requestTimeout);
+        apiClient.setRequestInterceptor(serviceTokenProvider.httpRequestInterceptor().andThen(builder ->
+                // calls made on behalf of an HTTP request time out with it
+                RequestDeadline.current().ifPresent(deadline -> {
+                    Duration remaining = deadline.remaining();
+                    builder.timeout(remaining.isZero() ? Duration.ofMillis(1)
+                            : remaining.compareTo(requestTimeout) < 0 ? remaining : requestTimeout);
+                })
+        ));
+        apiClient.setAsyncResponseInterceptor(response -> responses.add(1, Metrics.attributes(
+                "status", String.valueOf(response.statusCode()),
+                "http.version", response.version().name()
+        )));
 
         return new ScanProxyApi(apiClient);
     }
@@ -0,0 +1,170 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.EventOuterClass;
+import com.daml.ledger.api.v2.TransactionOuterClass;
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.quickstart.config.LedgerConfig;
+import com.digitalasset.quickstart.pqs.Contract;
+import com.digitalasset.quickstart.utility.ConverterRegistry;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.PartyInterner;
+import com.digitalasset.transcode.java.ContractId;
+import com.digitalasset.transcode.java.Template;
+import com.digitalasset.transcode.java.Utils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Contracts the backend itself just created or archived, taken from the transaction trees its own commands return.
+ * <p>
+ * Readers consult this cache before PQS (or the {@link ActiveContractStore}), so a contract created by one request
+ * is visible to the next one, and an archived one is gone, before the read side has caught up. Entries expire
+ * after {@code ledger.write-through-ttl-seconds}, which should comfortably exceed the read side's ingestion lag.
+ * Only the app's own templates (see {@link AppTemplates}) are kept.
+ */
+@Component
+public class WriteThroughContractCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteThroughContractCache.class);
+
+    private final ConverterRegistry converters;
+    private final PartyInterner partyInterner;
+    private final Cache<String, Entry> created;
+    private final Cache<String, Boolean> archived;
+
+    public WriteThroughContractCache(LedgerConfig ledgerConfig, ConverterRegistry converters, PartyInterner partyInterner) {
+        this.converters = converters;
+        this.partyInterner = partyInterner;
+        Duration ttl = Duration.ofSeconds(ledgerConfig.getWriteThroughTtlSeconds());
+        this.created = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(ledgerConfig.getWriteThroughMaxEntries())
+                .build();
+        this.archived = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(ledgerConfig.getWriteThroughMaxEntries())
+                .build();
+    }
+
+    /**
+     * Records the contracts created and consumed in a transaction tree returned for one of the backend's commands.
+     */
+    void apply(TransactionOuterClass.TransactionTree tree) {
+        for (TransactionOuterClass.TreeEvent event : tree.getEventsByIdMap().values()) {
+            if (event.hasCreated()) {
+                add(event.getCreated());
+            } else if (event.hasExercised() && event.getExercised().getConsuming()) {
+                archive(event.getExercised().getContractId());
+            }
+        }
+    }
+
+    /**
+     * Records a contract consumed by one of the backend's commands whose transaction tree was not requested.
+     */
+    void archive(String contractId) {
+        archived.put(contractId, Boolean.TRUE);
+        created.invalidate(contractId);
+    }
+
+    public boolean isArchived(String contractId) {
+        return archived.getIfPresent(contractId) != null;
+    }
+
+    /**
+     * Whether the contract was created by the backend recently enough to be held here.
+     */
+    public boolean isCreated(String contractId) {
+        return created.getIfPresent(contractId) != null;
+    }
+
+    public <T extends Template> Optional<Contract<T>> byId(Class<T> clazz, String contractId) {
+        Entry entry = created.getIfPresent(contractId);
+        return entry != null && entry.templateClass == clazz ? Optional.of(cast(entry)) : Optional.empty();
+    }
+
+    /**
+     * Recently created contracts of a template that have not been archived since; if {@code stakeholder} is
+     * given, only those it is a signatory or observer of.
+     */
+    public <T extends Template> List<Contract<T>> active(Class<T> clazz, String stakeholder) {
+        List<Contract<T>> contracts = new ArrayList<>();
+        for (Entry entry : created.asMap().values()) {
+            if (entry.templateClass == clazz && (stakeholder == null || entry.stakeholders.contains(stakeholder))) {
+                contracts.add(cast(entry));
+            }
+        }
+        return contracts;
+    }
+
+    /**
+     * The recently created, unarchived contract with the given business key, see {@link AppTemplates}.
+     */
+    public <T extends Template> Optional<Contract<T>> byKey(Class<T> clazz, Object key) {
+        for (Entry entry : created.asMap().values()) {
+            if (entry.templateClass == clazz && key.equals(entry.key)) {
+                return Optional.of(cast(entry));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void add(EventOuterClass.CreatedEvent event) {
+        Optional<Class<? extends Template>> templateClass = AppTemplates.classOf(event.getTemplateId());
+        if (templateClass.isEmpty()) {
+            return;
+        }
+        Class<? extends Template> clazz = templateClass.get();
+        Object payload;
+        try {
+            payload = converters.templateDecoder(Utils.getTemplateIdByClass(clazz))
+                    .convert(partyInterner.intern(ValueOuterClass.Value.newBuilder().setRecord(event.getCreateArguments()).build()));
+        } catch (RuntimeException e) {
+            // readers fall back to the read side for this contract
+            LoggingSpanHelper.logError(logger, "Failed to decode created contract, not caching it",
+                    Map.of("contractId", event.getContractId()), e);
+            return;
+        }
+        Set<String> stakeholders = new HashSet<>(event.getSignatoriesList());
+        stakeholders.addAll(event.getObserversList());
+        created.put(event.getContractId(), new Entry(clazz, newContract(event.getContractId(), payload), stakeholders, AppTemplates.keyOf(payload)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Template> Contract<T> cast(Entry entry) {
+        return (Contract<T>) entry.contract;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Contract<?> newContract(String contractId, Object payload) {
+        return new Contract(new ContractId<>(contractId), (Template) payload);
+    }
+
+    private static final class Entry {
+        private final Class<? extends Template> templateClass;
+        private final Contract<?> contract;
+        private final Set<String> stakeholders;
+        private final Object key;
+
+        private Entry(Class<? extends Template> templateClass, Contract<?> contract, Set<String> stakeholders, Object key) {
+            this.templateClass = templateClass;
+            this.contract = contract;
+            this.stakeholders = stakeholders;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.oauth;
+
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import io.grpc.CallCredentials;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.opentelemetry.api.metrics.LongCounter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Supplies the backend's client-credentials access token to outgoing gRPC and HTTP calls.
+ * <p>
+ * The token is fetched once, cached, and refreshed in the background shortly before it expires, so callers
+ * read a ready-made {@code Authorization} header without locking or blocking. Only when no valid token is
+ * cached (at startup, or after a failed refresh) do callers wait, and concurrent callers then share a single
+ * token request. The refresh lead is kept below the authorized client manager's clock skew (60 seconds by
+ * default), which is what makes the manager fetch a new token rather than return the cached one.
+ * <p>
+ * At most one refresh is scheduled at any time, and a token is no longer handed out in the last seconds before
+ * its expiry so it cannot lapse on its way to the server.
+ */
+@Component
+public class ServiceTokenProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceTokenProvider.class);
+
+    private static final String CLIENT_REGISTRATION_ID = "AppProvider-client-credentials";
+    private static final Metadata.Key<String> AUTHORIZATION_HEADER =
+            Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Duration REFRESH_LEAD = Duration.ofSeconds(30);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(10);
+
+    private final OAuth2AuthorizedClientManager authorizedClientManager;
+    private final AtomicReference<CachedToken> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<CachedToken>> inFlight = new AtomicReference<>();
+    private final ScheduledExecutorService scheduler;
+    private final LongCounter refreshes;
+    // the pending background refresh; replaced, never added to, so refresh chains cannot multiply
+    private ScheduledFuture<?> scheduledRefresh;
+
+    public ServiceTokenProvider(OAuth2AuthorizedClientManager authorizedClientManager) {
+        this.authorizedClientManager = authorizedClientManager;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "service-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refreshes = Metrics.meter()
+                .counterBuilder("backend.oauth.service.token.refreshes")
+                .setDescription("Service access token requests, by outcome")
+                .build();
+    }
+
+    /**
+     * The current {@code Authorization} header value, waiting for a token only if none is cached.
+     */
+    public String authorizationHeader() {
+        return authorizationHeaderAsync().join();
+    }
+
+    /**
+     * The current {@code Authorization} header value; already completed whenever a valid token is cached.
+     */
+    public CompletableFuture<String> authorizationHeaderAsync() {
+        CachedToken token = current.get();
+        if (token != null && token.isValid()) {
+            return CompletableFuture.completedFuture(token.header);
+        }
+        return refresh().thenApply(fresh -> fresh.header);
+    }
+
+    /**
+     * gRPC credentials attaching the service token to every call.
+     */
+    public CallCredentials callCredentials() {
+        return new CallCredentials() {
+            @Override
+            public void applyRequestMetadata(RequestInfo requestInfo, Executor appExecutor, MetadataApplier applier) {
+                authorizationHeaderAsync().whenComplete((header, ex) -> {
+                    if (ex != null) {
+                        applier.fail(Status.UNAUTHENTICATED.withDescription("Failed to obtain service access token").withCause(ex));
+                    } else {
+                        Metadata headers = new Metadata();
+                        headers.put(AUTHORIZATION_HEADER, header);
+                        applier.apply(headers);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * HTTP client request interceptor attaching the service token to every request.
+     */
+    public Consumer<HttpRequest.Builder> httpRequestInterceptor() {
+        return requestBuilder -> requestBuilder.header("Authorization", authorizationHeader());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private CompletableFuture<CachedToken> refresh() {
+        CompletableFuture<CachedToken> created = new CompletableFuture<>();
+        CompletableFuture<CachedToken> existing = inFlight.compareAndExchange(null, created);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                CachedToken token = fetch();
+                current.set(token);
+                refreshes.add(1, Metrics.attributes("outcome", "success"));
+                scheduleRefresh(token);
+                created.complete(token);
+            } catch (RuntimeException e) {
+                refreshes.add(1, Metrics.attributes("outcome", "failure"));
+                LoggingSpanHelper.logError(logger, "Failed to obtain service access token", e);
+                scheduleRefresh(RETRY_DELAY.toMillis());
+                created.completeExceptionally(e);
+            } finally {
+                inFlight.set(null);
+            }
+        }, scheduler);
+        return created;
+    }
+
+    private CachedToken fetch() {
+        OAuth2AuthorizeRequest request = OAuth2AuthorizeRequest.withClientRegistrationId(CLIENT_REGISTRATION_ID)
+                .principal("N/A")
+                .build();
+        OAuth2AuthorizedClient client = authorizedClientManager.authorize(request);
+        if (client == null || client.getAccessToken() == null) {
+            throw new IllegalStateException("No access token returned for " + CLIENT_REGISTRATION_ID);
+        }
+        Instant expiresAt = client.getAccessToken().getExpiresAt();
+        return new CachedToken("Bearer " + client.getAccessToken().getTokenValue(), expiresAt);
+    }
+
+    private void scheduleRefresh(CachedToken token) {
+        if (token.expiresAt == null) {
+            return;
+        }
+        Duration untilRefresh = Duration.between(Instant.now(), token.expiresAt.minus(REFRESH_LEAD));
+        // the manager may still hand back the token we already have; try again a little later in that case
+        long delay = Math.max(untilRefresh.toMillis(), RETRY_DELAY.toMillis());
+        scheduleRefresh(delay);
+        LoggingSpanHelper.logDebug(logger, "Scheduled service token refresh", Map.of("expiresAt", token.expiresAt.toString(), "delayMs", delay));
+    }
+
+    private synchronized void scheduleRefresh(long delayMillis) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduledRefresh = scheduler.schedule(this::refresh, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class CachedToken {
+        private final String header;
+        private final Instant expiresAt;
+
+        private CachedToken(String header, Instant expiresAt) {
+            this.header = header;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isValid() {
+            return expiresAt == null || Instant.now().isBefore(expiresAt.minus(EXPIRY_MARGIN));
+        }
+    }
+}
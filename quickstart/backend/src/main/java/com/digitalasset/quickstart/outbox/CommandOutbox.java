@@ -0,0 +1,589 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.outbox;
+
+import com.digitalasset.quickstart.config.LedgerConfig;
+import com.digitalasset.quickstart.config.OutboxConfig;
+import com.digitalasset.quickstart.ledger.LedgerApi;
+import com.digitalasset.quickstart.utility.ConcurrencyLimitExceededException;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.PriorityClass;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.RateLimiter;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * A durable queue of commands between the HTTP endpoints and the ledger, kept in a Postgres table owned by the
+ * backend ({@code <outbox.schema>.command_outbox}).
+ * <p>
+ * {@link #enqueue} collects concurrently enqueued commands for up to {@code outbox.insert-window-millis} and
+ * inserts them in one batch; the returned tracking id is only handed out once the row is committed, so an
+ * accepted command survives restarts. A (party, command id) pair is enqueued at most once, repeats get the
+ * original tracking id.
+ * <p>
+ * {@code outbox.worker-count} workers claim up to {@code outbox.claim-batch-size} commands at a time with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, so several workers, and several backend instances, drain the table
+ * without claiming the same command twice. Commands are started at no more than
+ * {@code outbox.max-commands-per-second} and run at {@link PriorityClass#BATCH} priority, through the
+ * {@link OutboxHandler} registered for their operation. Commands failing with overload are put back with a
+ * backoff until {@code outbox.max-attempts}; other failures are final. Commands of a worker that stopped while
+ * running them are claimed again after {@code outbox.claim-timeout-seconds}; as they keep their command id,
+ * the ledger's command deduplication prevents them from being applied twice, provided the claim timeout is
+ * shorter than {@code ledger.deduplication-period-seconds}, which is checked at startup. A re-claimed command the
+ * ledger rejects as a duplicate was applied by the earlier attempt and is recorded as succeeded, without the
+ * response that attempt would have stored. Every claim increments the
+ * command's attempt count, and an outcome is only recorded while the count is still the one claimed, so a
+ * worker whose claim timed out cannot overwrite the outcome or the retry of the worker that took over.
+ * <p>
+ * Exports {@code backend.outbox.commands} (by operation and outcome), {@code backend.outbox.wait.time} and
+ * {@code backend.outbox.insert.batch.size}.
+ */
+@Component
+public class CommandOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandOutbox.class);
+
+    private static final Pattern SCHEMA_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final Duration PURGE_INTERVAL = Duration.ofMinutes(10);
+
+    private final OutboxConfig config;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final String table;
+    private final Map<String, Registration<?>> handlers = new ConcurrentHashMap<>();
+    private final List<PendingInsert> pendingInserts = new ArrayList<>();
+    private final LongCounter commands;
+    private final DoubleHistogram waitTime;
+    private final LongHistogram insertBatchSize;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workers;
+    private RateLimiter rateLimiter;
+    private volatile boolean running;
+
+    public CommandOutbox(OutboxConfig config, LedgerConfig ledgerConfig, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        if (!SCHEMA_NAME.matcher(config.getSchema()).matches()) {
+            throw new IllegalStateException("Invalid outbox schema name: " + config.getSchema());
+        }
+        if (config.isEnabled() && config.getClaimTimeoutSeconds() >= ledgerConfig.getDeduplicationPeriodSeconds()) {
+            // a command claimed again after the ledger forgot its id could be applied twice
+            throw new IllegalStateException("outbox.claim-timeout-seconds (" + config.getClaimTimeoutSeconds()
+                    + ") must be shorter than ledger.deduplication-period-seconds ("
+                    + ledgerConfig.getDeduplicationPeriodSeconds() + ")");
+        }
+        this.config = config;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.table = config.getSchema() + ".command_outbox";
+        this.commands = Metrics.meter()
+                .counterBuilder("backend.outbox.commands")
+                .setDescription("Outbox commands, by operation and outcome (enqueued, succeeded, failed, retried, claim.lost)")
+                .build();
+        this.waitTime = Metrics.meter()
+                .histogramBuilder("backend.outbox.wait.time")
+                .setDescription("Time commands spent in the outbox before a worker claimed them")
+                .setUnit("ms")
+                .build();
+        this.insertBatchSize = Metrics.meter()
+                .histogramBuilder("backend.outbox.insert.batch.size")
+                .setDescription("Number of commands per outbox insert")
+                .ofLongs()
+                .build();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        createTable();
+        running = true;
+        rateLimiter = RateLimiter.create(Math.max(0.1, config.getMaxCommandsPerSecond()));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-insert");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purge, 0, PURGE_INTERVAL.toMinutes(), TimeUnit.MINUTES);
+        AtomicInteger workerIndex = new AtomicInteger();
+        int workerCount = Math.max(1, config.getWorkerCount());
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-worker-" + workerIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+        LoggingSpanHelper.logInfo(logger, "Started command outbox",
+                Map.of("table", table, "workers", workerCount, "maxCommandsPerSecond", config.getMaxCommandsPerSecond()));
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (workers != null) {
+            // claimed commands that are interrupted are picked up again after the claim timeout
+            workers.shutdownNow();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Registers the handler running commands of {@code operation}, whose bodies are stored as JSON and read
+     * back as {@code bodyType}.
+     */
+    public <B> void register(String operation, Class<B> bodyType, OutboxHandler<B> handler) {
+        handlers.put(operation, new Registration<>(bodyType, handler));
+    }
+
+    /**
+     * Durably enqueues a command and returns its tracking id, or the tracking id of the command already enqueued
+     * with the same party and command id.
+     */
+    public CompletableFuture<String> enqueue(String operation, String party, String contractId, String commandId, Object body) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The command outbox is not enabled"));
+        }
+        if (!handlers.containsKey(operation)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No outbox handler for operation " + operation));
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        PendingInsert insert = new PendingInsert(operation, party, contractId, commandId, json);
+        List<PendingInsert> ready = null;
+        synchronized (pendingInserts) {
+            pendingInserts.add(insert);
+            if (pendingInserts.size() >= Math.max(1, config.getInsertBatchMaxSize())) {
+                ready = new ArrayList<>(pendingInserts);
+                pendingInserts.clear();
+            } else if (pendingInserts.size() == 1) {
+                scheduler.schedule(this::flushInserts, config.getInsertWindowMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (ready != null) {
+            List<PendingInsert> batch = ready;
+            scheduler.execute(() -> insert(batch));
+        }
+        return insert.trackingId;
+    }
+
+    /**
+     * The command with the given tracking id, if it exists and was enqueued by {@code party}.
+     */
+    public Optional<OutboxEntry> status(String trackingId, String party) {
+        UUID id;
+        try {
+            id = UUID.fromString(trackingId);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        List<OutboxEntry> entries = jdbcTemplate.query(
+                "select tracking_id, operation, contract_id, command_id, status, attempts, enqueued_at, completed_at, "
+                        + "response_status, response_body, error from " + table + " where tracking_id = ? and party = ?",
+                (rs, rowNum) -> new OutboxEntry(
+                        rs.getString("tracking_id"),
+                        rs.getString("operation"),
+                        rs.getString("contract_id"),
+                        rs.getString("command_id"),
+                        OutboxEntry.Status.valueOf(rs.getString("status").toUpperCase(Locale.ROOT)),
+                        rs.getInt("attempts"),
+                        instant(rs, "enqueued_at"),
+                        instant(rs, "completed_at"),
+                        (Integer) rs.getObject("response_status"),
+                        rs.getString("response_body"),
+                        rs.getString("error")
+                ),
+                id, party
+        );
+        return entries.stream().findFirst();
+    }
+
+    private void createTable() {
+        jdbcTemplate.execute("create schema if not exists " + config.getSchema());
+        jdbcTemplate.execute("""
+                create table if not exists %s (
+                    tracking_id uuid primary key,
+                    operation text not null,
+                    party text not null,
+                    command_id text not null,
+                    contract_id text not null,
+                    body text not null,
+                    status text not null default 'pending',
+                    attempts int not null default 0,
+                    enqueued_at timestamptz not null default now(),
+                    available_at timestamptz not null default now(),
+                    claimed_at timestamptz,
+                    completed_at timestamptz,
+                    response_status int,
+                    response_body text,
+                    error text,
+                    unique (party, command_id)
+                )""".formatted(table));
+        jdbcTemplate.execute("create index if not exists command_outbox_open on " + table
+                + " (enqueued_at) where status in ('pending', 'running')");
+    }
+
+    private void flushInserts() {
+        List<PendingInsert> batch;
+        synchronized (pendingInserts) {
+            if (pendingInserts.isEmpty()) {
+                // already inserted for reaching the maximum batch size
+                return;
+            }
+            batch = new ArrayList<>(pendingInserts);
+            pendingInserts.clear();
+        }
+        insert(batch);
+    }
+
+    private void insert(List<PendingInsert> batch) {
+        insertBatchSize.record(batch.size());
+        try {
+            int[][] counts = jdbcTemplate.batchUpdate(
+                    "insert into " + table + " (tracking_id, operation, party, command_id, contract_id, body) "
+                            + "values (?, ?, ?, ?, ?, ?) on conflict (party, command_id) do nothing",
+                    batch,
+                    batch.size(),
+                    (ps, insert) -> {
+                        ps.setObject(1, insert.id);
+                        ps.setString(2, insert.operation);
+                        ps.setString(3, insert.party);
+                        ps.setString(4, insert.commandId);
+                        ps.setString(5, insert.contractId);
+                        ps.setString(6, insert.body);
+                    }
+            );
+            for (int i = 0; i < batch.size(); i++) {
+                PendingInsert insert = batch.get(i);
+                if (counts[0][i] == 0) {
+                    // a command with this id was enqueued before, possibly earlier in this batch
+                    insert.trackingId.complete(jdbcTemplate.queryForObject(
+                            "select tracking_id from " + table + " where party = ? and command_id = ?",
+                            String.class, insert.party, insert.commandId));
+                } else {
+                    commands.add(1, Metrics.attributes("operation", insert.operation, "outcome", "enqueued"));
+                    insert.trackingId.complete(insert.id.toString());
+                }
+            }
+        } catch (RuntimeException e) {
+            LoggingSpanHelper.logError(logger, "Failed to insert commands into the outbox", Map.of("batch.size", batch.size()), e);
+            batch.forEach(insert -> insert.trackingId.completeExceptionally(e));
+        }
+    }
+
+    private void work() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                List<Claimed> claimed = claim();
+                if (claimed.isEmpty()) {
+                    Thread.sleep(config.getPollIntervalMillis());
+                    continue;
+                }
+                List<CompletableFuture<Outcome>> runs = new ArrayList<>(claimed.size());
+                for (Claimed command : claimed) {
+                    rateLimiter.acquire();
+                    runs.add(run(command));
+                }
+                List<Outcome> outcomes = new ArrayList<>(runs.size());
+                for (CompletableFuture<Outcome> run : runs) {
+                    outcomes.add(run.join());
+                }
+                record(outcomes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LoggingSpanHelper.logError(logger, "Outbox worker failed, backing off", e);
+                try {
+                    Thread.sleep(config.getPollIntervalMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private List<Claimed> claim() {
+        return jdbcTemplate.query(
+                "update " + table + " o set status = 'running', claimed_at = now(), attempts = o.attempts + 1 "
+                        + "where o.tracking_id in ("
+                        + "  select tracking_id from " + table
+                        + "  where (status = 'pending' and available_at <= now())"
+                        + "     or (status = 'running' and claimed_at < now() - (? * interval '1 second'))"
+                        + "  order by enqueued_at"
+                        + "  limit ?"
+                        + "  for update skip locked"
+                        + ") returning o.tracking_id, o.operation, o.party, o.command_id, o.contract_id, o.body, o.attempts, o.enqueued_at",
+                (rs, rowNum) -> new Claimed(
+                        rs.getString("tracking_id"),
+                        rs.getString("operation"),
+                        rs.getString("party"),
+                        rs.getString("command_id"),
+                        rs.getString("contract_id"),
+                        rs.getString("body"),
+                        rs.getInt("attempts"),
+                        instant(rs, "enqueued_at")
+                ),
+                config.getClaimTimeoutSeconds(),
+                Math.max(1, config.getClaimBatchSize())
+        );
+    }
+
+    private CompletableFuture<Outcome> run(Claimed command) {
+        waitTime.record(Math.max(0, Duration.between(command.enqueuedAt, Instant.now()).toMillis()),
+                Metrics.attributes("operation", command.operation));
+        Registration<?> registration = handlers.get(command.operation);
+        if (registration == null) {
+            return CompletableFuture.completedFuture(
+                    outcome(command, null, new IllegalStateException("No outbox handler for operation " + command.operation)));
+        }
+        CompletableFuture<? extends ResponseEntity<?>> response;
+        try (Scope ignored = PriorityClass.BATCH.makeCurrent()) {
+            response = registration.execute(command, objectMapper);
+        } catch (JsonProcessingException | RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.handle((result, ex) -> outcome(command, result, ex));
+    }
+
+    private Outcome outcome(Claimed command, ResponseEntity<?> response, Throwable ex) {
+        Map<String, Object> attrs = Map.of("trackingId", command.trackingId, "operation", command.operation, "commandId", command.commandId);
+        if (ex != null) {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (command.attempts > 1 && LedgerApi.isDuplicateCommand(cause)) {
+                // an earlier attempt of this claim was applied before its worker stopped or lost the claim
+                commands.add(1, Metrics.attributes("operation", command.operation, "outcome", "succeeded"));
+                LoggingSpanHelper.logInfo(logger, "Outbox command was already applied by an earlier attempt", attrs);
+                return new Outcome(command, OutboxEntry.Status.SUCCEEDED, null, null, null);
+            }
+            boolean overload = cause instanceof ConcurrencyLimitExceededException || cause instanceof TransientDataAccessException;
+            if (overload && command.attempts < config.getMaxAttempts()) {
+                commands.add(1, Metrics.attributes("operation", command.operation, "outcome", "retried"));
+                LoggingSpanHelper.logInfo(logger, "Outbox command hit overload, retrying later", attrs);
+                return new Outcome(command, OutboxEntry.Status.PENDING, null, null, cause.toString());
+            }
+            commands.add(1, Metrics.attributes("operation", command.operation, "outcome", "failed"));
+            LoggingSpanHelper.logError(logger, "Outbox command failed", attrs, cause);
+            return new Outcome(command, OutboxEntry.Status.FAILED, null, null, cause.toString());
+        }
+        String body;
+        try {
+            body = response.getBody() != null ? objectMapper.writeValueAsString(response.getBody()) : null;
+        } catch (JsonProcessingException e) {
+            body = null;
+        }
+        boolean succeeded = response.getStatusCode().is2xxSuccessful();
+        commands.add(1, Metrics.attributes("operation", command.operation, "outcome", succeeded ? "succeeded" : "failed"));
+        return new Outcome(
+                command,
+                succeeded ? OutboxEntry.Status.SUCCEEDED : OutboxEntry.Status.FAILED,
+                response.getStatusCode().value(),
+                body,
+                null
+        );
+    }
+
+    private void record(List<Outcome> outcomes) {
+        List<Outcome> retried = new ArrayList<>();
+        List<Outcome> completed = new ArrayList<>();
+        for (Outcome outcome : outcomes) {
+            (outcome.status == OutboxEntry.Status.PENDING ? retried : completed).add(outcome);
+        }
+        if (!completed.isEmpty()) {
+            int[][] counts = jdbcTemplate.batchUpdate(
+                    "update " + table + " set status = ?, completed_at = now(), response_status = ?, response_body = ?, error = ? "
+                            + "where tracking_id = ? and status = 'running' and attempts = ?",
+                    completed,
+                    completed.size(),
+                    (ps, outcome) -> {
+                        ps.setString(1, outcome.status.name().toLowerCase(Locale.ROOT));
+                        ps.setObject(2, outcome.responseStatus, Types.INTEGER);
+                        ps.setString(3, outcome.responseBody);
+                        ps.setString(4, outcome.error);
+                        ps.setObject(5, UUID.fromString(outcome.command.trackingId));
+                        ps.setInt(6, outcome.command.attempts);
+                    }
+            );
+            logLostClaims(completed, counts);
+        }
+        if (!retried.isEmpty()) {
+            int[][] counts = jdbcTemplate.batchUpdate(
+                    "update " + table + " set status = 'pending', available_at = now() + (? * interval '1 millisecond'), error = ? "
+                            + "where tracking_id = ? and status = 'running' and attempts = ?",
+                    retried,
+                    retried.size(),
+                    (ps, outcome) -> {
+                        // linear backoff, the rate limit already spreads the load
+                        ps.setLong(1, config.getRetryBackoffMillis() * outcome.command.attempts);
+                        ps.setString(2, outcome.error);
+                        ps.setObject(3, UUID.fromString(outcome.command.trackingId));
+                        ps.setInt(4, outcome.command.attempts);
+                    }
+            );
+            logLostClaims(retried, counts);
+        }
+    }
+
+    private void logLostClaims(List<Outcome> outcomes, int[][] counts) {
+        for (int i = 0; i < outcomes.size(); i++) {
+            if (counts[0][i] == 0) {
+                // claimed again after the claim timeout; the newer claim records the outcome
+                Claimed command = outcomes.get(i).command;
+                commands.add(1, Metrics.attributes("operation", command.operation, "outcome", "claim.lost"));
+                LoggingSpanHelper.logInfo(logger, "Outbox command was claimed by another worker, dropping its outcome",
+                        Map.of("trackingId", command.trackingId, "operation", command.operation, "attempts", command.attempts));
+            }
+        }
+    }
+
+    private void purge() {
+        try {
+            int purged = jdbcTemplate.update(
+                    "delete from " + table + " where status in ('succeeded', 'failed') and completed_at < now() - (? * interval '1 hour')",
+                    config.getRetentionHours()
+            );
+            if (purged > 0) {
+                LoggingSpanHelper.logDebug(logger, "Purged completed outbox commands", Map.of("count", purged));
+            }
+        } catch (RuntimeException e) {
+            LoggingSpanHelper.logError(logger, "Failed to purge completed outbox commands", e);
+        }
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+
+    private static final class Registration<B> {
+        private final Class<B> bodyType;
+        private final OutboxHandler<B> handler;
+
+        private Registration(Class<B> bodyType, OutboxHandler<B> handler) {
+            this.bodyType = bodyType;
+            this.handler = handler;
+        }
+
+        private CompletableFuture<? extends ResponseEntity<?>> execute(Claimed command, ObjectMapper objectMapper)
+                throws JsonProcessingException {
+            B body = objectMapper.readValue(command.body, bodyType);
+            return handler.execute(command.party, command.contractId, command.commandId, body);
+        }
+    }
+
+    private static final class PendingInsert {
+        private final UUID id = UUID.randomUUID();
+        private final String operation;
+        private final String party;
+        private final String contractId;
+        private final String commandId;
+        private final String body;
+        private final CompletableFuture<String> trackingId = new CompletableFuture<>();
+
+        private PendingInsert(String operation, String party, String contractId, String commandId, String body) {
+            this.operation = operation;
+            this.party = party;
+            this.contractId = contractId;
+            this.commandId = commandId;
+            this.body = body;
+        }
+    }
+
+    private static final class Claimed {
+        private final String trackingId;
+        private final String operation;
+        private final String party;
+        private final String commandId;
+        private final String contractId;
+        private final String body;
+        private final int attempts;
+        private final Instant enqueuedAt;
+
+        private Claimed(
+                String trackingId,
+                String operation,
+                String party,
+                String commandId,
+                String contractId,
+                String body,
+                int attempts,
+                Instant enqueuedAt
+        ) {
+            this.trackingId = trackingId;
+            this.operation = operation;
+            this.party = party;
+            this.commandId = commandId;
+            this.contractId = contractId;
+            this.body = body;
+            this.attempts = attempts;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class Outcome {
+        private final Claimed command;
+        private final OutboxEntry.Status status;
+        private final Integer responseStatus;
+        private final String responseBody;
+        private final String error;
+
+        private Outcome(Claimed command, OutboxEntry.Status status, Integer responseStatus, String responseBody, String error) {
+            this.command = command;
+            this.status = status;
+            this.responseStatus = responseStatus;
+            this.responseBody = responseBody;
+            this.error = error;
+        }
+    }
+}
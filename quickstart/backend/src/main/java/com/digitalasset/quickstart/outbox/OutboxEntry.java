@@ -0,0 +1,104 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.outbox;
+
+import java.time.Instant;
+
+/**
+ * The state of a command in the outbox, as returned by status queries.
+ * <p>
+ * {@code responseStatus} and {@code responseBody} are what the synchronous endpoint would have answered, once
+ * the command has run, the latter as JSON; {@code error} is set if it failed without producing a response.
+ */
+public final class OutboxEntry {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private final String trackingId;
+    private final String operation;
+    private final String contractId;
+    private final String commandId;
+    private final Status status;
+    private final int attempts;
+    private final Instant enqueuedAt;
+    private final Instant completedAt;
+    private final Integer responseStatus;
+    private final String responseBody;
+    private final String error;
+
+    OutboxEntry(
+            String trackingId,
+            String operation,
+            String contractId,
+            String commandId,
+            Status status,
+            int attempts,
+            Instant enqueuedAt,
+            Instant completedAt,
+            Integer responseStatus,
+            String responseBody,
+            String error
+    ) {
+        this.trackingId = trackingId;
+        this.operation = operation;
+        this.contractId = contractId;
+        this.commandId = commandId;
+        this.status = status;
+        this.attempts = attempts;
+        this.enqueuedAt = enqueuedAt;
+        this.completedAt = completedAt;
+        this.responseStatus = responseStatus;
+        this.responseBody = responseBody;
+        this.error = error;
+    }
+
+    public String getTrackingId() {
+        return trackingId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getContractId() {
+        return contractId;
+    }
+
+    public String getCommandId() {
+        return commandId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public Integer getResponseStatus() {
+        return responseStatus;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,19 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.outbox;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs one kind of outbox command on behalf of {@code party}, producing the response the synchronous endpoint
+ * would have returned.
+ *
+ * @param <B> the request body type of the endpoint
+ */
+@FunctionalInterface
+public interface OutboxHandler<B> {
+    CompletableFuture<? extends ResponseEntity<?>> execute(String party, String contractId, String commandId, B body);
+}
@@ -3,31 +3,56 @@
 
 package com.digitalasset.quickstart.pqs;
 
+import com.digitalasset.quickstart.config.PqsConfig;
+import com.digitalasset.quickstart.utility.AdaptiveConcurrencyLimiter;
+import com.digitalasset.quickstart.utility.ConverterRegistry;
 import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.digitalasset.quickstart.utility.Metrics;
+import com.digitalasset.quickstart.utility.RequestDeadline;
 import com.digitalasset.transcode.Converter;
-import com.digitalasset.transcode.codec.json.JsonStringCodec;
 import com.digitalasset.transcode.java.ContractId;
 import com.digitalasset.transcode.java.Template;
 import com.digitalasset.transcode.java.Utils;
-import com.digitalasset.transcode.schema.Dictionary;
 import com.digitalasset.transcode.schema.Identifier;
-import daml.Daml;
+import jakarta.annotation.PreDestroy;
+import io.opentelemetry.api.metrics.DoubleHistogram;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.digitalasset.quickstart.utility.ContextAwareCompletableFutures.supplyWithin;
 
 @Component
 public class Pqs {
@@ -35,16 +60,61 @@ public class Pqs {
     private static final Logger logger = LoggerFactory.getLogger(Pqs.class);
 
     private final JdbcTemplate jdbcTemplate;
-    private final Dictionary<Converter<String, Object>> json2Dto;
+    private final PqsConfig pqsConfig;
+    private final ConverterRegistry converters;
+    private final ForkJoinPool decodePool;
+    private final DoubleHistogram phaseDuration;
+    private final AdaptiveConcurrencyLimiter limiter;
 
     @Autowired
-    public Pqs(JdbcTemplate jdbcTemplate) {
+    public Pqs(JdbcTemplate jdbcTemplate, PqsConfig pqsConfig, ConverterRegistry converters) {
         this.jdbcTemplate = jdbcTemplate;
-        this.json2Dto = Utils.getConverters(new JsonStringCodec(true, true), Daml.ENTITIES);
+        this.pqsConfig = pqsConfig;
+        this.converters = converters;
+        this.decodePool = new ForkJoinPool(
+                Math.max(1, pqsConfig.getParallelDecodeParallelism()),
+                pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("pqs-decode-" + thread.getPoolIndex());
+                    return thread;
+                },
+                null,
+                false
+        );
+        this.phaseDuration = Metrics.meter()
+                .histogramBuilder("backend.pqs.active.duration")
+                .setDescription("Time spent per phase (fetch, decode, passthrough) of active contract queries")
+                .setUnit("ms")
+                .build();
+        this.limiter = new AdaptiveConcurrencyLimiter(
+                "pqs",
+                pqsConfig.getConcurrencyLimitInitial(),
+                pqsConfig.getConcurrencyLimitMin(),
+                pqsConfig.getConcurrencyLimitMax(),
+                Duration.ofMillis(pqsConfig.getConcurrencyQueueTimeoutMillis()),
+                // query timeouts, lock and pool acquisition failures
+                ex -> ex instanceof TransientDataAccessException
+        );
     }
 
     @WithSpan
     public <T extends Template> CompletableFuture<List<Contract<T>>> active(Class<T> clazz) {
+        return active(clazz, contract -> true, Function.identity());
+    }
+
+    /**
+     * Fetch all active contracts of a template, keep those matching {@code filter} and map them with {@code mapper}.
+     * <p>
+     * Rows are first fetched as raw JSON and then decoded, filtered and mapped in one pass. Result sets at or above
+     * the configured threshold are processed in ordered chunks on a dedicated fork-join pool; the result order
+     * always matches the order returned by the query.
+     */
+    @WithSpan
+    public <T extends Template, R> CompletableFuture<List<R>> active(
+            Class<T> clazz,
+            Predicate<Contract<T>> filter,
+            Function<Contract<T>, R> mapper
+    ) {
         Identifier identifier = Utils.getTemplateIdByClass(clazz);
         Span span = Span.current();
 
@@ -52,20 +122,34 @@ public class Pqs {
         LoggingSpanHelper.setSpanAttributes(span, baseAttrs);
         LoggingSpanHelper.logInfo(logger, "Fetching active contracts", baseAttrs);
 
-        return CompletableFuture
-                .supplyAsync(() -> {
-                    String sql = "select contract_id, payload from active(?)";
-                    List<Contract<T>> results = jdbcTemplate.query(
-                            sql,
-                            new PqsContractRowMapper<>(identifier),
-                            identifier.qualifiedName()
-                    );
-                    LoggingSpanHelper.setSpanAttributes(
-                            span,
-                            Map.of("backend.get.active.result.count", results.size())
-                    );
-                    return results;
-                })
+        return this.<List<R>>limitedQuery(statements -> {
+            String sql = "select contract_id, payload from active(?)";
+            long fetchStart = System.nanoTime();
+            List<RawContract> rows = jdbcTemplate.query(
+                    statements.prepare(sql, identifier.qualifiedName()),
+                    (rs, rowNum) -> new RawContract(rs.getString("contract_id"), rs.getString("payload"))
+            );
+            double fetchMillis = Metrics.millisSince(fetchStart);
+
+            long decodeStart = System.nanoTime();
+            boolean parallel = isParallelDecode(rows.size());
+            List<R> results = decodeAndMap(rows, identifier, filter, mapper, parallel);
+            double decodeMillis = Metrics.millisSince(decodeStart);
+
+            phaseDuration.record(fetchMillis, Metrics.attributes("templateId", identifier.qualifiedName(), "phase", "fetch"));
+            phaseDuration.record(decodeMillis, Metrics.attributes("templateId", identifier.qualifiedName(), "phase", "decode"));
+            LoggingSpanHelper.setSpanAttributes(
+                    span,
+                    Map.of(
+                            "backend.get.active.result.count", results.size(),
+                            "backend.get.active.row.count", rows.size(),
+                            "backend.get.active.parallel", parallel,
+                            "backend.get.active.fetch.ms", fetchMillis,
+                            "backend.get.active.decode.ms", decodeMillis
+                    )
+            );
+            return results;
+        })
                 .whenComplete((res, ex) -> {
                     if (ex != null) {
                         LoggingSpanHelper.logError(
@@ -104,16 +188,14 @@ public class Pqs {
         LoggingSpanHelper.setSpanAttributes(span, baseAttrs);
         LoggingSpanHelper.logInfo(logger, "Fetching single active contract with custom whereClause", baseAttrs);
 
-        return CompletableFuture
-                .<Optional<Contract<T>>>supplyAsync(() -> {
-                    String sql = "select contract_id, payload from active(?) where " + whereClause;
-                    List<Contract<T>> results = jdbcTemplate.query(
-                            sql,
-                            new PqsContractRowMapper<>(identifier),
-                            combineParams(identifier.qualifiedName(), params)
-                    );
-                    return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
-                })
+        return this.<Optional<Contract<T>>>limitedQuery(statements -> {
+            String sql = "select contract_id, payload from active(?) where (" + whereClause + ")";
+            List<Contract<T>> results = jdbcTemplate.query(
+                    statements.prepare(sql, combineParams(identifier.qualifiedName(), params)),
+                    new PqsContractRowMapper<>(identifier)
+            );
+            return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
+        })
                 .whenComplete((res, ex) -> {
                     if (ex != null) {
                         LoggingSpanHelper.logError(
@@ -148,15 +230,13 @@ public class Pqs {
         LoggingSpanHelper.setSpanAttributes(span, baseAttrs);
         LoggingSpanHelper.logInfo(logger, "Fetching contract by ID", baseAttrs);
 
-        return CompletableFuture
-                .<Contract<T>>supplyAsync(() -> {
-                    String sql = "select contract_id, payload from lookup_contract(?)";
-                    return jdbcTemplate.queryForObject(
-                            sql,
-                            new PqsContractRowMapper<>(identifier),
-                            id
-                    );
-                })
+        return this.<Contract<T>>limitedQuery(statements -> {
+            String sql = "select contract_id, payload from lookup_contract(?)";
+            return DataAccessUtils.requiredSingleResult(jdbcTemplate.query(
+                    statements.prepare(sql, id),
+                    new PqsContractRowMapper<>(identifier)
+            ));
+        })
                 .whenComplete((res, ex) -> {
                     if (ex != null) {
                         LoggingSpanHelper.logError(
@@ -172,6 +252,114 @@ public class Pqs {
                 });
     }
 
+    /**
+     * Stream active contracts of a template straight to {@code out} as a JSON array, without decoding them.
+     * <p>
+     * {@code jsonExpression} is evaluated by Postgres per row against the {@code payload} and {@code contract_id}
+     * columns and must yield the response-shaped JSON object; {@code whereClause} filters rows like in
+     * {@link #singleActiveWhere}. Rows are written as they are read. Returns the number of rows written.
+     */
+    @WithSpan
+    public <T extends Template> int streamActiveJson(
+            Class<T> clazz,
+            String jsonExpression,
+            String whereClause,
+            OutputStream out,
+            Object... params
+    ) {
+        Identifier identifier = Utils.getTemplateIdByClass(clazz);
+        Span span = Span.current();
+
+        Map<String, Object> baseAttrs = Map.of(
+                "templateId", identifier.qualifiedName(),
+                "whereClause", whereClause
+        );
+        LoggingSpanHelper.setSpanAttributes(span, baseAttrs);
+        LoggingSpanHelper.logInfo(logger, "Streaming active contracts as JSON", baseAttrs);
+
+        String sql = "select (" + jsonExpression + ")::text as json from active(?) where (" + whereClause + ")";
+        byte[] separator = {','};
+        int[] count = {0};
+        long start = System.nanoTime();
+        Statements statements = new Statements(queryTimeoutSeconds());
+        // checked before anything is written, so a rejection can still become a 503
+        limiter.call(() -> {
+            try {
+                out.write('[');
+                jdbcTemplate.query(
+                        statements.prepare(sql, combineParams(identifier.qualifiedName(), params)),
+                        rs -> {
+                            try {
+                                if (count[0]++ > 0) {
+                                    out.write(separator);
+                                }
+                                out.write(rs.getString("json").getBytes(StandardCharsets.UTF_8));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                );
+                out.write(']');
+                out.flush();
+            } catch (IOException | RuntimeException e) {
+                LoggingSpanHelper.logError(logger, "Failed to stream active contracts as JSON", baseAttrs, e);
+                LoggingSpanHelper.recordException(span, e);
+                if (e instanceof IOException io) {
+                    throw new UncheckedIOException(io);
+                }
+                throw (RuntimeException) e;
+            }
+            return null;
+        });
+
+        double millis = Metrics.millisSince(start);
+        phaseDuration.record(millis, Metrics.attributes("templateId", identifier.qualifiedName(), "phase", "passthrough"));
+        LoggingSpanHelper.setSpanAttributes(
+                span,
+                Map.of(
+                        "backend.get.active.row.count", count[0],
+                        "backend.get.active.passthrough.ms", millis
+                )
+        );
+        LoggingSpanHelper.logInfo(
+                logger,
+                "Streamed active contracts as JSON",
+                Map.of("templateId", identifier.qualifiedName(), "resultCount", count[0])
+        );
+        return count[0];
+    }
+
+    /**
+     * Runs {@code query} on the common pool within the concurrency limit. Its statements time out with the
+     * caller's {@link RequestDeadline}, or after {@code pqs.query-timeout-seconds} outside of requests, and are
+     * cancelled if the request is aborted while they run. Queries of requests whose deadline has already passed
+     * fail right away without taking a slot.
+     */
+    private <R> CompletableFuture<R> limitedQuery(Function<Statements, R> query) {
+        if (RequestDeadline.current().map(RequestDeadline::isExpired).orElse(false)) {
+            return CompletableFuture.failedFuture(new QueryTimeoutException("Request deadline passed before the query started"));
+        }
+        return limiter.execute(() -> {
+            // evaluated once admitted, so time spent queueing for a slot counts against the deadline
+            Statements statements = new Statements(queryTimeoutSeconds());
+            CompletableFuture<R> future = CompletableFuture.supplyAsync(() -> query.apply(statements));
+            future.whenComplete((result, ex) -> {
+                if (future.isCancelled()) {
+                    statements.cancel();
+                }
+            });
+            RequestDeadline.current().ifPresent(deadline -> deadline.cancelOnAbort(future));
+            return future;
+        });
+    }
+
+    private int queryTimeoutSeconds() {
+        return RequestDeadline.current()
+                // JDBC timeouts have a granularity of seconds, rounded up so they never fire before the deadline
+                .map(deadline -> (int) Math.max(1, (deadline.remaining().toMillis() + 999) / 1000))
+                .orElse(pqsConfig.getQueryTimeoutSeconds());
+    }
+
     private Object[] combineParams(String qname, Object... params) {
         Object[] combined = new Object[params.length + 1];
         combined[0] = qname;
@@ -179,6 +367,114 @@ public class Pqs {
         return combined;
     }
 
+    private boolean isParallelDecode(int rowCount) {
+        int threshold = pqsConfig.getParallelDecodeThreshold();
+        return threshold > 0 && rowCount >= threshold && rowCount > pqsConfig.getParallelDecodeChunkSize();
+    }
+
+    private <T extends Template, R> List<R> decodeAndMap(
+            List<RawContract> rows,
+            Identifier identifier,
+            Predicate<Contract<T>> filter,
+            Function<Contract<T>, R> mapper,
+            boolean parallel
+    ) {
+        Converter<String, Object> converter = converters.jsonTemplateDecoder(identifier);
+        if (!parallel) {
+            return decodeChunk(rows, converter, filter, mapper);
+        }
+
+        Context context = Context.current();
+        int chunkSize = Math.max(1, pqsConfig.getParallelDecodeChunkSize());
+        List<CompletableFuture<List<R>>> chunks = new ArrayList<>((rows.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            List<RawContract> chunk = rows.subList(from, Math.min(from + chunkSize, rows.size()));
+            chunks.add(CompletableFuture.supplyAsync(
+                    supplyWithin(context, () -> decodeChunk(chunk, converter, filter, mapper)),
+                    decodePool
+            ));
+        }
+
+        // chunks are joined in submission order, which preserves the query's row order
+        List<R> results = new ArrayList<>(rows.size());
+        for (CompletableFuture<List<R>> chunk : chunks) {
+            results.addAll(chunk.join());
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Template, R> List<R> decodeChunk(
+            List<RawContract> rows,
+            Converter<String, Object> converter,
+            Predicate<Contract<T>> filter,
+            Function<Contract<T>, R> mapper
+    ) {
+        List<R> results = new ArrayList<>(rows.size());
+        for (RawContract row : rows) {
+            Contract<T> contract = new Contract<>(new ContractId<>(row.contractId), (T) converter.convert(row.payload));
+            if (filter.test(contract)) {
+                results.add(mapper.apply(contract));
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    void shutdownDecodePool() {
+        decodePool.shutdown();
+    }
+
+    /**
+     * Prepares the statements of one query with its timeout, keeping track of the one running so it can be
+     * cancelled from another thread.
+     */
+    private static final class Statements {
+        private final int timeoutSeconds;
+        private final AtomicReference<Statement> running = new AtomicReference<>();
+        private volatile boolean cancelled;
+
+        private Statements(int timeoutSeconds) {
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        PreparedStatementCreator prepare(String sql, Object... params) {
+            return connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql);
+                running.set(ps);
+                if (cancelled) {
+                    ps.close();
+                    throw new SQLException("Query cancelled before it started");
+                }
+                ps.setQueryTimeout(timeoutSeconds);
+                new ArgumentPreparedStatementSetter(params).setValues(ps);
+                return ps;
+            };
+        }
+
+        void cancel() {
+            cancelled = true;
+            Statement statement = running.get();
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    // already completed and closed
+                }
+            }
+        }
+    }
+
+    private static final class RawContract {
+        private final String contractId;
+        private final String payload;
+
+        private RawContract(String contractId, String payload) {
+            this.contractId = contractId;
+            this.payload = payload;
+        }
+    }
+
     private class PqsContractRowMapper<T extends Template> implements RowMapper<Contract<T>> {
         private final Identifier templateId;
 
@@ -191,7 +487,7 @@ public class Pqs {
         public Contract<T> mapRow(ResultSet rs, int rowNum) throws SQLException {
             return new Contract<>(
                     new ContractId<>(rs.getString("contract_id")),
-                    (T) json2Dto.template(templateId).convert(rs.getString("payload"))
+                    (T) converters.jsonTemplateDecoder(templateId).convert(rs.getString("payload"))
             );
         }
     }
@@ -3,8 +3,12 @@
 
 package com.digitalasset.quickstart.repository;
 
+import com.digitalasset.quickstart.ledger.ActiveContractStore;
+import com.digitalasset.quickstart.ledger.AppTemplates;
+import com.digitalasset.quickstart.ledger.WriteThroughContractCache;
 import com.digitalasset.quickstart.pqs.Contract;
 import com.digitalasset.quickstart.pqs.Pqs;
+import com.digitalasset.transcode.java.Template;
 import quickstart_licensing.licensing.appinstall.AppInstall;
 import quickstart_licensing.licensing.appinstall.AppInstallRequest;
 import quickstart_licensing.licensing.license.License;
@@ -13,21 +17,104 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import splice_wallet_payments.splice.wallet.payment.AcceptedAppPayment;
 
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * A single repository class that wraps PQS queries with typed methods.
+ * <p>
+ * While the {@link ActiveContractStore} is enabled and up to date, reads of active contracts are answered from
+ * memory instead of PQS. Methods taking a {@code stakeholder} use the store's party index and only return
+ * contracts that party is a signatory or observer of. Contracts the backend created or archived itself in the last
+ * few seconds are overlaid from the {@link WriteThroughContractCache}, so they are visible before the read side has
+ * caught up.
  */
 @Repository
 public class DamlRepository {
 
     private final Pqs pqs;
+    private final ActiveContractStore contractStore;
+    private final WriteThroughContractCache writeThroughCache;
 
     @Autowired
-    public DamlRepository(Pqs pqs) {
+    public DamlRepository(Pqs pqs, ActiveContractStore contractStore, WriteThroughContractCache writeThroughCache) {
         this.pqs = pqs;
+        this.contractStore = contractStore;
+        this.writeThroughCache = writeThroughCache;
+    }
+
+    private <T extends Template> CompletableFuture<List<Contract<T>>> active(Class<T> clazz) {
+        return active(clazz, null, contract -> true, Function.identity());
+    }
+
+    private <T extends Template, R> CompletableFuture<List<R>> active(
+            Class<T> clazz,
+            String stakeholder,
+            Predicate<Contract<T>> filter,
+            Function<Contract<T>, R> mapper
+    ) {
+        // the backend's own recent writes take precedence over what the read side has seen so far
+        Predicate<Contract<T>> readSideFilter = contract -> {
+            String contractId = contract.contractId.getContractId;
+            return !writeThroughCache.isArchived(contractId) && !writeThroughCache.isCreated(contractId) && filter.test(contract);
+        };
+        List<R> recent = writeThroughCache.active(clazz, stakeholder).stream().filter(filter).map(mapper).toList();
+
+        CompletableFuture<List<R>> readSide;
+        if (contractStore.isReady()) {
+            List<Contract<T>> contracts = stakeholder == null
+                    ? contractStore.active(clazz)
+                    : contractStore.activeForParty(clazz, stakeholder);
+            readSide = CompletableFuture.completedFuture(contracts.stream().filter(readSideFilter).map(mapper).toList());
+        } else {
+            readSide = pqs.active(clazz, readSideFilter, mapper);
+        }
+        if (recent.isEmpty()) {
+            return readSide;
+        }
+        return readSide.thenApply(results -> {
+            List<R> merged = new ArrayList<>(results.size() + recent.size());
+            merged.addAll(results);
+            merged.addAll(recent);
+            return merged;
+        });
+    }
+
+    private <T extends Template> CompletableFuture<Contract<T>> byContractId(Class<T> clazz, String contractId) {
+        Optional<Contract<T>> recent = writeThroughCache.byId(clazz, contractId);
+        if (recent.isPresent()) {
+            return CompletableFuture.completedFuture(recent.get());
+        }
+        if (contractStore.isReady()) {
+            Optional<Contract<T>> contract = contractStore.byId(clazz, contractId);
+            if (contract.isPresent()) {
+                return CompletableFuture.completedFuture(contract.get());
+            }
+            // not active (or not mirrored): PQS also knows archived contracts
+        }
+        return pqs.byContractId(clazz, contractId);
+    }
+
+    private <T extends Template> CompletableFuture<Optional<Contract<T>>> byKey(
+            Class<T> clazz,
+            Object key,
+            Supplier<CompletableFuture<Optional<Contract<T>>>> pqsQuery
+    ) {
+        Optional<Contract<T>> recent = writeThroughCache.byKey(clazz, key);
+        if (recent.isPresent()) {
+            return CompletableFuture.completedFuture(recent);
+        }
+        CompletableFuture<Optional<Contract<T>>> readSide = contractStore.isReady()
+                ? CompletableFuture.completedFuture(contractStore.byKey(clazz, key))
+                : pqsQuery.get();
+        return readSide.thenApply(contract ->
+                contract.filter(c -> !writeThroughCache.isArchived(c.contractId.getContractId)));
     }
 
     // ------------------------------------------------------------------------
@@ -38,14 +125,36 @@ public class DamlRepository {
      * Find all active LicenseRenewalRequest contracts.
      */
     public CompletableFuture<List<Contract<LicenseRenewalRequest>>> findActiveLicenseRenewalRequests() {
-        return pqs.active(LicenseRenewalRequest.class);
+        return active(LicenseRenewalRequest.class);
+    }
+
+    /**
+     * Find active LicenseRenewalRequest contracts matching {@code filter}, each mapped with {@code mapper}.
+     */
+    public <R> CompletableFuture<List<R>> findActiveLicenseRenewalRequests(
+            Predicate<Contract<LicenseRenewalRequest>> filter,
+            Function<Contract<LicenseRenewalRequest>, R> mapper
+    ) {
+        return active(LicenseRenewalRequest.class, null, filter, mapper);
+    }
+
+    /**
+     * Find active LicenseRenewalRequest contracts that {@code stakeholder} is a signatory or observer of and that match {@code filter},
+     * each mapped with {@code mapper}.
+     */
+    public <R> CompletableFuture<List<R>> findActiveLicenseRenewalRequests(
+            String stakeholder,
+            Predicate<Contract<LicenseRenewalRequest>> filter,
+            Function<Contract<LicenseRenewalRequest>, R> mapper
+    ) {
+        return active(LicenseRenewalRequest.class, stakeholder, filter, mapper);
     }
 
     /**
      * Fetch a LicenseRenewalRequest contract by contract ID.
      */
     public CompletableFuture<Contract<LicenseRenewalRequest>> findLicenseRenewalRequestById(String contractId) {
-        return pqs.byContractId(LicenseRenewalRequest.class, contractId);
+        return byContractId(LicenseRenewalRequest.class, contractId);
     }
 
     // ------------------------------------------------------------------------
@@ -56,14 +165,36 @@ public class DamlRepository {
      * Find all active License contracts.
      */
     public CompletableFuture<List<Contract<License>>> findActiveLicenses() {
-        return pqs.active(License.class);
+        return active(License.class);
+    }
+
+    /**
+     * Find active License contracts matching {@code filter}, each mapped with {@code mapper}.
+     */
+    public <R> CompletableFuture<List<R>> findActiveLicenses(
+            Predicate<Contract<License>> filter,
+            Function<Contract<License>, R> mapper
+    ) {
+        return active(License.class, null, filter, mapper);
+    }
+
+    /**
+     * Find active License contracts that {@code stakeholder} is a signatory or observer of and that match {@code filter},
+     * each mapped with {@code mapper}.
+     */
+    public <R> CompletableFuture<List<R>> findActiveLicenses(
+            String stakeholder,
+            Predicate<Contract<License>> filter,
+            Function<Contract<License>, R> mapper
+    ) {
+        return active(License.class, stakeholder, filter, mapper);
     }
 
     /**
      * Fetch a License contract by contract ID.
      */
     public CompletableFuture<Contract<License>> findLicenseById(String contractId) {
-        return pqs.byContractId(License.class, contractId);
+        return byContractId(License.class, contractId);
     }
 
     /**
@@ -80,13 +211,17 @@ public class DamlRepository {
                         + "AND payload->>'provider' = ? "
                         + "AND (payload->>'licenseNum')::int = ? "
                         + "AND payload->>'dso' = ?";
-        return pqs.singleActiveWhere(
+        return byKey(
                 License.class,
-                whereClause,
-                user,
-                provider,
-                licenseNum,
-                dso
+                AppTemplates.licenseKey(user, provider, licenseNum, dso),
+                () -> pqs.singleActiveWhere(
+                        License.class,
+                        whereClause,
+                        user,
+                        provider,
+                        licenseNum,
+                        dso
+                )
         );
     }
 
@@ -106,12 +241,16 @@ public class DamlRepository {
                 "payload->>'reference' = ? "
                         + "AND payload->>'sender' = ? "
                         + "AND payload->>'provider' = ?";
-        return pqs.singleActiveWhere(
+        return byKey(
                 AcceptedAppPayment.class,
-                whereClause,
-                referenceCid,
-                user,
-                provider
+                AppTemplates.acceptedAppPaymentKey(referenceCid, user, provider),
+                () -> pqs.singleActiveWhere(
+                        AcceptedAppPayment.class,
+                        whereClause,
+                        referenceCid,
+                        user,
+                        provider
+                )
         );
     }
 
@@ -123,14 +262,24 @@ public class DamlRepository {
      * Fetch all active AppInstall contracts.
      */
     public CompletableFuture<List<Contract<AppInstall>>> findActiveAppInstalls() {
-        return pqs.active(AppInstall.class);
+        return active(AppInstall.class);
+    }
+
+    /**
+     * Find active AppInstall contracts matching {@code filter}, each mapped with {@code mapper}.
+     */
+    public <R> CompletableFuture<List<R>> findActiveAppInstalls(
+            Predicate<Contract<AppInstall>> filter,
+            Function<Contract<AppInstall>, R> mapper
+    ) {
+        return active(AppInstall.class, null, filter, mapper);
     }
 
     /**
      * Fetch an AppInstall contract by contract ID.
      */
     public CompletableFuture<Contract<AppInstall>> findAppInstallById(String contractId) {
-        return pqs.byContractId(AppInstall.class, contractId);
+        return byContractId(AppInstall.class, contractId);
     }
 
     // ------------------------------------------------------------------------
@@ -141,13 +290,147 @@ public class DamlRepository {
      * Fetch all active AppInstallRequest contracts.
      */
     public CompletableFuture<List<Contract<AppInstallRequest>>> findActiveAppInstallRequests() {
-        return pqs.active(AppInstallRequest.class);
+        return active(AppInstallRequest.class);
+    }
+
+    /**
+     * Find active AppInstallRequest contracts matching {@code filter}, each mapped with {@code mapper}.
+     */
+    public <R> CompletableFuture<List<R>> findActiveAppInstallRequests(
+            Predicate<Contract<AppInstallRequest>> filter,
+            Function<Contract<AppInstallRequest>, R> mapper
+    ) {
+        return active(AppInstallRequest.class, null, filter, mapper);
+    }
+
+    /**
+     * Find active AppInstallRequest contracts that {@code stakeholder} is a signatory or observer of and that match {@code filter},
+     * each mapped with {@code mapper}.
+     */
+    public <R> CompletableFuture<List<R>> findActiveAppInstallRequests(
+            String stakeholder,
+            Predicate<Contract<AppInstallRequest>> filter,
+            Function<Contract<AppInstallRequest>, R> mapper
+    ) {
+        return active(AppInstallRequest.class, stakeholder, filter, mapper);
     }
 
     /**
      * Fetch an AppInstallRequest contract by contract ID.
      */
     public CompletableFuture<Contract<AppInstallRequest>> findAppInstallRequestById(String contractId) {
-        return pqs.byContractId(AppInstallRequest.class, contractId);
+        return byContractId(AppInstallRequest.class, contractId);
+    }
+
+    // ------------------------------------------------------------------------
+    // JSON passthrough queries
+    //
+    // Each query builds the OpenAPI-shaped JSON object in Postgres and streams it to the caller as-is.
+    // Field names and encodings must stay in line with common/openapi.yaml and the list endpoints
+    // of the corresponding *ApiImpl controllers.
+    // ------------------------------------------------------------------------
+
+    private static String metadataJson(String path) {
+        // DA.Map values are encoded as an array of [key, value] pairs
+        return "jsonb_build_object('data', coalesce("
+                + "(select jsonb_object_agg(kv->>0, kv->>1) from jsonb_array_elements(" + path + "->'values') kv), "
+                + "'{}'::jsonb))";
+    }
+
+    private static final String LICENSE_JSON =
+            "jsonb_build_object("
+                    + "'contractId', contract_id, "
+                    + "'dso', payload->'dso', "
+                    + "'provider', payload->'provider', "
+                    + "'user', payload->'user', "
+                    + "'params', jsonb_build_object('meta', " + metadataJson("payload->'params'->'meta'") + "), "
+                    + "'expiresAt', payload->'expiresAt', "
+                    + "'licenseNum', (payload->>'licenseNum')::int)";
+
+    private static final String LICENSE_RENEWAL_REQUEST_JSON =
+            "jsonb_build_object("
+                    + "'contractId', contract_id, "
+                    + "'provider', payload->'provider', "
+                    + "'user', payload->'user', "
+                    + "'dso', payload->'dso', "
+                    + "'licenseNum', (payload->>'licenseNum')::int, "
+                    + "'licenseFeeCc', (payload->>'licenseFeeCc')::numeric, "
+                    + "'licenseExtensionDuration', "
+                    + "((payload->'licenseExtensionDuration'->>'microseconds')::bigint / 86400000000) || ' days', "
+                    + "'reference', payload->'reference')";
+
+    private static final String APP_INSTALL_JSON =
+            "jsonb_build_object("
+                    + "'contractId', contract_id, "
+                    + "'dso', payload->'dso', "
+                    + "'provider', payload->'provider', "
+                    + "'user', payload->'user', "
+                    + "'meta', " + metadataJson("payload->'meta'") + ", "
+                    + "'numLicensesCreated', (payload->>'numLicensesCreated')::int, "
+                    + "'licenseNum', null::int)";
+
+    private static final String APP_INSTALL_REQUEST_JSON =
+            "jsonb_build_object("
+                    + "'contractId', contract_id, "
+                    + "'dso', payload->'dso', "
+                    + "'provider', payload->'provider', "
+                    + "'user', payload->'user', "
+                    + "'meta', " + metadataJson("payload->'meta'") + ")";
+
+    /**
+     * Stream the active Licenses visible to {@code party} (as user or provider) to {@code out} as JSON.
+     */
+    public int streamActiveLicensesJson(String party, OutputStream out) {
+        return pqs.streamActiveJson(
+                License.class,
+                LICENSE_JSON,
+                "payload->>'user' = ? OR payload->>'provider' = ?",
+                out,
+                party,
+                party
+        );
+    }
+
+    /**
+     * Stream the active LicenseRenewalRequests visible to {@code party} (as user or provider) to {@code out} as JSON.
+     */
+    public int streamActiveLicenseRenewalRequestsJson(String party, OutputStream out) {
+        return pqs.streamActiveJson(
+                LicenseRenewalRequest.class,
+                LICENSE_RENEWAL_REQUEST_JSON,
+                "payload->>'user' = ? OR payload->>'provider' = ?",
+                out,
+                party,
+                party
+        );
+    }
+
+    /**
+     * Stream the active AppInstalls visible to {@code party} (as dso, provider or user) to {@code out} as JSON.
+     */
+    public int streamActiveAppInstallsJson(String party, OutputStream out) {
+        return pqs.streamActiveJson(
+                AppInstall.class,
+                APP_INSTALL_JSON,
+                "payload->>'dso' = ? OR payload->>'provider' = ? OR payload->>'user' = ?",
+                out,
+                party,
+                party,
+                party
+        );
+    }
+
+    /**
+     * Stream the active AppInstallRequests visible to {@code party} (as user or provider) to {@code out} as JSON.
+     */
+    public int streamActiveAppInstallRequestsJson(String party, OutputStream out) {
+        return pqs.streamActiveJson(
+                AppInstallRequest.class,
+                APP_INSTALL_REQUEST_JSON,
+                "payload->>'user' = ? OR payload->>'provider' = ?",
+                out,
+                party,
+                party
+        );
     }
 }
@@ -4,22 +4,30 @@
 package com.digitalasset.quickstart.service;
 
 import com.digitalasset.quickstart.api.AdminApi;
+import com.digitalasset.quickstart.ledger.LedgerApi;
 import com.digitalasset.quickstart.repository.OAuth2ClientRegistrationRepository;
 import com.digitalasset.quickstart.repository.TenantPropertiesRepository;
 import com.digitalasset.quickstart.utility.LoggingSpanHelper;
 
 import org.openapitools.model.TenantRegistration;
 import org.openapitools.model.TenantRegistrationRequest;
+import org.openapitools.model.TenantRegistrationResult;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -43,14 +51,17 @@ public class AdminApiImpl implements AdminApi {
 
     private final OAuth2ClientRegistrationRepository tenantRegistrationRepository;
     private final TenantPropertiesRepository tenantPropertiesRepository;
+    private final LedgerApi ledger;
 
     @Autowired
     public AdminApiImpl(
             OAuth2ClientRegistrationRepository tenantRegistrationRepository,
-            TenantPropertiesRepository tenantPropertiesRepository
+            TenantPropertiesRepository tenantPropertiesRepository,
+            LedgerApi ledger
     ) {
         this.tenantRegistrationRepository = tenantRegistrationRepository;
         this.tenantPropertiesRepository = tenantPropertiesRepository;
+        this.ledger = ledger;
     }
 
     @Override
@@ -78,37 +89,7 @@ public class AdminApiImpl implements AdminApi {
                                     null
                             );
 
-                            var registration = org.springframework.security.oauth2.client.registration.ClientRegistration
-                                    .withRegistrationId(request.getClientId())
-                                    .clientId(request.getClientId())
-                                    .clientSecret(request.getClientSecret())
-                                    .authorizationUri(request.getAuthorizationUri())
-                                    .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
-                                    .tokenUri(request.getTokenUri())
-                                    .jwkSetUri(request.getJwkSetUri())
-                                    .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
-                                    .scope(request.getScope())
-                                    .clientName(request.getParty())
-                                    .providerConfigurationMetadata(Map.of("preconfigured", "false"))
-                                    .build();
-
-                            tenantRegistrationRepository.addRegistration(registration);
-
-                            TenantPropertiesRepository.TenantProperties props = new TenantPropertiesRepository.TenantProperties();
-                            props.setWalletUrl(request.getWalletUrl());
-                            tenantPropertiesRepository.addTenant(registration.getRegistrationId(), props);
-
-                            TenantRegistration response = new TenantRegistration();
-                            response.setClientId(registration.getClientId());
-                            response.setClientSecret(registration.getClientSecret());
-                            response.setScope(String.join(" ", registration.getScopes()));
-                            response.setAuthorizationUri(URI.create(registration.getProviderDetails().getAuthorizationUri()));
-                            response.setTokenUri(URI.create(registration.getProviderDetails().getTokenUri()));
-                            response.setJwkSetUri(URI.create(registration.getProviderDetails().getJwkSetUri()));
-                            response.setParty(registration.getClientName());
-                            response.setPreconfigured(false);
-                            response.setWalletUrl(URI.create(props.getWalletUrl()));
-
+                            TenantRegistration response = register(request, toClientRegistration(request));
                             return ResponseEntity.ok(response);
                         })
                 )
@@ -133,6 +114,90 @@ public class AdminApiImpl implements AdminApi {
                 );
     }
 
+    /**
+     * Registers many tenants at once. Requests are validated up front, then the rights for all their parties are
+     * granted in batched ledger calls, and only tenants whose rights were granted are registered. A client id
+     * repeated within the request is only registered once, for its first occurrence.
+     */
+    @Override
+    @WithSpan
+    public CompletableFuture<ResponseEntity<List<TenantRegistrationResult>>> createTenantRegistrations(
+            List<TenantRegistrationRequest> requests
+    ) {
+        Span methodSpan = Span.current();
+        Context parentContext = Context.current();
+
+        Map<String, Object> commonAttrs = Map.of("tenants.count", requests.size());
+        LoggingSpanHelper.setSpanAttributes(methodSpan, commonAttrs);
+        LoggingSpanHelper.logInfo(logger, "createTenantRegistrations: Starting bulk creation", commonAttrs);
+
+        TenantRegistrationResult[] results = new TenantRegistrationResult[requests.size()];
+        Map<Integer, ClientRegistration> valid = new LinkedHashMap<>();
+        Set<String> clientIds = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TenantRegistrationRequest request = requests.get(i);
+            if (!clientIds.add(request.getClientId())) {
+                results[i] = failed(request, "Duplicate client id in request");
+                continue;
+            }
+            if (request.getParty() == null || request.getParty().isBlank()) {
+                // would otherwise reach the ledger and fail the whole rights chunk it is granted in
+                results[i] = failed(request, "party is required");
+                continue;
+            }
+            try {
+                URI.create(Objects.requireNonNull(request.getWalletUrl(), "walletUrl is required"));
+                valid.put(i, toClientRegistration(request));
+            } catch (RuntimeException e) {
+                results[i] = failed(request, e.getMessage());
+            }
+        }
+        List<String> parties = valid.keySet().stream().map(i -> requests.get(i).getParty()).toList();
+
+        return ledger.grantRights(parties)
+                .thenApply(failures -> {
+                    valid.forEach((i, registration) -> {
+                        TenantRegistrationRequest request = requests.get(i);
+                        Throwable failure = failures.get(request.getParty());
+                        if (failure != null) {
+                            results[i] = failed(request, "Failed to grant rights: " + failure.getMessage());
+                            return;
+                        }
+                        try {
+                            results[i] = new TenantRegistrationResult()
+                                    .clientId(request.getClientId())
+                                    .party(request.getParty())
+                                    .status(TenantRegistrationResult.StatusEnum.CREATED)
+                                    .registration(register(request, registration));
+                        } catch (RuntimeException e) {
+                            results[i] = failed(request, e.getMessage());
+                        }
+                    });
+                    return ResponseEntity.ok(Arrays.asList(results));
+                })
+                .whenComplete(
+                        completeWithin(parentContext, (res, ex) -> {
+                            if (ex == null) {
+                                long created = Arrays.stream(results)
+                                        .filter(r -> r.getStatus() == TenantRegistrationResult.StatusEnum.CREATED)
+                                        .count();
+                                LoggingSpanHelper.logInfo(logger, "createTenantRegistrations: Completed", Map.of(
+                                        "tenants.count", requests.size(),
+                                        "tenants.created", created
+                                ));
+                            } else {
+                                LoggingSpanHelper.logError(
+                                        logger,
+                                        "createTenantRegistrations: Failed",
+                                        commonAttrs,
+                                        ex
+                                );
+                                LoggingSpanHelper.recordException(methodSpan, ex);
+                            }
+                        })
+                );
+    }
+
     @Override
     @WithSpan
     public CompletableFuture<ResponseEntity<Void>> deleteTenantRegistration(
@@ -179,6 +244,27 @@ public class AdminApiImpl implements AdminApi {
                 );
     }
 
+    @Override
+    @WithSpan
+    public CompletableFuture<ResponseEntity<Void>> refreshParticipantRoutes() {
+        Span methodSpan = Span.current();
+        Context parentContext = Context.current();
+        LoggingSpanHelper.logInfo(logger, "refreshParticipantRoutes: Refreshing participant routing");
+
+        return ledger.refreshParticipantRoutes()
+                .thenApply(unused -> ResponseEntity.ok().<Void>build())
+                .whenComplete(
+                        completeWithin(parentContext, (res, ex) -> {
+                            if (ex == null) {
+                                LoggingSpanHelper.logDebug(logger, "refreshParticipantRoutes: Refreshed participant routing");
+                            } else {
+                                LoggingSpanHelper.logError(logger, "refreshParticipantRoutes: Failed", ex);
+                                LoggingSpanHelper.recordException(methodSpan, ex);
+                            }
+                        })
+                );
+    }
+
     @Override
     @WithSpan
     public CompletableFuture<ResponseEntity<List<TenantRegistration>>> listTenantRegistrations() {
@@ -243,4 +329,48 @@ public class AdminApiImpl implements AdminApi {
                         })
                 );
     }
+
+    private static ClientRegistration toClientRegistration(TenantRegistrationRequest request) {
+        return ClientRegistration
+                .withRegistrationId(request.getClientId())
+                .clientId(request.getClientId())
+                .clientSecret(request.getClientSecret())
+                .authorizationUri(request.getAuthorizationUri())
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .tokenUri(request.getTokenUri())
+                .jwkSetUri(request.getJwkSetUri())
+                .redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+                .scope(request.getScope())
+                .clientName(request.getParty())
+                .providerConfigurationMetadata(Map.of("preconfigured", "false"))
+                .build();
+    }
+
+    private TenantRegistration register(TenantRegistrationRequest request, ClientRegistration registration) {
+        tenantRegistrationRepository.addRegistration(registration);
+
+        TenantPropertiesRepository.TenantProperties props = new TenantPropertiesRepository.TenantProperties();
+        props.setWalletUrl(request.getWalletUrl());
+        tenantPropertiesRepository.addTenant(registration.getRegistrationId(), props);
+
+        TenantRegistration response = new TenantRegistration();
+        response.setClientId(registration.getClientId());
+        response.setClientSecret(registration.getClientSecret());
+        response.setScope(String.join(" ", registration.getScopes()));
+        response.setAuthorizationUri(URI.create(registration.getProviderDetails().getAuthorizationUri()));
+        response.setTokenUri(URI.create(registration.getProviderDetails().getTokenUri()));
+        response.setJwkSetUri(URI.create(registration.getProviderDetails().getJwkSetUri()));
+        response.setParty(registration.getClientName());
+        response.setPreconfigured(false);
+        response.setWalletUrl(URI.create(props.getWalletUrl()));
+        return response;
+    }
+
+    private static TenantRegistrationResult failed(TenantRegistrationRequest request, String error) {
+        return new TenantRegistrationResult()
+                .clientId(request.getClientId())
+                .party(request.getParty())
+                .status(TenantRegistrationResult.StatusEnum.FAILED)
+                .error(error);
+    }
 }
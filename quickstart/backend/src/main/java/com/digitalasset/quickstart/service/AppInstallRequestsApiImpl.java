@@ -6,7 +6,9 @@ package com.digitalasset.quickstart.service;
 import com.digitalasset.quickstart.api.AppInstallRequestsApi;
 import com.digitalasset.quickstart.ledger.LedgerApi;
 import com.digitalasset.quickstart.oauth.AuthenticatedPartyService;
+import com.digitalasset.quickstart.outbox.CommandOutbox;
 import com.digitalasset.quickstart.repository.DamlRepository;
+import com.digitalasset.quickstart.utility.IdempotencyStore;
 import com.digitalasset.quickstart.utility.LoggingSpanHelper;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
@@ -42,17 +44,23 @@ public class AppInstallRequestsApiImpl implements AppInstallRequestsApi {
 
     private final LedgerApi ledger;
     private final AuthenticatedPartyService authenticatedPartyService;
+    private final IdempotencyStore idempotency;
     private final DamlRepository damlRepository;
 
     @Autowired
     public AppInstallRequestsApiImpl(
             LedgerApi ledger,
             AuthenticatedPartyService authenticatedPartyService,
-            DamlRepository damlRepository
+            IdempotencyStore idempotency,
+            DamlRepository damlRepository,
+            CommandOutbox outbox
     ) {
         this.ledger = ledger;
         this.authenticatedPartyService = authenticatedPartyService;
+        this.idempotency = idempotency;
         this.damlRepository = damlRepository;
+        outbox.register("cancelAppInstallRequest", AppInstallRequestCancel.class, this::cancelAppInstallRequestAs);
+        outbox.register("rejectAppInstallRequest", AppInstallRequestReject.class, this::rejectAppInstallRequestAs);
     }
 
     @Override
@@ -77,28 +85,29 @@ public class AppInstallRequestsApiImpl implements AppInstallRequestsApi {
         LoggingSpanHelper.logInfo(logger, "acceptAppInstallRequest: received request", attributes);
 
         return authenticatedPartyService.getPartyOrFail()
-                .thenCompose(providerParty ->
-                        damlRepository.findAppInstallRequestById(contractId)
-                                .thenCompose(contract -> {
-                                    span.addEvent("Fetched contract, checking if request is already accepted");
-
-                                    var choice = new quickstart_licensing.licensing.appinstall.AppInstallRequest.AppInstallRequest_Accept(
-                                            new quickstart_licensing.licensing.util.Metadata(appInstallRequestAccept.getInstallMeta().getData()),
-                                            new quickstart_licensing.licensing.util.Metadata(appInstallRequestAccept.getMeta().getData())
-                                    );
-
-                                    return ledger.exerciseAndGetResult(providerParty, contract.contractId, choice, commandId)
-                                            .thenApply(appInstallContractId -> {
-                                                span.addEvent("Choice exercised, building response AppInstall");
-                                                AppInstall appInstall = new AppInstall();
-                                                appInstall.setDso(contract.payload.getDso.getParty);
-                                                appInstall.setProvider(contract.payload.getProvider.getParty);
-                                                appInstall.setUser(contract.payload.getUser.getParty);
-                                                appInstall.setMeta(appInstallRequestAccept.getInstallMeta());
-                                                appInstall.setNumLicensesCreated(0);
-                                                return ResponseEntity.ok(appInstall);
-                                            });
-                                })
+                .thenCompose(providerParty -> idempotency.execute(providerParty, "acceptAppInstallRequest", contractId, commandId, () ->
+                            damlRepository.findAppInstallRequestById(contractId)
+                                    .thenCompose(contract -> {
+                                        span.addEvent("Fetched contract, checking if request is already accepted");
+
+                                        var choice = new quickstart_licensing.licensing.appinstall.AppInstallRequest.AppInstallRequest_Accept(
+                                                new quickstart_licensing.licensing.util.Metadata(appInstallRequestAccept.getInstallMeta().getData()),
+                                                new quickstart_licensing.licensing.util.Metadata(appInstallRequestAccept.getMeta().getData())
+                                        );
+
+                                        return ledger.exerciseAndGetResult(providerParty, contract.contractId, choice, commandId)
+                                                .thenApply(appInstallContractId -> {
+                                                    span.addEvent("Choice exercised, building response AppInstall");
+                                                    AppInstall appInstall = new AppInstall();
+                                                    appInstall.setDso(contract.payload.getDso.getParty);
+                                                    appInstall.setProvider(contract.payload.getProvider.getParty);
+                                                    appInstall.setUser(contract.payload.getUser.getParty);
+                                                    appInstall.setMeta(appInstallRequestAccept.getInstallMeta());
+                                                    appInstall.setNumLicensesCreated(0);
+                                                    return ResponseEntity.ok(appInstall);
+                                                });
+                                    })
+                        )
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -117,7 +126,8 @@ public class AppInstallRequestsApiImpl implements AppInstallRequestsApi {
     public CompletableFuture<ResponseEntity<Void>> cancelAppInstallRequest(
             @SpanAttribute("appInstall.contractId") String contractId,
             @SpanAttribute("appInstall.commandId") String commandId,
-            AppInstallRequestCancel appInstallRequestCancel
+            AppInstallRequestCancel appInstallRequestCancel,
+            String prefer
     ) {
         Span span = Span.current();
         Context parentContext = Context.current();
@@ -134,21 +144,9 @@ public class AppInstallRequestsApiImpl implements AppInstallRequestsApi {
         LoggingSpanHelper.logInfo(logger, "cancelAppInstallRequest: received request", attributes);
 
         return authenticatedPartyService.getPartyOrFail()
-                .thenCompose(userParty ->
-                        damlRepository.findAppInstallRequestById(contractId)
-                                .thenCompose(contract -> {
-                                    span.addEvent("Fetched contract, exercising AppInstallRequest_Cancel choice");
-
-                                    var choice = new quickstart_licensing.licensing.appinstall.AppInstallRequest.AppInstallRequest_Cancel(
-                                            new quickstart_licensing.licensing.util.Metadata(appInstallRequestCancel.getMeta().getData())
-                                    );
-
-                                    return ledger.exerciseAndGetResult(userParty, contract.contractId, choice, commandId)
-                                            .thenApply(result -> {
-                                                span.addEvent("Choice exercised, returning 200 OK");
-                                                return ResponseEntity.ok().<Void>build();
-                                            });
-                                })
+                .thenCompose(userParty -> idempotency.execute(userParty, "cancelAppInstallRequest", contractId, commandId, () ->
+                            cancelAppInstallRequestAs(userParty, contractId, commandId, appInstallRequestCancel)
+                        )
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -178,29 +176,25 @@ public class AppInstallRequestsApiImpl implements AppInstallRequestsApi {
 
         return authenticatedPartyService.getPartyOrFail()
                 .thenCompose(party ->
-                        damlRepository.findActiveAppInstallRequests()
-                                .thenApply(contracts -> {
-                                    span.addEvent("Fetched active requests, filtering by current party");
-
-                                    List<AppInstallRequest> result = contracts.stream()
-                                            .filter(contract -> {
-                                                String user = contract.payload.getUser.getParty;
-                                                String provider = contract.payload.getProvider.getParty;
-                                                return party.equals(user) || party.equals(provider);
-                                            })
-                                            .map(contract -> {
-                                                AppInstallRequest appInstallRequest = new AppInstallRequest();
-                                                appInstallRequest.setContractId(contract.contractId.getContractId);
-                                                appInstallRequest.setDso(contract.payload.getDso.getParty);
-                                                appInstallRequest.setProvider(contract.payload.getProvider.getParty);
-                                                appInstallRequest.setUser(contract.payload.getUser.getParty);
-                                                appInstallRequest.setMeta(new org.openapitools.model.Metadata());
-                                                appInstallRequest.getMeta().setData(contract.payload.getMeta.getValues);
-                                                return appInstallRequest;
-                                            })
-                                            .toList();
-                                    return ResponseEntity.ok(result);
-                                })
+                        damlRepository.findActiveAppInstallRequests(
+                                        party,
+                                        contract -> {
+                                            String user = contract.payload.getUser.getParty;
+                                            String provider = contract.payload.getProvider.getParty;
+                                            return party.equals(user) || party.equals(provider);
+                                        },
+                                        contract -> {
+                                            AppInstallRequest appInstallRequest = new AppInstallRequest();
+                                            appInstallRequest.setContractId(contract.contractId.getContractId);
+                                            appInstallRequest.setDso(contract.payload.getDso.getParty);
+                                            appInstallRequest.setProvider(contract.payload.getProvider.getParty);
+                                            appInstallRequest.setUser(contract.payload.getUser.getParty);
+                                            appInstallRequest.setMeta(new org.openapitools.model.Metadata());
+                                            appInstallRequest.getMeta().setData(contract.payload.getMeta.getValues);
+                                            return appInstallRequest;
+                                        }
+                                )
+                                .thenApply(ResponseEntity::ok)
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -220,7 +214,8 @@ public class AppInstallRequestsApiImpl implements AppInstallRequestsApi {
     public CompletableFuture<ResponseEntity<Void>> rejectAppInstallRequest(
             @SpanAttribute("appInstall.contractId") String contractId,
             @SpanAttribute("appInstall.commandId") String commandId,
-            AppInstallRequestReject appInstallRequestReject
+            AppInstallRequestReject appInstallRequestReject,
+            String prefer
     ) {
         Span span = Span.current();
         Context parentContext = Context.current();
@@ -237,21 +232,9 @@ public class AppInstallRequestsApiImpl implements AppInstallRequestsApi {
         LoggingSpanHelper.logInfo(logger, "rejectAppInstallRequest: received request", attributes);
 
         return authenticatedPartyService.getPartyOrFail()
-                .thenCompose(providerParty ->
-                        damlRepository.findAppInstallRequestById(contractId)
-                                .thenCompose(contract -> {
-                                    span.addEvent("Fetched contract, exercising AppInstallRequest_Reject choice");
-
-                                    var choice = new quickstart_licensing.licensing.appinstall.AppInstallRequest.AppInstallRequest_Reject(
-                                            new Metadata(appInstallRequestReject.getMeta().getData())
-                                    );
-
-                                    return ledger.exerciseAndGetResult(providerParty, contract.contractId, choice, commandId)
-                                            .thenApply(result -> {
-                                                span.addEvent("Choice exercised, returning 200 OK");
-                                                return ResponseEntity.ok().<Void>build();
-                                            });
-                                })
+                .thenCompose(providerParty -> idempotency.execute(providerParty, "rejectAppInstallRequest", contractId, commandId, () ->
+                            rejectAppInstallRequestAs(providerParty, contractId, commandId, appInstallRequestReject)
+                        )
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -264,4 +247,58 @@ public class AppInstallRequestsApiImpl implements AppInstallRequestsApi {
                         })
                 );
     }
+
+    /**
+     * Exercises AppInstallRequest_Cancel as {@code userParty}; also the outbox handler of
+     * {@code cancelAppInstallRequest}.
+     */
+    private CompletableFuture<ResponseEntity<Void>> cancelAppInstallRequestAs(
+            String userParty,
+            String contractId,
+            String commandId,
+            AppInstallRequestCancel appInstallRequestCancel
+    ) {
+        Span span = Span.current();
+        return damlRepository.findAppInstallRequestById(contractId)
+                .thenCompose(contract -> {
+                    span.addEvent("Fetched contract, exercising AppInstallRequest_Cancel choice");
+
+                    var choice = new quickstart_licensing.licensing.appinstall.AppInstallRequest.AppInstallRequest_Cancel(
+                            new quickstart_licensing.licensing.util.Metadata(appInstallRequestCancel.getMeta().getData())
+                    );
+
+                    return ledger.exerciseWithoutResult(userParty, contract.contractId, choice, commandId)
+                            .thenApply(updateId -> {
+                                span.addEvent("Choice exercised, returning 200 OK");
+                                return ResponseEntity.ok().<Void>build();
+                            });
+                });
+    }
+
+    /**
+     * Exercises AppInstallRequest_Reject as {@code providerParty}; also the outbox handler of
+     * {@code rejectAppInstallRequest}.
+     */
+    private CompletableFuture<ResponseEntity<Void>> rejectAppInstallRequestAs(
+            String providerParty,
+            String contractId,
+            String commandId,
+            AppInstallRequestReject appInstallRequestReject
+    ) {
+        Span span = Span.current();
+        return damlRepository.findAppInstallRequestById(contractId)
+                .thenCompose(contract -> {
+                    span.addEvent("Fetched contract, exercising AppInstallRequest_Reject choice");
+
+                    var choice = new quickstart_licensing.licensing.appinstall.AppInstallRequest.AppInstallRequest_Reject(
+                            new Metadata(appInstallRequestReject.getMeta().getData())
+                    );
+
+                    return ledger.exerciseWithoutResult(providerParty, contract.contractId, choice, commandId)
+                            .thenApply(updateId -> {
+                                span.addEvent("Choice exercised, returning 200 OK");
+                                return ResponseEntity.ok().<Void>build();
+                            });
+                });
+    }
 }
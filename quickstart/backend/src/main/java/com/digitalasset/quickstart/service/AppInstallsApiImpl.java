@@ -6,7 +6,9 @@ package com.digitalasset.quickstart.service;
 import com.digitalasset.quickstart.api.AppInstallsApi;
 import com.digitalasset.quickstart.ledger.LedgerApi;
 import com.digitalasset.quickstart.oauth.AuthenticatedPartyService;
+import com.digitalasset.quickstart.outbox.CommandOutbox;
 import com.digitalasset.quickstart.repository.DamlRepository;
+import com.digitalasset.quickstart.utility.IdempotencyStore;
 import com.digitalasset.quickstart.utility.LoggingSpanHelper;
 import com.digitalasset.transcode.java.ContractId;
 import com.digitalasset.transcode.java.Party;
@@ -33,7 +35,6 @@ import quickstart_licensing.licensing.util.Metadata;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 import static com.digitalasset.quickstart.utility.ContextAwareCompletableFutures.completeWithin;
 
@@ -44,17 +45,22 @@ public class AppInstallsApiImpl implements AppInstallsApi {
     private final LedgerApi ledger;
     private final DamlRepository damlRepository;
     private final AuthenticatedPartyService authenticatedPartyService;
+    private final IdempotencyStore idempotency;
     private static final Logger logger = LoggerFactory.getLogger(AppInstallsApiImpl.class);
 
     @Autowired
     public AppInstallsApiImpl(
             LedgerApi ledger,
             DamlRepository damlRepository,
-            AuthenticatedPartyService authenticatedPartyService
+            AuthenticatedPartyService authenticatedPartyService,
+            IdempotencyStore idempotency,
+            CommandOutbox outbox
     ) {
         this.ledger = ledger;
         this.damlRepository = damlRepository;
         this.authenticatedPartyService = authenticatedPartyService;
+        this.idempotency = idempotency;
+        outbox.register("cancelAppInstall", AppInstallCancel.class, this::cancelAppInstallAs);
     }
 
     @Override
@@ -71,36 +77,32 @@ public class AppInstallsApiImpl implements AppInstallsApi {
                     Map<String, Object> attrs = Map.of("requesting.party", requestingParty);
                     LoggingSpanHelper.setSpanAttributes(methodSpan, attrs);
 
-                    return damlRepository.findActiveAppInstalls()
-                            .thenApply(contracts -> {
-                                methodSpan.addEvent("Filtering results by requesting party");
-                                List<org.openapitools.model.AppInstall> result = contracts.stream()
-                                        .filter(contract -> {
-                                            String dso = contract.payload.getDso.getParty;
-                                            String provider = contract.payload.getProvider.getParty;
-                                            String user = contract.payload.getUser.getParty;
-                                            return requestingParty.equals(dso)
-                                                    || requestingParty.equals(provider)
-                                                    || requestingParty.equals(user);
-                                        })
-                                        .map(contract -> {
-                                            org.openapitools.model.AppInstall model = new org.openapitools.model.AppInstall();
-                                            model.setContractId(contract.contractId.getContractId);
-                                            model.setDso(contract.payload.getDso.getParty);
-                                            model.setProvider(contract.payload.getProvider.getParty);
-                                            model.setUser(contract.payload.getUser.getParty);
-
-                                            org.openapitools.model.Metadata metaModel = new org.openapitools.model.Metadata();
-                                            metaModel.setData(contract.payload.getMeta.getValues);
-                                            model.setMeta(metaModel);
-
-                                            model.setNumLicensesCreated(contract.payload.getNumLicensesCreated.intValue());
-                                            return model;
-                                        })
-                                        .collect(Collectors.toList());
-
-                                return ResponseEntity.ok(result);
-                            });
+                    methodSpan.addEvent("Filtering results by requesting party");
+                    return damlRepository.findActiveAppInstalls(
+                                    contract -> {
+                                        String dso = contract.payload.getDso.getParty;
+                                        String provider = contract.payload.getProvider.getParty;
+                                        String user = contract.payload.getUser.getParty;
+                                        return requestingParty.equals(dso)
+                                                || requestingParty.equals(provider)
+                                                || requestingParty.equals(user);
+                                    },
+                                    contract -> {
+                                        org.openapitools.model.AppInstall model = new org.openapitools.model.AppInstall();
+                                        model.setContractId(contract.contractId.getContractId);
+                                        model.setDso(contract.payload.getDso.getParty);
+                                        model.setProvider(contract.payload.getProvider.getParty);
+                                        model.setUser(contract.payload.getUser.getParty);
+
+                                        org.openapitools.model.Metadata metaModel = new org.openapitools.model.Metadata();
+                                        metaModel.setData(contract.payload.getMeta.getValues);
+                                        model.setMeta(metaModel);
+
+                                        model.setNumLicensesCreated(contract.payload.getNumLicensesCreated.intValue());
+                                        return model;
+                                    }
+                            )
+                            .thenApply(ResponseEntity::ok);
                 })
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -132,36 +134,39 @@ public class AppInstallsApiImpl implements AppInstallsApi {
         LoggingSpanHelper.logInfo(logger, "createLicense: received request", startAttrs);
 
         return authenticatedPartyService.getPartyOrFail()
-                .<ResponseEntity<AppInstallCreateLicenseResult>>thenCompose(actorParty -> damlRepository.findAppInstallById(contractId)
-                        .thenCompose(contract -> {
-                            methodSpan.addEvent("Fetched contract, verifying provider");
-                            String providerParty = contract.payload.getProvider.getParty;
+                .<ResponseEntity<AppInstallCreateLicenseResult>>thenCompose(actorParty -> idempotency.execute(actorParty, "createLicense", contractId, commandId, () ->
+                        damlRepository.findAppInstallById(contractId)
+                            .thenCompose(contract -> {
+                                methodSpan.addEvent("Fetched contract, verifying provider");
+                                String providerParty = contract.payload.getProvider.getParty;
 
-                            if (!actorParty.equals(providerParty)) {
-                                Map<String, Object> errorAttrs = Map.of(
-                                        "contractId", contractId,
-                                        "commandId", commandId,
-                                        "actorParty", actorParty
-                                );
-                                LoggingSpanHelper.logError(logger, "createLicense: party is not the provider", errorAttrs, null);
-                                return CompletableFuture.completedFuture(
-                                        ResponseEntity.status(HttpStatus.FORBIDDEN).build()
-                                );
-                            }
+                                if (!actorParty.equals(providerParty)) {
+                                    Map<String, Object> errorAttrs = Map.of(
+                                            "contractId", contractId,
+                                            "commandId", commandId,
+                                            "actorParty", actorParty
+                                    );
+                                    LoggingSpanHelper.logError(logger, "createLicense: party is not the provider", errorAttrs, null);
+                                    return CompletableFuture.completedFuture(
+                                            ResponseEntity.status(HttpStatus.FORBIDDEN).build()
+                                    );
+                                }
 
-                            Metadata paramsMeta = new Metadata(createLicenseRequest.getParams().getMeta().getData());
-                            LicenseParams params = new LicenseParams(paramsMeta);
-                            AppInstall_CreateLicense choice = new AppInstall_CreateLicense(params);
-
-                            return ledger.exerciseAndGetResult(actorParty, contract.contractId, choice, commandId)
-                                    .thenApply(licenseContractId -> {
-                                        methodSpan.addEvent("Choice exercised, building response");
-                                        AppInstallCreateLicenseResult result = new AppInstallCreateLicenseResult();
-                                        result.setInstallId(contractId);
-                                        result.setLicenseId(licenseContractId.getLicenseId.getContractId);
-                                        return ResponseEntity.ok(result);
-                                    });
-                        })
+                                Metadata paramsMeta = new Metadata(createLicenseRequest.getParams().getMeta().getData());
+                                LicenseParams params = new LicenseParams(paramsMeta);
+                                AppInstall_CreateLicense choice = new AppInstall_CreateLicense(params);
+
+                                // AppInstall_CreateLicense recreates the install, so concurrent calls are queued per contract
+                                return ledger.exerciseSequenced(actorParty, contract.contractId, choice, commandId)
+                                        .thenApply(licenseContractId -> {
+                                            methodSpan.addEvent("Choice exercised, building response");
+                                            AppInstallCreateLicenseResult result = new AppInstallCreateLicenseResult();
+                                            result.setInstallId(contractId);
+                                            result.setLicenseId(licenseContractId.getLicenseId.getContractId);
+                                            return ResponseEntity.ok(result);
+                                        });
+                            })
+                        )
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -185,7 +190,8 @@ public class AppInstallsApiImpl implements AppInstallsApi {
     public CompletableFuture<ResponseEntity<Void>> cancelAppInstall(
             @SpanAttribute("appInstall.contractId") String contractId,
             @SpanAttribute("appInstall.commandId") String commandId,
-            AppInstallCancel appInstallCancel
+            AppInstallCancel appInstallCancel,
+            String prefer
     ) {
         Span methodSpan = Span.current();
         Context parentContext = Context.current();
@@ -196,35 +202,9 @@ public class AppInstallsApiImpl implements AppInstallsApi {
         LoggingSpanHelper.logInfo(logger, "cancelAppInstall: received request", startAttrs);
 
         return authenticatedPartyService.getPartyOrFail()
-                .<ResponseEntity<Void>>thenCompose(actorParty ->
-                        damlRepository.findAppInstallById(contractId)
-                                .thenCompose(contract -> {
-                                    methodSpan.addEvent("Fetched contract, verifying user");
-                                    String userParty = contract.payload.getUser.getParty;
-
-                                    if (!actorParty.equals(userParty)) {
-                                        Map<String, Object> errorAttrs = Map.of(
-                                                "contractId", contractId,
-                                                "commandId", commandId,
-                                                "actorParty", actorParty
-                                        );
-                                        LoggingSpanHelper.logError(logger, "cancelAppInstall: party is not the user", errorAttrs, null);
-                                        return CompletableFuture.completedFuture(
-                                                ResponseEntity.status(HttpStatus.FORBIDDEN).build()
-                                        );
-                                    }
-
-                                    methodSpan.addEvent("Constructing AppInstall_Cancel choice");
-                                    Metadata meta = new Metadata(appInstallCancel.getMeta().getData());
-                                    Party actor = new Party(actorParty);
-                                    AppInstall_Cancel choice = new AppInstall_Cancel(actor, meta);
-
-                                    return ledger.exerciseAndGetResult(actorParty, contract.contractId, choice, commandId)
-                                            .thenApply(result -> {
-                                                methodSpan.addEvent("Choice exercised, returning 200 OK");
-                                                return ResponseEntity.ok().build();
-                                            });
-                                })
+                .<ResponseEntity<Void>>thenCompose(actorParty -> idempotency.execute(actorParty, "cancelAppInstall", contractId, commandId, () ->
+                            cancelAppInstallAs(actorParty, contractId, commandId, appInstallCancel)
+                        )
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -242,4 +222,45 @@ public class AppInstallsApiImpl implements AppInstallsApi {
                         })
                 );
     }
+
+    /**
+     * Exercises AppInstall_Cancel as {@code actorParty}, who must be the install's user; also the outbox handler
+     * of {@code cancelAppInstall}.
+     */
+    private CompletableFuture<ResponseEntity<Void>> cancelAppInstallAs(
+            String actorParty,
+            String contractId,
+            String commandId,
+            AppInstallCancel appInstallCancel
+    ) {
+        Span span = Span.current();
+        return damlRepository.findAppInstallById(contractId)
+                .thenCompose(contract -> {
+                    span.addEvent("Fetched contract, verifying user");
+                    String userParty = contract.payload.getUser.getParty;
+
+                    if (!actorParty.equals(userParty)) {
+                        Map<String, Object> errorAttrs = Map.of(
+                                "contractId", contractId,
+                                "commandId", commandId,
+                                "actorParty", actorParty
+                        );
+                        LoggingSpanHelper.logError(logger, "cancelAppInstall: party is not the user", errorAttrs, null);
+                        return CompletableFuture.completedFuture(
+                                ResponseEntity.status(HttpStatus.FORBIDDEN).build()
+                        );
+                    }
+
+                    span.addEvent("Constructing AppInstall_Cancel choice");
+                    Metadata meta = new Metadata(appInstallCancel.getMeta().getData());
+                    Party actor = new Party(actorParty);
+                    AppInstall_Cancel choice = new AppInstall_Cancel(actor, meta);
+
+                    return ledger.exerciseWithoutResult(actorParty, contract.contractId, choice, commandId)
+                            .thenApply(updateId -> {
+                                span.addEvent("Choice exercised, returning 200 OK");
+                                return ResponseEntity.ok().build();
+                            });
+                });
+    }
 }
@@ -0,0 +1,35 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.service;
+
+import com.digitalasset.quickstart.utility.ConcurrencyLimitExceededException;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import java.util.Map;
+
+/**
+ * Answers requests rejected by a concurrency limiter with 503 and a {@code Retry-After} header, so that clients
+ * back off instead of seeing a generic server error.
+ */
+@ControllerAdvice
+public class ConcurrencyLimitExceptionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitExceptionHandler.class);
+
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<Void> handle(ConcurrencyLimitExceededException e) {
+        LoggingSpanHelper.logDebug(logger, "Rejecting request, dependency at its concurrency limit",
+                Map.of("dependency", e.getDependency(), "retryAfterSeconds", e.getRetryAfterSeconds()));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.service;
+
+import com.digitalasset.quickstart.oauth.AuthenticatedPartyService;
+import com.digitalasset.quickstart.repository.DamlRepository;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import io.opentelemetry.context.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * Opt-in passthrough path for the read-only list endpoints.
+ * <p>
+ * When {@code pqs.json-passthrough-enabled} is set, requests carrying {@code X-Json-Passthrough: true} are
+ * served by these handlers instead of the generated API implementations. The response JSON is built by
+ * Postgres and streamed to the client as-is, skipping the DTO, OpenAPI model and Jackson steps in exchange for
+ * building the JSON in the query. The response body is the same as the regular endpoint's; compare the two
+ * with the {@code passthrough} and {@code fetch}/{@code decode} phases of {@code backend.pqs.active.duration}.
+ */
+@Controller
+@RequestMapping("${openapi.asset.base-path:}")
+@ConditionalOnProperty(prefix = "pqs", name = "json-passthrough-enabled", havingValue = "true")
+public class JsonPassthroughApiImpl {
+
+    public static final String JSON_PASSTHROUGH_HEADER = "X-Json-Passthrough";
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonPassthroughApiImpl.class);
+
+    private final DamlRepository damlRepository;
+    private final AuthenticatedPartyService authenticatedPartyService;
+
+    public JsonPassthroughApiImpl(DamlRepository damlRepository, AuthenticatedPartyService authenticatedPartyService) {
+        this.damlRepository = damlRepository;
+        this.authenticatedPartyService = authenticatedPartyService;
+    }
+
+    @GetMapping(value = "/licenses", headers = JSON_PASSTHROUGH_HEADER + "=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> listLicensesJson() {
+        return stream("listLicenses", damlRepository::streamActiveLicensesJson);
+    }
+
+    @GetMapping(value = "/license-renewal-requests", headers = JSON_PASSTHROUGH_HEADER + "=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> listLicenseRenewalRequestsJson() {
+        return stream("listLicenseRenewalRequests", damlRepository::streamActiveLicenseRenewalRequestsJson);
+    }
+
+    @GetMapping(value = "/app-installs", headers = JSON_PASSTHROUGH_HEADER + "=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> listAppInstallsJson() {
+        return stream("listAppInstalls", damlRepository::streamActiveAppInstallsJson);
+    }
+
+    @GetMapping(value = "/app-install-requests", headers = JSON_PASSTHROUGH_HEADER + "=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> listAppInstallRequestsJson() {
+        return stream("listAppInstallRequests", damlRepository::streamActiveAppInstallRequestsJson);
+    }
+
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> stream(
+            String operation,
+            BiFunction<String, OutputStream, Integer> query
+    ) {
+        Context parentContext = Context.current();
+        return authenticatedPartyService.getPartyOrFail()
+                .thenApply(party -> {
+                    Map<String, Object> attrs = Map.of("operation", operation, "party", party);
+                    LoggingSpanHelper.logInfo(logger, "Streaming list response from PQS", attrs);
+                    // The body is written later on the MVC async executor, so the request's trace context is re-attached there
+                    StreamingResponseBody body = out -> {
+                        try (var ignored = parentContext.makeCurrent()) {
+                            int count = query.apply(party, out);
+                            LoggingSpanHelper.logDebug(logger, "Streamed list response", Map.of("operation", operation, "count", count));
+                        }
+                    };
+                    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+                });
+    }
+}
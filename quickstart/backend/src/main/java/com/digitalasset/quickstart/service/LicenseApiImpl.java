@@ -6,7 +6,9 @@ package com.digitalasset.quickstart.service;
 import com.digitalasset.quickstart.api.LicensesApi;
 import com.digitalasset.quickstart.ledger.LedgerApi;
 import com.digitalasset.quickstart.oauth.AuthenticatedPartyService;
+import com.digitalasset.quickstart.outbox.CommandOutbox;
 import com.digitalasset.quickstart.repository.DamlRepository;
+import com.digitalasset.quickstart.utility.IdempotencyStore;
 import com.digitalasset.quickstart.utility.LoggingSpanHelper;
 import com.digitalasset.transcode.java.ContractId;
 import com.digitalasset.transcode.java.Party;
@@ -38,7 +40,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 import static com.digitalasset.quickstart.utility.ContextAwareCompletableFutures.completeWithin;
 import static com.digitalasset.quickstart.utility.ContextAwareCompletableFutures.supplyWithin;
@@ -52,16 +53,21 @@ public class LicenseApiImpl implements LicensesApi {
     private final LedgerApi ledger;
     private final DamlRepository damlRepository;
     private final AuthenticatedPartyService authenticatedPartyService;
+    private final IdempotencyStore idempotency;
 
     @Autowired
     public LicenseApiImpl(
             LedgerApi ledger,
             DamlRepository damlRepository,
-            AuthenticatedPartyService authenticatedPartyService
+            AuthenticatedPartyService authenticatedPartyService,
+            IdempotencyStore idempotency,
+            CommandOutbox outbox
     ) {
         this.ledger = ledger;
         this.damlRepository = damlRepository;
         this.authenticatedPartyService = authenticatedPartyService;
+        this.idempotency = idempotency;
+        outbox.register("expireLicense", LicenseExpireRequest.class, this::expireLicenseAs);
     }
 
     @Override
@@ -69,7 +75,8 @@ public class LicenseApiImpl implements LicensesApi {
     public CompletableFuture<ResponseEntity<String>> expireLicense(
             @SpanAttribute("contractId") String contractId,
             @SpanAttribute("commandId") String commandId,
-            LicenseExpireRequest licenseExpireRequest
+            LicenseExpireRequest licenseExpireRequest,
+            String prefer
     ) {
         Span methodSpan = Span.current();
         Context parentContext = Context.current();
@@ -86,23 +93,14 @@ public class LicenseApiImpl implements LicensesApi {
         LoggingSpanHelper.logInfo(logger, "expireLicense: received request", attributes);
 
         return authenticatedPartyService.getPartyOrFail()
-                .thenCompose(actingParty ->
-                        CompletableFuture.supplyAsync(
-                                supplyWithin(parentContext, () -> {
-                                    LoggingSpanHelper.addEventWithAttributes(methodSpan, "Exercising License_Expire on contract", attributes);
-                                    return damlRepository.findLicenseById(contractId)
-                                            .thenCompose(contract -> {
-                                                Metadata meta = new Metadata(licenseExpireRequest.getMeta().getData());
-                                                License_Expire choice = new License_Expire(new Party(actingParty), meta);
-
-                                                return ledger.exerciseAndGetResult(actingParty, contract.contractId, choice, commandId)
-                                                        .thenApply(result -> {
-                                                            LoggingSpanHelper.logInfo(logger, "License expired successfully", attributes);
-                                                            return ResponseEntity.ok("License expired successfully");
-                                                        });
-                                            });
-                                })
-                        ).thenCompose(cf -> cf)
+                .thenCompose(actingParty -> idempotency.execute(actingParty, "expireLicense", contractId, commandId, () ->
+                            CompletableFuture.supplyAsync(
+                                    supplyWithin(parentContext, () -> {
+                                        LoggingSpanHelper.addEventWithAttributes(methodSpan, "Exercising License_Expire on contract", attributes);
+                                        return expireLicenseAs(actingParty, contractId, commandId, licenseExpireRequest);
+                                    })
+                            ).thenCompose(cf -> cf)
+                        )
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -116,6 +114,29 @@ public class LicenseApiImpl implements LicensesApi {
                 );
     }
 
+    /**
+     * Exercises License_Expire as {@code actingParty}; also the outbox handler of {@code expireLicense}.
+     */
+    private CompletableFuture<ResponseEntity<String>> expireLicenseAs(
+            String actingParty,
+            String contractId,
+            String commandId,
+            LicenseExpireRequest licenseExpireRequest
+    ) {
+        return damlRepository.findLicenseById(contractId)
+                .thenCompose(contract -> {
+                    Metadata meta = new Metadata(licenseExpireRequest.getMeta().getData());
+                    License_Expire choice = new License_Expire(new Party(actingParty), meta);
+
+                    return ledger.exerciseWithoutResult(actingParty, contract.contractId, choice, commandId)
+                            .thenApply(updateId -> {
+                                LoggingSpanHelper.logInfo(logger, "License expired successfully",
+                                        Map.of("contractId", contractId, "commandId", commandId, "updateId", updateId));
+                                return ResponseEntity.ok("License expired successfully");
+                            });
+                });
+    }
+
     @Override
     @WithSpan
     public CompletableFuture<ResponseEntity<List<org.openapitools.model.License>>> listLicenses() {
@@ -146,34 +167,32 @@ public class LicenseApiImpl implements LicensesApi {
                                     );
                                     LoggingSpanHelper.logDebug(logger, "Filtering licenses", filterAttributes);
 
-                                    return damlRepository.findActiveLicenses()
-                                            .thenApply(contracts -> {
-                                                List<org.openapitools.model.License> result = contracts.stream()
-                                                        .filter(contract -> {
-                                                            String user = contract.payload.getUser.getParty;
-                                                            String provider = contract.payload.getProvider.getParty;
-                                                            return party.equals(user) || party.equals(provider);
-                                                        })
-                                                        .map(contract -> {
-                                                            org.openapitools.model.License l = new org.openapitools.model.License();
-                                                            l.setContractId(contract.contractId.getContractId);
-                                                            l.setDso(contract.payload.getDso.getParty);
-                                                            l.setProvider(contract.payload.getProvider.getParty);
-                                                            l.setUser(contract.payload.getUser.getParty);
+                                    return damlRepository.findActiveLicenses(
+                                                    party,
+                                                    contract -> {
+                                                        String user = contract.payload.getUser.getParty;
+                                                        String provider = contract.payload.getProvider.getParty;
+                                                        return party.equals(user) || party.equals(provider);
+                                                    },
+                                                    contract -> {
+                                                        org.openapitools.model.License l = new org.openapitools.model.License();
+                                                        l.setContractId(contract.contractId.getContractId);
+                                                        l.setDso(contract.payload.getDso.getParty);
+                                                        l.setProvider(contract.payload.getProvider.getParty);
+                                                        l.setUser(contract.payload.getUser.getParty);
 
-                                                            org.openapitools.model.LicenseParams lp = new org.openapitools.model.LicenseParams();
-                                                            org.openapitools.model.Metadata meta = new org.openapitools.model.Metadata();
-                                                            meta.setData(contract.payload.getParams.getMeta.getValues);
-                                                            lp.setMeta(meta);
-                                                            l.setParams(lp);
+                                                        org.openapitools.model.LicenseParams lp = new org.openapitools.model.LicenseParams();
+                                                        org.openapitools.model.Metadata meta = new org.openapitools.model.Metadata();
+                                                        meta.setData(contract.payload.getParams.getMeta.getValues);
+                                                        lp.setMeta(meta);
+                                                        l.setParams(lp);
 
-                                                            l.setExpiresAt(OffsetDateTime.ofInstant(contract.payload.getExpiresAt, ZoneOffset.UTC));
-                                                            l.setLicenseNum(contract.payload.getLicenseNum.intValue());
-                                                            return l;
-                                                        })
-                                                        .collect(Collectors.toList());
-                                                return ResponseEntity.ok(result);
-                                            });
+                                                        l.setExpiresAt(OffsetDateTime.ofInstant(contract.payload.getExpiresAt, ZoneOffset.UTC));
+                                                        l.setLicenseNum(contract.payload.getLicenseNum.intValue());
+                                                        return l;
+                                                    }
+                                            )
+                                            .thenApply(ResponseEntity::ok);
                                 })
                         ).thenCompose(cf -> cf)
                 )
@@ -213,39 +232,40 @@ public class LicenseApiImpl implements LicensesApi {
         LoggingSpanHelper.logInfo(logger, "renewLicense: received request", attributes);
 
         return authenticatedPartyService.getPartyOrFail()
-                .thenCompose(providerParty ->
-                        CompletableFuture.supplyAsync(
-                                supplyWithin(parentContext, () -> {
-                                    LoggingSpanHelper.addEventWithAttributes(methodSpan, "Exercising License_Renew on contract", attributes);
+                .thenCompose(providerParty -> idempotency.execute(providerParty, "renewLicense", contractId, commandId, () ->
+                            CompletableFuture.supplyAsync(
+                                    supplyWithin(parentContext, () -> {
+                                        LoggingSpanHelper.addEventWithAttributes(methodSpan, "Exercising License_Renew on contract", attributes);
 
-                                    return damlRepository.findLicenseById(contractId)
-                                            .thenCompose(contract -> {
-                                                Duration extDuration = Duration.parse(licenseRenewRequest.getLicenseExtensionDuration());
-                                                long extensionMicros = extDuration.toNanos() / 1000;
-                                                RelTime licenseExtensionDuration = new RelTime(extensionMicros);
+                                        return damlRepository.findLicenseById(contractId)
+                                                .thenCompose(contract -> {
+                                                    Duration extDuration = Duration.parse(licenseRenewRequest.getLicenseExtensionDuration());
+                                                    long extensionMicros = extDuration.toNanos() / 1000;
+                                                    RelTime licenseExtensionDuration = new RelTime(extensionMicros);
 
-                                                Duration payDuration = Duration.parse(licenseRenewRequest.getPaymentAcceptanceDuration());
-                                                long payDurationMicros = payDuration.toNanos() / 1000;
-                                                RelTime paymentAcceptanceDuration = new RelTime(payDurationMicros);
+                                                    Duration payDuration = Duration.parse(licenseRenewRequest.getPaymentAcceptanceDuration());
+                                                    long payDurationMicros = payDuration.toNanos() / 1000;
+                                                    RelTime paymentAcceptanceDuration = new RelTime(payDurationMicros);
 
-                                                License_Renew choice = new License_Renew(
-                                                        licenseRenewRequest.getLicenseFeeCc(),
-                                                        licenseExtensionDuration,
-                                                        paymentAcceptanceDuration,
-                                                        licenseRenewRequest.getDescription()
-                                                );
+                                                    License_Renew choice = new License_Renew(
+                                                            licenseRenewRequest.getLicenseFeeCc(),
+                                                            licenseExtensionDuration,
+                                                            paymentAcceptanceDuration,
+                                                            licenseRenewRequest.getDescription()
+                                                    );
 
-                                                return ledger.exerciseAndGetResult(providerParty, contract.contractId, choice, commandId)
-                                                        .thenApply((Tuple2<ContractId<LicenseRenewalRequest>, ContractId<AppPaymentRequest>> result) -> {
-                                                            Map<String, Object> successAttributes = new HashMap<>(attributes);
-                                                            successAttributes.put("renewalRequestCid", result.get_1.getContractId);
-                                                            successAttributes.put("paymentRequestCid", result.get_2.getContractId);
-                                                            LoggingSpanHelper.logInfo(logger, "License renewal request succeeded", successAttributes);
-                                                            return ResponseEntity.ok().<Void>build();
-                                                        });
-                                            });
-                                })
-                        ).thenCompose(cf -> cf)
+                                                    return ledger.exerciseAndGetResult(providerParty, contract.contractId, choice, commandId)
+                                                            .thenApply((Tuple2<ContractId<LicenseRenewalRequest>, ContractId<AppPaymentRequest>> result) -> {
+                                                                Map<String, Object> successAttributes = new HashMap<>(attributes);
+                                                                successAttributes.put("renewalRequestCid", result.get_1.getContractId);
+                                                                successAttributes.put("paymentRequestCid", result.get_2.getContractId);
+                                                                LoggingSpanHelper.logInfo(logger, "License renewal request succeeded", successAttributes);
+                                                                return ResponseEntity.ok().<Void>build();
+                                                            });
+                                                });
+                                    })
+                            ).thenCompose(cf -> cf)
+                        )
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
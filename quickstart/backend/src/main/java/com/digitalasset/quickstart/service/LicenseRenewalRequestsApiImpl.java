@@ -4,15 +4,15 @@
 package com.digitalasset.quickstart.service;
 
 import com.daml.ledger.api.v2.CommandsOuterClass;
-import com.daml.ledger.api.v2.ValueOuterClass;
 import com.digitalasset.quickstart.api.LicenseRenewalRequestsApi;
 import com.digitalasset.quickstart.ledger.LedgerApi;
 import com.digitalasset.quickstart.ledger.ScanProxy;
 import com.digitalasset.quickstart.oauth.AuthenticatedPartyService;
+import com.digitalasset.quickstart.outbox.CommandOutbox;
 import com.digitalasset.quickstart.repository.DamlRepository;
+import com.digitalasset.quickstart.utility.IdempotencyStore;
 import com.digitalasset.quickstart.utility.LoggingSpanHelper;
 import com.digitalasset.transcode.java.ContractId;
-import com.google.protobuf.ByteString;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
@@ -29,12 +29,10 @@ import quickstart_licensing.licensing.license.LicenseRenewalRequest.LicenseRenew
 import splice_amulet.splice.amuletrules.AppTransferContext;
 import splice_wallet_payments.splice.wallet.payment.AcceptedAppPayment;
 
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 import static com.digitalasset.quickstart.utility.ContextAwareCompletableFutures.completeWithin;
 
@@ -45,6 +43,7 @@ public class LicenseRenewalRequestsApiImpl implements LicenseRenewalRequestsApi
     private final LedgerApi ledger;
     private final DamlRepository damlRepository;
     private final AuthenticatedPartyService authenticatedPartyService;
+    private final IdempotencyStore idempotency;
     private final ScanProxy scanProxyService;
     private final Logger logger = LoggerFactory.getLogger(LicenseRenewalRequestsApiImpl.class);
 
@@ -52,12 +51,16 @@ public class LicenseRenewalRequestsApiImpl implements LicenseRenewalRequestsApi
             LedgerApi ledger,
             DamlRepository damlRepository,
             AuthenticatedPartyService authenticatedPartyService,
-            ScanProxy scanProxyService
+            IdempotencyStore idempotency,
+            ScanProxy scanProxyService,
+            CommandOutbox outbox
     ) {
         this.ledger = ledger;
         this.damlRepository = damlRepository;
         this.authenticatedPartyService = authenticatedPartyService;
+        this.idempotency = idempotency;
         this.scanProxyService = scanProxyService;
+        outbox.register("completeLicenseRenewal", Void.class, this::completeLicenseRenewalAs);
     }
 
     @Override
@@ -71,32 +74,30 @@ public class LicenseRenewalRequestsApiImpl implements LicenseRenewalRequestsApi
 
         return authenticatedPartyService.getPartyOrFail()
                 .thenCompose(party ->
-                        damlRepository.findActiveLicenseRenewalRequests()
-                                .thenApply(contracts -> {
-                                    List<LicenseRenewalRequest> result = contracts.stream()
-                                            .filter(contract -> {
-                                                String user = contract.payload.getUser.getParty;
-                                                String provider = contract.payload.getProvider.getParty;
-                                                return user.equals(party) || provider.equals(party);
-                                            })
-                                            .map(contract -> {
-                                                LicenseRenewalRequest r = new LicenseRenewalRequest();
-                                                r.setContractId(contract.contractId.getContractId);
-                                                r.setProvider(contract.payload.getProvider.getParty);
-                                                r.setUser(contract.payload.getUser.getParty);
-                                                r.setDso(contract.payload.getDso.getParty);
-                                                r.setLicenseNum(contract.payload.getLicenseNum.intValue());
-                                                r.setLicenseFeeCc(contract.payload.getLicenseFeeCc);
-                                                String relTimeReadable =
-                                                        (contract.payload.getLicenseExtensionDuration.getMicroseconds
-                                                                / 1000 / 1000 / 60 / 60 / 24) + " days";
-                                                r.setLicenseExtensionDuration(relTimeReadable);
-                                                r.setReference(contract.payload.getReference.getContractId);
-                                                return r;
-                                            })
-                                            .collect(Collectors.toList());
-                                    return ResponseEntity.ok(result);
-                                })
+                        damlRepository.findActiveLicenseRenewalRequests(
+                                        party,
+                                        contract -> {
+                                            String user = contract.payload.getUser.getParty;
+                                            String provider = contract.payload.getProvider.getParty;
+                                            return user.equals(party) || provider.equals(party);
+                                        },
+                                        contract -> {
+                                            LicenseRenewalRequest r = new LicenseRenewalRequest();
+                                            r.setContractId(contract.contractId.getContractId);
+                                            r.setProvider(contract.payload.getProvider.getParty);
+                                            r.setUser(contract.payload.getUser.getParty);
+                                            r.setDso(contract.payload.getDso.getParty);
+                                            r.setLicenseNum(contract.payload.getLicenseNum.intValue());
+                                            r.setLicenseFeeCc(contract.payload.getLicenseFeeCc);
+                                            String relTimeReadable =
+                                                    (contract.payload.getLicenseExtensionDuration.getMicroseconds
+                                                            / 1000 / 1000 / 60 / 60 / 24) + " days";
+                                            r.setLicenseExtensionDuration(relTimeReadable);
+                                            r.setReference(contract.payload.getReference.getContractId);
+                                            return r;
+                                        }
+                                )
+                                .thenApply(ResponseEntity::ok)
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -140,7 +141,8 @@ public class LicenseRenewalRequestsApiImpl implements LicenseRenewalRequestsApi
     @WithSpan
     public CompletableFuture<ResponseEntity<Void>> completeLicenseRenewal(
             @SpanAttribute("licenseRenewal.contractId") String contractId,
-            @SpanAttribute("licenseRenewal.commandId") String commandId
+            @SpanAttribute("licenseRenewal.commandId") String commandId,
+            String prefer
     ) {
         Span methodSpan = Span.current();
         Context parentContext = Context.current();
@@ -159,146 +161,9 @@ public class LicenseRenewalRequestsApiImpl implements LicenseRenewalRequestsApi
         );
 
         return authenticatedPartyService.getPartyOrFail()
-                .<ResponseEntity<Void>>thenCompose(actingParty ->
-                        damlRepository.findLicenseRenewalRequestById(contractId)
-                                .thenCompose(lrrContract -> {
-                                    LoggingSpanHelper.addEventWithAttributes(methodSpan,
-                                            "completeLicenseRenewal: Fetched LicenseRenewalRequest contract",
-                                            initialAttrs
-                                    );
-                                    LoggingSpanHelper.logDebug(logger,
-                                            "completeLicenseRenewal: Fetched LicenseRenewalRequest contract",
-                                            initialAttrs
-                                    );
-
-                                    String user = lrrContract.payload.getUser.getParty;
-                                    String provider = lrrContract.payload.getProvider.getParty;
-                                    String dso = lrrContract.payload.getDso.getParty;
-                                    Long licenseNum = lrrContract.payload.getLicenseNum;
-                                    String referenceCid = lrrContract.payload.getReference.getContractId;
-
-                                    return damlRepository.findSingleActiveAcceptedAppPayment(referenceCid, user, provider)
-                                            .thenCompose(maybeAcceptedPayment -> {
-                                                if (maybeAcceptedPayment.isEmpty()) {
-                                                    Map<String, Object> noPaymentAttrs = Map.of(
-                                                            "commandId", commandId,
-                                                            "referenceCid", referenceCid,
-                                                            "user", user,
-                                                            "provider", provider
-                                                    );
-                                                    LoggingSpanHelper.logError(
-                                                            logger,
-                                                            "completeLicenseRenewal: No AcceptedAppPayment found",
-                                                            noPaymentAttrs,
-                                                            null
-                                                    );
-                                                    LoggingSpanHelper.addEventWithAttributes(methodSpan,
-                                                            "completeLicenseRenewal: No AcceptedAppPayment found",
-                                                            noPaymentAttrs
-                                                    );
-                                                    return CompletableFuture.completedFuture(
-                                                            ResponseEntity.status(HttpStatus.NOT_FOUND).build()
-                                                    );
-                                                }
-
-                                                ContractId<AcceptedAppPayment> acceptedPaymentCid =
-                                                        maybeAcceptedPayment.get().contractId;
-                                                Long miningRound =
-                                                        maybeAcceptedPayment.get().payload.getRound.getNumber;
-
-                                                return damlRepository.findSingleActiveLicense(user, provider, licenseNum, dso)
-                                                        .thenCompose(maybeLicense -> {
-                                                            if (maybeLicense.isEmpty()) {
-                                                                Map<String, Object> noLicenseAttrs = Map.of(
-                                                                        "user", user,
-                                                                        "provider", provider,
-                                                                        "licenseNum", licenseNum,
-                                                                        "dso", dso
-                                                                );
-                                                                LoggingSpanHelper.logError(
-                                                                        logger,
-                                                                        "completeLicenseRenewal: No matching License found",
-                                                                        noLicenseAttrs,
-                                                                        null
-                                                                );
-                                                                LoggingSpanHelper.addEventWithAttributes(methodSpan,
-                                                                        "completeLicenseRenewal: No matching License found",
-                                                                        noLicenseAttrs
-                                                                );
-                                                                return CompletableFuture.completedFuture(
-                                                                        ResponseEntity.status(HttpStatus.NOT_FOUND).build()
-                                                                );
-                                                            }
-
-                                                            ContractId<License> licenseCid =
-                                                                    maybeLicense.get().contractId;
-
-                                                            CompletableFuture<CommandsOuterClass.DisclosedContract> amuletRulesFut =
-                                                                    fetchAmuletRulesDisclosedContract();
-                                                            CompletableFuture<CommandsOuterClass.DisclosedContract> openMiningRoundFut =
-                                                                    fetchOpenMiningRoundDisclosedContract(miningRound);
-
-                                                            return CompletableFuture.allOf(amuletRulesFut, openMiningRoundFut)
-                                                                    .thenCompose(unused -> {
-                                                                        CommandsOuterClass.DisclosedContract amuletRulesDc =
-                                                                                amuletRulesFut.join();
-                                                                        CommandsOuterClass.DisclosedContract openMiningRoundDc =
-                                                                                openMiningRoundFut.join();
-
-                                                                        AppTransferContext transferContext = new AppTransferContext(
-                                                                                new ContractId<>(amuletRulesDc.getContractId()),
-                                                                                new ContractId<>(openMiningRoundDc.getContractId()),
-                                                                                Optional.empty()
-                                                                        );
-
-                                                                        LicenseRenewalRequest_CompleteRenewal choice =
-                                                                                new LicenseRenewalRequest_CompleteRenewal(
-                                                                                        acceptedPaymentCid,
-                                                                                        licenseCid,
-                                                                                        transferContext
-                                                                                );
-
-                                                                        Map<String, Object> choiceAttrs = Map.of(
-                                                                                "choiceName",
-                                                                                "LicenseRenewalRequest_CompleteRenewal"
-                                                                        );
-                                                                        LoggingSpanHelper.addEventWithAttributes(methodSpan,
-                                                                                "completeLicenseRenewal: Exercising choice",
-                                                                                choiceAttrs
-                                                                        );
-                                                                        LoggingSpanHelper.logDebug(logger,
-                                                                                "completeLicenseRenewal: Exercising choice",
-                                                                                choiceAttrs
-                                                                        );
-
-                                                                        return ledger.exerciseAndGetResult(
-                                                                                actingParty,
-                                                                                lrrContract.contractId,
-                                                                                choice,
-                                                                                commandId,
-                                                                                List.of(amuletRulesDc, openMiningRoundDc)
-                                                                        ).thenApply(newLicenseCid -> {
-                                                                            Map<String, Object> successAttrs =
-                                                                                    Map.of(
-                                                                                            "contractId", contractId,
-                                                                                            "commandId", commandId,
-                                                                                            "newLicenseContractId",
-                                                                                            newLicenseCid.getContractId
-                                                                                    );
-                                                                            LoggingSpanHelper.addEventWithAttributes(methodSpan,
-                                                                                    "completeLicenseRenewal: Successfully renewed license",
-                                                                                    successAttrs
-                                                                            );
-                                                                            LoggingSpanHelper.logInfo(logger,
-                                                                                    "completeLicenseRenewal: Successfully renewed license",
-                                                                                    successAttrs
-                                                                            );
-                                                                            return ResponseEntity.ok().<Void>build();
-                                                                        });
-                                                                    });
-                                                        });
-                                            });
-                                })
+                .<ResponseEntity<Void>>thenCompose(actingParty -> idempotency.execute(actingParty, "completeLicenseRenewal", contractId, commandId, () ->
+                            completeLicenseRenewalAs(actingParty, contractId, commandId, null)
+                        )
                 )
                 .whenComplete(
                         completeWithin(parentContext, (res, ex) -> {
@@ -325,77 +190,167 @@ public class LicenseRenewalRequestsApiImpl implements LicenseRenewalRequestsApi
                 );
     }
 
-    private CompletableFuture<CommandsOuterClass.DisclosedContract> fetchAmuletRulesDisclosedContract() {
-        return scanProxyService.getAmuletRules().thenApply(resp -> {
-            var contract = resp.getAmuletRules().getContract();
-            return buildDisclosedContractFromApi(
-                    contract.getTemplateId(),
-                    contract.getContractId(),
-                    contract.getCreatedEventBlob()
-            );
-        });
-    }
-
-    private CompletableFuture<CommandsOuterClass.DisclosedContract> fetchOpenMiningRoundDisclosedContract(Long roundNumber) {
-        return scanProxyService.getOpenAndIssuingMiningRounds().thenCompose(resp -> {
-            if (resp.getOpenMiningRounds().isEmpty()) {
-                return CompletableFuture.failedFuture(new RuntimeException("No open mining rounds found"));
-            }
-            var maybeContract = resp.getOpenMiningRounds().stream()
-                    .filter(round -> Long.valueOf(round.getContract().getPayload().getRound().getNumber())
-                            .equals(roundNumber))
-                    .findFirst();
-            if (maybeContract.isEmpty()) {
-                return CompletableFuture.failedFuture(
-                        new IllegalStateException(
-                                "No open mining round found with number: " + roundNumber
-                        )
-                );
-            }
-            var contract = maybeContract.get().getContract();
-            return CompletableFuture.completedFuture(
-                    buildDisclosedContractFromApi(
-                            contract.getTemplateId(),
-                            contract.getContractId(),
-                            contract.getCreatedEventBlob()
-                    )
-            );
-        });
-    }
-
-    private CommandsOuterClass.DisclosedContract buildDisclosedContractFromApi(
-            String templateIdStr,
+    /**
+     * Exercises LicenseRenewalRequest_CompleteRenewal as {@code actingParty}; also the outbox handler of
+     * {@code completeLicenseRenewal}, which has no request body.
+     */
+    private CompletableFuture<ResponseEntity<Void>> completeLicenseRenewalAs(
+            String actingParty,
             String contractId,
-            String createdEventBlobBase64
+            String commandId,
+            Void body
     ) {
-        ValueOuterClass.Identifier templateId = parseTemplateIdentifier(templateIdStr);
-        byte[] blob = Base64.getDecoder().decode(createdEventBlobBase64);
-        return CommandsOuterClass.DisclosedContract.newBuilder()
-                .setTemplateId(templateId)
-                .setContractId(contractId)
-                .setCreatedEventBlob(ByteString.copyFrom(blob))
-                .build();
-    }
+        Span methodSpan = Span.current();
+        Map<String, Object> initialAttrs = Map.of(
+                "contractId", contractId,
+                "commandId", commandId
+        );
+        return damlRepository.findLicenseRenewalRequestById(contractId)
+                .thenCompose(lrrContract -> {
+                    LoggingSpanHelper.addEventWithAttributes(methodSpan,
+                            "completeLicenseRenewal: Fetched LicenseRenewalRequest contract",
+                            initialAttrs
+                    );
+                    LoggingSpanHelper.logDebug(logger,
+                            "completeLicenseRenewal: Fetched LicenseRenewalRequest contract",
+                            initialAttrs
+                    );
+
+                    String user = lrrContract.payload.getUser.getParty;
+                    String provider = lrrContract.payload.getProvider.getParty;
+                    String dso = lrrContract.payload.getDso.getParty;
+                    Long licenseNum = lrrContract.payload.getLicenseNum;
+                    String referenceCid = lrrContract.payload.getReference.getContractId;
+
+                    return damlRepository.findSingleActiveAcceptedAppPayment(referenceCid, user, provider)
+                            .thenCompose(maybeAcceptedPayment -> {
+                                if (maybeAcceptedPayment.isEmpty()) {
+                                    Map<String, Object> noPaymentAttrs = Map.of(
+                                            "commandId", commandId,
+                                            "referenceCid", referenceCid,
+                                            "user", user,
+                                            "provider", provider
+                                    );
+                                    LoggingSpanHelper.logError(
+                                            logger,
+                                            "completeLicenseRenewal: No AcceptedAppPayment found",
+                                            noPaymentAttrs,
+                                            null
+                                    );
+                                    LoggingSpanHelper.addEventWithAttributes(methodSpan,
+                                            "completeLicenseRenewal: No AcceptedAppPayment found",
+                                            noPaymentAttrs
+                                    );
+                                    return CompletableFuture.completedFuture(
+                                            ResponseEntity.status(HttpStatus.NOT_FOUND).build()
+                                    );
+                                }
+
+                                ContractId<AcceptedAppPayment> acceptedPaymentCid =
+                                        maybeAcceptedPayment.get().contractId;
+                                Long miningRound =
+                                        maybeAcceptedPayment.get().payload.getRound.getNumber;
+
+                                return damlRepository.findSingleActiveLicense(user, provider, licenseNum, dso)
+                                        .thenCompose(maybeLicense -> {
+                                            if (maybeLicense.isEmpty()) {
+                                                Map<String, Object> noLicenseAttrs = Map.of(
+                                                        "user", user,
+                                                        "provider", provider,
+                                                        "licenseNum", licenseNum,
+                                                        "dso", dso
+                                                );
+                                                LoggingSpanHelper.logError(
+                                                        logger,
+                                                        "completeLicenseRenewal: No matching License found",
+                                                        noLicenseAttrs,
+                                                        null
+                                                );
+                                                LoggingSpanHelper.addEventWithAttributes(methodSpan,
+                                                        "completeLicenseRenewal: No matching License found",
+                                                        noLicenseAttrs
+                                                );
+                                                return CompletableFuture.completedFuture(
+                                                        ResponseEntity.status(HttpStatus.NOT_FOUND).build()
+                                                );
+                                            }
+
+                                            ContractId<License> licenseCid =
+                                                    maybeLicense.get().contractId;
+
+                                            CompletableFuture<CommandsOuterClass.DisclosedContract> amuletRulesFut =
+                                                    scanProxyService.getAmuletRulesDisclosure();
+                                            CompletableFuture<CommandsOuterClass.DisclosedContract> openMiningRoundFut =
+                                                    scanProxyService.getOpenMiningRoundDisclosure(miningRound);
+
+                                            return CompletableFuture.allOf(amuletRulesFut, openMiningRoundFut)
+                                                    .thenCompose(unused -> {
+                                                        CommandsOuterClass.DisclosedContract amuletRulesDc =
+                                                                amuletRulesFut.join();
+                                                        CommandsOuterClass.DisclosedContract openMiningRoundDc =
+                                                                openMiningRoundFut.join();
 
-    private static ValueOuterClass.Identifier parseTemplateIdentifier(String templateIdStr) {
-        String[] parts = templateIdStr.split(":");
-        if (parts.length < 3) {
-            throw new IllegalArgumentException("Invalid templateId format: " + templateIdStr);
-        }
-        String packageId = parts[0];
-        String moduleName = parts[1];
-        StringBuilder entityNameBuilder = new StringBuilder();
-        for (int i = 2; i < parts.length; i++) {
-            if (i > 2) {
-                entityNameBuilder.append(":");
-            }
-            entityNameBuilder.append(parts[i]);
-        }
-        String entityName = entityNameBuilder.toString();
-        return ValueOuterClass.Identifier.newBuilder()
-                .setPackageId(packageId)
-                .setModuleName(moduleName)
-                .setEntityName(entityName)
-                .build();
+                                                        AppTransferContext transferContext = new AppTransferContext(
+                                                                new ContractId<>(amuletRulesDc.getContractId()),
+                                                                new ContractId<>(openMiningRoundDc.getContractId()),
+                                                                Optional.empty()
+                                                        );
+
+                                                        LicenseRenewalRequest_CompleteRenewal choice =
+                                                                new LicenseRenewalRequest_CompleteRenewal(
+                                                                        acceptedPaymentCid,
+                                                                        licenseCid,
+                                                                        transferContext
+                                                                );
+
+                                                        Map<String, Object> choiceAttrs = Map.of(
+                                                                "choiceName",
+                                                                "LicenseRenewalRequest_CompleteRenewal"
+                                                        );
+                                                        LoggingSpanHelper.addEventWithAttributes(methodSpan,
+                                                                "completeLicenseRenewal: Exercising choice",
+                                                                choiceAttrs
+                                                        );
+                                                        LoggingSpanHelper.logDebug(logger,
+                                                                "completeLicenseRenewal: Exercising choice",
+                                                                choiceAttrs
+                                                        );
+
+                                                        // tree path: the renewal recreates the License, which readers must
+                                                        // see through the write-through cache before PQS catches up
+                                                        return ledger.exerciseAndGetResult(
+                                                                actingParty,
+                                                                lrrContract.contractId,
+                                                                choice,
+                                                                commandId,
+                                                                List.of(amuletRulesDc, openMiningRoundDc)
+                                                        ).whenComplete((newLicenseCid, ex) -> {
+                                                            if (ex != null) {
+                                                                // cached AmuletRules or rounds archived in the meantime are
+                                                                // re-read, so the client's retry discloses the current ones
+                                                                scanProxyService.invalidateOnStaleContract(ex);
+                                                            }
+                                                        }).thenApply(newLicenseCid -> {
+                                                            Map<String, Object> successAttrs =
+                                                                    Map.of(
+                                                                            "contractId", contractId,
+                                                                            "commandId", commandId,
+                                                                            "newLicenseContractId",
+                                                                            newLicenseCid.getContractId
+                                                                    );
+                                                            LoggingSpanHelper.addEventWithAttributes(methodSpan,
+                                                                    "completeLicenseRenewal: Successfully renewed license",
+                                                                    successAttrs
+                                                            );
+                                                            LoggingSpanHelper.logInfo(logger,
+                                                                    "completeLicenseRenewal: Successfully renewed license",
+                                                                    successAttrs
+                                                            );
+                                                            return ResponseEntity.ok().<Void>build();
+                                                        });
+                                                    });
+                                        });
+                            });
+                });
     }
 }
@@ -0,0 +1,185 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.service;
+
+import com.digitalasset.quickstart.api.OutboxApi;
+import com.digitalasset.quickstart.oauth.AuthenticatedPartyService;
+import com.digitalasset.quickstart.outbox.CommandOutbox;
+import com.digitalasset.quickstart.utility.LoggingSpanHelper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.context.Context;
+import org.openapitools.model.AppInstallCancel;
+import org.openapitools.model.AppInstallRequestCancel;
+import org.openapitools.model.AppInstallRequestReject;
+import org.openapitools.model.LicenseExpireRequest;
+import org.openapitools.model.OutboxAccepted;
+import org.openapitools.model.OutboxEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.digitalasset.quickstart.utility.ContextAwareCompletableFutures.supplyWithin;
+
+/**
+ * Asynchronous variants of the ledger command endpoints that return no result.
+ * <p>
+ * When {@code outbox.enabled} is set, requests carrying {@code Prefer: respond-async} are served by these handlers
+ * instead of the generated API implementations: the command is durably enqueued in the {@link CommandOutbox} and
+ * the request answered with {@code 202 Accepted}, a tracking id and a {@code Location} to poll. Once run, the
+ * entry at {@code GET /outbox/{trackingId}} carries the status and body the synchronous endpoint would have
+ * returned. Requests without the header are unaffected. Both are declared in {@code common/openapi.yaml}: the
+ * {@code Prefer} header and the 202 response on the command endpoints, and {@link OutboxApi}.
+ */
+@Controller
+@RequestMapping("${openapi.asset.base-path:}")
+@ConditionalOnProperty(prefix = "outbox", name = "enabled", havingValue = "true")
+public class OutboxApiImpl implements OutboxApi {
+
+    public static final String RESPOND_ASYNC = "Prefer=respond-async";
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxApiImpl.class);
+
+    private final CommandOutbox outbox;
+    private final AuthenticatedPartyService authenticatedPartyService;
+    private final ObjectMapper objectMapper;
+    private final String basePath;
+
+    public OutboxApiImpl(
+            CommandOutbox outbox,
+            AuthenticatedPartyService authenticatedPartyService,
+            ObjectMapper objectMapper,
+            @Value("${openapi.asset.base-path:}") String basePath
+    ) {
+        this.outbox = outbox;
+        this.authenticatedPartyService = authenticatedPartyService;
+        this.objectMapper = objectMapper;
+        this.basePath = basePath;
+    }
+
+    @PostMapping(value = "/licenses/{contractId}/expire", headers = RESPOND_ASYNC, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<OutboxAccepted>> expireLicenseAsync(
+            @PathVariable("contractId") String contractId,
+            @RequestParam("commandId") String commandId,
+            @RequestBody LicenseExpireRequest licenseExpireRequest
+    ) {
+        return enqueue("expireLicense", contractId, commandId, licenseExpireRequest);
+    }
+
+    @PostMapping(value = "/app-installs/{contractId}/cancel", headers = RESPOND_ASYNC, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<OutboxAccepted>> cancelAppInstallAsync(
+            @PathVariable("contractId") String contractId,
+            @RequestParam("commandId") String commandId,
+            @RequestBody AppInstallCancel appInstallCancel
+    ) {
+        return enqueue("cancelAppInstall", contractId, commandId, appInstallCancel);
+    }
+
+    @PostMapping(value = "/app-install-requests/{contractId}/cancel", headers = RESPOND_ASYNC, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<OutboxAccepted>> cancelAppInstallRequestAsync(
+            @PathVariable("contractId") String contractId,
+            @RequestParam("commandId") String commandId,
+            @RequestBody AppInstallRequestCancel appInstallRequestCancel
+    ) {
+        return enqueue("cancelAppInstallRequest", contractId, commandId, appInstallRequestCancel);
+    }
+
+    @PostMapping(value = "/app-install-requests/{contractId}/reject", headers = RESPOND_ASYNC, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<OutboxAccepted>> rejectAppInstallRequestAsync(
+            @PathVariable("contractId") String contractId,
+            @RequestParam("commandId") String commandId,
+            @RequestBody AppInstallRequestReject appInstallRequestReject
+    ) {
+        return enqueue("rejectAppInstallRequest", contractId, commandId, appInstallRequestReject);
+    }
+
+    @PostMapping(value = "/license-renewal-requests/{contractId}/complete-renewal", headers = RESPOND_ASYNC, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<OutboxAccepted>> completeLicenseRenewalAsync(
+            @PathVariable("contractId") String contractId,
+            @RequestParam("commandId") String commandId
+    ) {
+        return enqueue("completeLicenseRenewal", contractId, commandId, null);
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<OutboxEntry>> getOutboxEntry(String trackingId) {
+        Context parentContext = Context.current();
+        return authenticatedPartyService.getPartyOrFail()
+                .thenCompose(party -> CompletableFuture.supplyAsync(supplyWithin(parentContext, () ->
+                        outbox.status(trackingId, party)
+                                .map(this::toOutboxEntry)
+                                .map(ResponseEntity::ok)
+                                .orElseGet(() -> ResponseEntity.notFound().build())
+                )));
+    }
+
+    private CompletableFuture<ResponseEntity<OutboxAccepted>> enqueue(
+            String operation,
+            String contractId,
+            String commandId,
+            Object body
+    ) {
+        return authenticatedPartyService.getPartyOrFail()
+                .thenCompose(party -> outbox.enqueue(operation, party, contractId, commandId, body))
+                .thenApply(trackingId -> {
+                    LoggingSpanHelper.logInfo(logger, "Enqueued command in the outbox", Map.of(
+                            "operation", operation,
+                            "contractId", contractId,
+                            "commandId", commandId,
+                            "trackingId", trackingId
+                    ));
+                    OutboxAccepted accepted = new OutboxAccepted();
+                    accepted.setTrackingId(trackingId);
+                    accepted.setStatus(OutboxAccepted.StatusEnum.PENDING);
+                    return ResponseEntity.status(HttpStatus.ACCEPTED)
+                            .header(HttpHeaders.LOCATION, basePath + "/outbox/" + trackingId)
+                            .body(accepted);
+                });
+    }
+
+    private OutboxEntry toOutboxEntry(com.digitalasset.quickstart.outbox.OutboxEntry entry) {
+        OutboxEntry result = new OutboxEntry();
+        result.setTrackingId(entry.getTrackingId());
+        result.setOperation(entry.getOperation());
+        result.setContractId(entry.getContractId());
+        result.setCommandId(entry.getCommandId());
+        result.setStatus(OutboxEntry.StatusEnum.fromValue(entry.getStatus().name().toLowerCase(Locale.ROOT)));
+        result.setAttempts(entry.getAttempts());
+        result.setEnqueuedAt(toOffsetDateTime(entry.getEnqueuedAt()));
+        result.setCompletedAt(toOffsetDateTime(entry.getCompletedAt()));
+        result.setResponseStatus(entry.getResponseStatus());
+        result.setError(entry.getError());
+        if (entry.getResponseBody() != null) {
+            try {
+                result.setResponseBody(objectMapper.readTree(entry.getResponseBody()));
+            } catch (JsonProcessingException e) {
+                // stored by the outbox itself, so this only happens for bodies that were not JSON to begin with
+                result.setResponseBody(entry.getResponseBody());
+            }
+        }
+        return result;
+    }
+
+    private static OffsetDateTime toOffsetDateTime(Instant instant) {
+        return instant != null ? OffsetDateTime.ofInstant(instant, ZoneOffset.UTC) : null;
+    }
+}
@@ -0,0 +1,344 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.context.Context;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of concurrent calls to a downstream dependency, adapting the bound to its observed latency.
+ * <p>
+ * The limit follows a latency gradient: a slowly moving average of call latency serves as the baseline, and
+ * while recent calls are slower than the baseline (queueing downstream), the limit shrinks proportionally;
+ * while they are not, it grows by roughly the square root of the limit. Calls that fail with an overload
+ * signal (as decided by the dependency-specific {@code overload} predicate) additionally cut the limit
+ * multiplicatively.
+ * <p>
+ * Calls beyond the limit wait in one queue per {@link PriorityClass}, each holding at most as many calls as the
+ * current limit; further calls are rejected immediately with a {@link ConcurrencyLimitExceededException}. Freed
+ * slots go to the queues by smooth weighted round robin, and lower priority classes are only admitted while the
+ * calls in flight stay below their share of the limit. A call waits at most {@code maxQueueTime}, or until its
+ * {@link RequestDeadline}, whichever is sooner, and then fails with {@link ConcurrencyLimitExceededException} too;
+ * a call whose future is cancelled while it waits leaves the queue.
+ * <p>
+ * Exports {@code backend.concurrency.limit}, {@code backend.concurrency.inflight},
+ * {@code backend.concurrency.rejections} and {@code backend.concurrency.queue.time}, attributed with the
+ * dependency name and, where it applies, the priority class.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double BASELINE_SMOOTHING = 0.05;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final String dependency;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxQueueNanos;
+    private final Predicate<Throwable> overload;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongCounter rejections;
+    private final DoubleHistogram queueTime;
+    private final Attributes attributes;
+    private final Map<PriorityClass, Attributes> laneAttributes = new EnumMap<>(PriorityClass.class);
+
+    // guarded by this
+    private double limit;
+    private double baselineNanos;
+    private final Map<PriorityClass, Lane> lanes = new EnumMap<>(PriorityClass.class);
+
+    public AdaptiveConcurrencyLimiter(
+            String dependency,
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            Duration maxQueueTime,
+            Predicate<Throwable> overload
+    ) {
+        this.dependency = dependency;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueueNanos = maxQueueTime.toNanos();
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.overload = overload;
+        this.attributes = Metrics.attributes("dependency", dependency);
+        for (PriorityClass priority : PriorityClass.values()) {
+            lanes.put(priority, new Lane(priority));
+            laneAttributes.put(priority, Metrics.attributes("dependency", dependency, "priority", priority.name().toLowerCase()));
+        }
+
+        Metrics.meter()
+                .gaugeBuilder("backend.concurrency.limit")
+                .setDescription("Current adaptive concurrency limit, per dependency")
+                .ofLongs()
+                .buildWithCallback(measurement -> measurement.record(currentLimit(), attributes));
+        Metrics.meter()
+                .gaugeBuilder("backend.concurrency.inflight")
+                .setDescription("Calls in flight, per dependency")
+                .ofLongs()
+                .buildWithCallback(measurement -> measurement.record(inFlight.get(), attributes));
+        this.rejections = Metrics.meter()
+                .counterBuilder("backend.concurrency.rejections")
+                .setDescription("Calls rejected because the concurrency limit was reached, per dependency and priority")
+                .build();
+        this.queueTime = Metrics.meter()
+                .histogramBuilder("backend.concurrency.queue.time")
+                .setDescription("Time calls waited for a concurrency slot, per dependency and priority")
+                .setUnit("ms")
+                .build();
+    }
+
+    /**
+     * Runs {@code call} at the {@link PriorityClass#current() current} priority once a slot is free.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        return execute(PriorityClass.current(), call);
+    }
+
+    /**
+     * Runs {@code call} at {@code priority} once a slot is free, or fails with
+     * {@link ConcurrencyLimitExceededException} if too many calls of that priority are already waiting or no slot
+     * freed up in time. The slot is held until the call's future completes. Cancelling the returned future
+     * before the call started withdraws it from the queue.
+     */
+    public <T> CompletableFuture<T> execute(PriorityClass priority, Supplier<CompletableFuture<T>> call) {
+        // a queued call may be started from another call's completion, so it runs in its caller's context
+        Supplier<CompletableFuture<T>> contextualCall = Context.current().wrapSupplier(call);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Waiter waiter = admit(priority);
+        waiter.admitted.whenComplete((ignored, rejected) -> {
+            if (rejected != null) {
+                result.completeExceptionally(rejected);
+                return;
+            }
+            if (result.isDone()) {
+                // cancelled while the slot was handed over; nothing will release it otherwise
+                release();
+                return;
+            }
+            long start = System.nanoTime();
+            CompletableFuture<T> future;
+            try {
+                future = contextualCall.get();
+            } catch (RuntimeException e) {
+                release(start, e);
+                result.completeExceptionally(e);
+                return;
+            }
+            future.whenComplete((value, ex) -> {
+                release(start, ex);
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        result.whenComplete((value, ex) -> {
+            if (ex != null) {
+                withdraw(waiter);
+            }
+        });
+        RequestDeadline.current().ifPresent(deadline -> deadline.cancelOnAbort(result));
+        return result;
+    }
+
+    /**
+     * Synchronous variant of {@link #execute(Supplier)}, blocking the calling thread while queued; throws
+     * {@link ConcurrencyLimitExceededException} when rejected.
+     */
+    public <T> T call(Supplier<T> call) {
+        try {
+            admit(PriorityClass.current()).admitted.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            release(start, null);
+            return result;
+        } catch (RuntimeException e) {
+            release(start, e);
+            throw e;
+        }
+    }
+
+    public synchronized int currentLimit() {
+        return (int) limit;
+    }
+
+    private Waiter admit(PriorityClass priority) {
+        Waiter waiter = new Waiter(priority);
+        synchronized (this) {
+            Lane lane = lanes.get(priority);
+            if (lane.waiters.isEmpty() && admissible(priority)) {
+                inFlight.incrementAndGet();
+                queueTime.record(0, laneAttributes.get(priority));
+                waiter.admitted.complete(null);
+                return waiter;
+            }
+            if (lane.waiters.size() >= currentLimit()) {
+                rejections.add(1, laneAttributes.get(priority));
+                waiter.admitted.completeExceptionally(new ConcurrencyLimitExceededException(dependency, retryAfterSeconds()));
+                return waiter;
+            }
+            lane.waiters.add(waiter);
+        }
+        long timeoutNanos = RequestDeadline.current()
+                .map(deadline -> Math.min(maxQueueNanos, deadline.remaining().toNanos()))
+                .orElse(maxQueueNanos);
+        CompletableFuture.delayedExecutor(timeoutNanos, TimeUnit.NANOSECONDS).execute(() -> timeOut(waiter));
+        return waiter;
+    }
+
+    private void timeOut(Waiter waiter) {
+        synchronized (this) {
+            if (!lanes.get(waiter.priority).waiters.remove(waiter)) {
+                // admitted or withdrawn in the meantime
+                return;
+            }
+        }
+        rejections.add(1, laneAttributes.get(waiter.priority));
+        queueTime.record(Metrics.millisSince(waiter.enqueuedAt), laneAttributes.get(waiter.priority));
+        waiter.admitted.completeExceptionally(new ConcurrencyLimitExceededException(dependency, retryAfterSeconds()));
+    }
+
+    private void withdraw(Waiter waiter) {
+        synchronized (this) {
+            if (!lanes.get(waiter.priority).waiters.remove(waiter)) {
+                return;
+            }
+        }
+        waiter.admitted.cancel(false);
+    }
+
+    // guarded by this
+    private boolean admissible(PriorityClass priority) {
+        return inFlight.get() < Math.max(1, (int) (limit * priority.share));
+    }
+
+    private void release(long startNanos, Throwable ex) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        long latencyNanos = System.nanoTime() - startNanos;
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        List<Waiter> admitted;
+        synchronized (this) {
+            adjustLimit(inFlightBefore, latencyNanos, cause);
+            admitted = dequeueAdmissible();
+        }
+        handOver(admitted);
+    }
+
+    /**
+     * Frees a slot that was granted but never used, without counting it as a call.
+     */
+    private void release() {
+        inFlight.decrementAndGet();
+        List<Waiter> admitted;
+        synchronized (this) {
+            admitted = dequeueAdmissible();
+        }
+        handOver(admitted);
+    }
+
+    private void handOver(List<Waiter> admitted) {
+        for (Waiter waiter : admitted) {
+            queueTime.record(Metrics.millisSince(waiter.enqueuedAt), laneAttributes.get(waiter.priority));
+            waiter.admitted.complete(null);
+        }
+    }
+
+    // guarded by this
+    private void adjustLimit(int inFlightBefore, long latencyNanos, Throwable cause) {
+        if (cause != null && overload.test(cause)) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+        if (cause != null) {
+            // ordinary failures say nothing about downstream load
+            return;
+        }
+        baselineNanos = baselineNanos == 0
+                ? latencyNanos
+                : baselineNanos * (1 - BASELINE_SMOOTHING) + latencyNanos * BASELINE_SMOOTHING;
+        if (inFlightBefore < limit / 2) {
+            // far below the limit, latency says nothing about whether more concurrency would be tolerated
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, baselineNanos / Math.max(1, latencyNanos)));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.min(maxLimit, Math.max(minLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    /**
+     * Hands free slots to waiting calls by smooth weighted round robin over the lanes that have waiters and are
+     * admissible; the lane with the highest accumulated weight goes first and pays the total weight for it.
+     */
+    // guarded by this
+    private List<Waiter> dequeueAdmissible() {
+        List<Waiter> admitted = new ArrayList<>();
+        while (true) {
+            Lane next = null;
+            int totalWeight = 0;
+            for (Lane lane : lanes.values()) {
+                if (lane.waiters.isEmpty() || !admissible(lane.priority)) {
+                    continue;
+                }
+                lane.currentWeight += lane.priority.weight;
+                totalWeight += lane.priority.weight;
+                if (next == null || lane.currentWeight > next.currentWeight) {
+                    next = lane;
+                }
+            }
+            if (next == null) {
+                return admitted;
+            }
+            next.currentWeight -= totalWeight;
+            inFlight.incrementAndGet();
+            admitted.add(next.waiters.poll());
+        }
+    }
+
+    private synchronized long retryAfterSeconds() {
+        // by then, typically the calls in flight have completed
+        return Math.max(1, (long) Math.ceil(baselineNanos / 1e9));
+    }
+
+    private static final class Lane {
+        private final PriorityClass priority;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int currentWeight;
+
+        private Lane(PriorityClass priority) {
+            this.priority = priority;
+        }
+    }
+
+    private static final class Waiter {
+        private final PriorityClass priority;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Void> admitted = new CompletableFuture<>();
+
+        private Waiter(PriorityClass priority) {
+            this.priority = priority;
+        }
+    }
+}
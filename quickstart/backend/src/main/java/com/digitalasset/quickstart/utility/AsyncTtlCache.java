@@ -0,0 +1,85 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of asynchronously loaded values that expire a fixed time after they were loaded.
+ * <p>
+ * The cache holds the loading future itself, so concurrent callers asking for a key that is being loaded share
+ * the one in-flight load instead of each issuing their own. Failed loads are evicted as soon as they fail and
+ * are never served from the cache. Lookups are counted in {@code backend.cache.requests} by cache name and
+ * result (hit or miss).
+ */
+public class AsyncTtlCache<K, V> {
+
+    private final Cache<K, CompletableFuture<V>> cache;
+    private final LongCounter requests;
+    private final Attributes hit;
+    private final Attributes miss;
+
+    public AsyncTtlCache(String name, Duration ttl, long maxEntries) {
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntries)
+                .build();
+        this.requests = Metrics.meter()
+                .counterBuilder("backend.cache.requests")
+                .setDescription("Cache lookups, by cache and result")
+                .build();
+        this.hit = Metrics.attributes("cache", name, "result", "hit");
+        this.miss = Metrics.attributes("cache", name, "result", "miss");
+    }
+
+    /**
+     * The cached value for {@code key}, or the result of {@code loader} if none is cached or being loaded.
+     */
+    public CompletableFuture<V> get(K key, Function<K, CompletableFuture<V>> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> cached;
+        try {
+            cached = cache.get(key, () -> created);
+        } catch (ExecutionException e) {
+            // the value loader only returns a future and cannot throw
+            throw new IllegalStateException(e);
+        }
+        if (cached != created) {
+            requests.add(1, hit);
+            return cached;
+        }
+        requests.add(1, miss);
+        CompletableFuture<V> loading;
+        try {
+            loading = loader.apply(key);
+        } catch (RuntimeException e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        loading.whenComplete((value, ex) -> {
+            if (ex != null) {
+                cache.asMap().remove(key, created);
+                created.completeExceptionally(ex);
+            } else {
+                created.complete(value);
+            }
+        });
+        return created;
+    }
+
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,175 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.quickstart.config.TranscodeConfig;
+import com.digitalasset.transcode.Converter;
+import com.digitalasset.transcode.codec.json.JsonStringCodec;
+import com.digitalasset.transcode.codec.proto.ProtobufCodec;
+import com.digitalasset.transcode.java.Utils;
+import com.digitalasset.transcode.schema.Dictionary;
+import com.digitalasset.transcode.schema.Identifier;
+import com.google.common.base.Suppliers;
+import daml.Daml;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Shared registry of transcode converters used by both the Ledger API client and PQS.
+ *
+ * <p>Nothing is compiled at construction time. Transcode compiles a codec's dictionary from the complete entity
+ * list: a template's converter needs the converters of every data type it refers to, and the generated
+ * {@code Daml.ENTITIES} does not expose those references, so the list cannot be cut down to the entities in use.
+ * The three dictionaries are therefore built in the background once the application is ready, followed by the
+ * converters of the templates listed in {@link TranscodeConfig#getWarmTemplates()}. A lookup arriving earlier
+ * builds the dictionary it needs itself, outside of the converter cache's locks. Dictionary compile time is
+ * recorded per codec in {@code backend.transcode.dictionary.compile.duration}; resolving a converter from a built
+ * dictionary is recorded per codec and entity in {@code backend.transcode.converter.resolve.duration}.
+ */
+@Component
+public class ConverterRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConverterRegistry.class);
+
+    private static final String PROTO_ENCODE = "proto-encode";
+    private static final String PROTO_DECODE = "proto-decode";
+    private static final String JSON_DECODE = "json-decode";
+
+    private final TranscodeConfig transcodeConfig;
+    private final DoubleHistogram compileDuration;
+    private final DoubleHistogram resolveDuration;
+
+    private final Supplier<Dictionary<Converter<Object, ValueOuterClass.Value>>> dto2Proto;
+    private final Supplier<Dictionary<Converter<ValueOuterClass.Value, Object>>> proto2Dto;
+    private final Supplier<Dictionary<Converter<String, Object>>> json2Dto;
+
+    private final Map<String, Converter<?, ?>> converters = new ConcurrentHashMap<>();
+
+    public ConverterRegistry(TranscodeConfig transcodeConfig) {
+        this.transcodeConfig = transcodeConfig;
+        this.compileDuration = Metrics.meter()
+                .histogramBuilder("backend.transcode.dictionary.compile.duration")
+                .setDescription("Time spent compiling the converters of all entities for a codec")
+                .setUnit("ms")
+                .build();
+        this.resolveDuration = Metrics.meter()
+                .histogramBuilder("backend.transcode.converter.resolve.duration")
+                .setDescription("Time spent resolving a converter from its codec's compiled dictionary, per codec and entity")
+                .setUnit("ms")
+                .build();
+
+        // Suppliers.memoize gives single-flight initialization: concurrent first callers wait for one build
+        this.dto2Proto = Suppliers.memoize(() ->
+                compiled(PROTO_ENCODE, () -> Utils.getConverters(Daml.ENTITIES, new ProtobufCodec())));
+        this.proto2Dto = Suppliers.memoize(() ->
+                compiled(PROTO_DECODE, () -> Utils.getConverters(new ProtobufCodec(), Daml.ENTITIES)));
+        this.json2Dto = Suppliers.memoize(() ->
+                compiled(JSON_DECODE, () -> Utils.getConverters(new JsonStringCodec(true, true), Daml.ENTITIES)));
+    }
+
+    /**
+     * Converter from a template DTO to its Ledger API create arguments.
+     */
+    public Converter<Object, ValueOuterClass.Value> templateEncoder(Identifier templateId) {
+        return resolve(PROTO_ENCODE, templateId, null, dto2Proto, dictionary -> dictionary.template(templateId));
+    }
+
+    /**
+     * Converter from a choice DTO to its Ledger API choice argument.
+     */
+    public Converter<Object, ValueOuterClass.Value> choiceArgumentEncoder(Identifier templateId, String choiceName) {
+        return resolve(PROTO_ENCODE, templateId, choiceName, dto2Proto,
+                dictionary -> dictionary.choiceArgument(templateId, choiceName));
+    }
+
+    /**
+     * Converter from Ledger API create arguments to a template DTO.
+     */
+    public Converter<ValueOuterClass.Value, Object> templateDecoder(Identifier templateId) {
+        return resolve(PROTO_DECODE, templateId, null, proto2Dto, dictionary -> dictionary.template(templateId));
+    }
+
+    /**
+     * Converter from a Ledger API exercise result to the choice's result DTO.
+     */
+    public Converter<ValueOuterClass.Value, Object> choiceResultDecoder(Identifier templateId, String choiceName) {
+        return resolve(PROTO_DECODE, templateId, choiceName, proto2Dto,
+                dictionary -> dictionary.choiceResult(templateId, choiceName));
+    }
+
+    /**
+     * Converter from a PQS JSON payload to a template DTO.
+     */
+    public Converter<String, Object> jsonTemplateDecoder(Identifier templateId) {
+        return resolve(JSON_DECODE, templateId, null, json2Dto, dictionary -> dictionary.template(templateId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        CompletableFuture.runAsync(() -> {
+            try {
+                dto2Proto.get();
+                proto2Dto.get();
+                json2Dto.get();
+            } catch (RuntimeException e) {
+                LoggingSpanHelper.logError(logger, "Failed to compile converter dictionaries", e);
+                return;
+            }
+            for (String className : transcodeConfig.getWarmTemplates()) {
+                try {
+                    Identifier templateId = Utils.getTemplateIdByClass(Class.forName(className));
+                    templateEncoder(templateId);
+                    templateDecoder(templateId);
+                    jsonTemplateDecoder(templateId);
+                } catch (Exception e) {
+                    LoggingSpanHelper.logError(logger, "Failed to warm up converters", Map.of("template", className), e);
+                }
+            }
+            LoggingSpanHelper.logInfo(logger, "Converter warm-up finished", Map.of("converters", converters.size()));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A, B> Converter<A, B> resolve(
+            String codec,
+            Identifier templateId,
+            String choiceName,
+            Supplier<Dictionary<Converter<A, B>>> dictionary,
+            Function<Dictionary<Converter<A, B>>, Converter<A, B>> lookup
+    ) {
+        String entity = choiceName == null ? templateId.qualifiedName() : templateId.qualifiedName() + ":" + choiceName;
+        String key = codec + "/" + entity;
+        Converter<?, ?> cached = converters.get(key);
+        if (cached != null) {
+            return (Converter<A, B>) cached;
+        }
+        // may compile the whole dictionary, which must not happen under the map's bin lock
+        Dictionary<Converter<A, B>> compiled = dictionary.get();
+        long start = System.nanoTime();
+        Converter<A, B> resolved = lookup.apply(compiled);
+        resolveDuration.record(Metrics.millisSince(start), Metrics.attributes("codec", codec, "entity", entity));
+        cached = converters.putIfAbsent(key, resolved);
+        return cached != null ? (Converter<A, B>) cached : resolved;
+    }
+
+    private <T> T compiled(String codec, Supplier<T> compile) {
+        long start = System.nanoTime();
+        T result = compile.get();
+        double millis = Metrics.millisSince(start);
+        compileDuration.record(millis, Metrics.attributes("codec", codec));
+        LoggingSpanHelper.logInfo(logger, "Compiled converter dictionary", Map.of("codec", codec, "durationMs", millis));
+        return result;
+    }
+}
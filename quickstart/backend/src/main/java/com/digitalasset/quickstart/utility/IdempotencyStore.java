@@ -0,0 +1,64 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import com.digitalasset.quickstart.config.LedgerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Makes command endpoints idempotent per (party, operation, contract id, command id).
+ * <p>
+ * The first request for a command runs the action; a repeated request while it is running waits for the same
+ * action, and a repeated request after it succeeded gets the same result back, without touching PQS or the
+ * ledger. Failed actions are not remembered, so a client may retry them. Results are kept for the ledger's
+ * deduplication period ({@code ledger.deduplication-period-seconds}), which is also set on every submitted
+ * command, so a duplicate that arrives after eviction is still rejected by the ledger rather than applied twice.
+ * <p>
+ * The action is shared by every request repeating the command, so it runs outside of the first request's deadline,
+ * and each request gets its own copy of the result: a request that gives up cancels its copy only.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private final AsyncTtlCache<List<String>, Object> results;
+
+    public IdempotencyStore(LedgerConfig ledgerConfig) {
+        this.results = new AsyncTtlCache<>(
+                "command.results",
+                Duration.ofSeconds(ledgerConfig.getDeduplicationPeriodSeconds()),
+                ledgerConfig.getIdempotencyMaxEntries()
+        );
+    }
+
+    /**
+     * Runs {@code action} unless the same command (party, operation, contract and id) is already running or has
+     * succeeded, in which case its result is returned instead. Keying on the operation keeps a command id reused
+     * for another endpoint from being answered with a result of a different type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(
+            String party,
+            String operation,
+            String contractId,
+            String commandId,
+            Supplier<CompletableFuture<T>> action
+    ) {
+        CompletableFuture<Object> shared = results.get(List.of(party, operation, contractId, commandId), key -> {
+            LoggingSpanHelper.logDebug(logger, "Running command",
+                    Map.of("party", party, "operation", operation, "contractId", contractId, "commandId", commandId));
+            return RequestDeadline.detached(() -> (CompletableFuture<Object>) action.get());
+        });
+        return (CompletableFuture<T>) shared.copy();
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+
+/**
+ * Central access point for the backend's OpenTelemetry {@link Meter}.
+ *
+ * <p>Metrics are recorded against {@link GlobalOpenTelemetry}, which the OpenTelemetry Java agent
+ * configures at startup and exports together with traces and logs. Without the agent the calls
+ * are no-ops, so instrumentation can be added unconditionally.
+ */
+public final class Metrics {
+
+    public static final String INSTRUMENTATION_SCOPE = "com.digitalasset.quickstart";
+
+    private Metrics() {
+        // Utility class: prevent instantiation
+    }
+
+    /**
+     * Returns the meter all backend instruments should be created from.
+     */
+    public static Meter meter() {
+        return GlobalOpenTelemetry.getMeter(INSTRUMENTATION_SCOPE);
+    }
+
+    /**
+     * Convenience for building a single string attribute set.
+     */
+    public static Attributes attributes(String key, String value) {
+        return Attributes.of(AttributeKey.stringKey(key), value);
+    }
+
+    /**
+     * Convenience for building a two-entry string attribute set.
+     */
+    public static Attributes attributes(String key1, String value1, String key2, String value2) {
+        return Attributes.of(AttributeKey.stringKey(key1), value1, AttributeKey.stringKey(key2), value2);
+    }
+
+    /**
+     * Milliseconds elapsed since a {@link System#nanoTime()} reading.
+     */
+    public static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,159 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.quickstart.config.LedgerConfig;
+import io.opentelemetry.api.metrics.LongCounter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizes party identifiers so that the contracts retained by the {@code ActiveContractStore} and the
+ * {@code WriteThroughContractCache} share one {@code name::1220<hash>} string per party instead of holding a
+ * private copy each.
+ *
+ * <p>Party strings are replaced in the Ledger API value before it is decoded, so the decoder builds every
+ * {@code Party} around the shared string; the decoded objects themselves are never modified. The gain is the heap
+ * saved on large retained contract sets; contracts read from PQS and per-request values are not interned. The
+ * table is bounded by {@code ledger.party-intern-max-entries}; once full, unseen parties are passed through
+ * unchanged.
+ */
+@Component
+public class PartyInterner {
+
+    private final int maxEntries;
+    private final Map<String, String> parties = new ConcurrentHashMap<>();
+    private final LongCounter lookups;
+
+    public PartyInterner(LedgerConfig ledgerConfig) {
+        this.maxEntries = ledgerConfig.getPartyInternMaxEntries();
+        this.lookups = Metrics.meter()
+                .counterBuilder("backend.intern.party.lookups")
+                .setDescription("Party intern lookups, by hit or miss")
+                .build();
+        Metrics.meter()
+                .gaugeBuilder("backend.intern.party.entries")
+                .setDescription("Distinct parties held by the intern table")
+                .ofLongs()
+                .buildWithCallback(measurement -> measurement.record(parties.size()));
+    }
+
+    /**
+     * Returns the canonical string for a party id, e.g. for a party index key of a retained store.
+     */
+    public String intern(String partyId) {
+        if (partyId == null) {
+            return null;
+        }
+        String canonical = parties.get(partyId);
+        if (canonical == null) {
+            if (parties.size() >= maxEntries) {
+                lookups.add(1, Metrics.attributes("result", "full"));
+                return partyId;
+            }
+            canonical = parties.putIfAbsent(partyId, partyId);
+            if (canonical == null) {
+                lookups.add(1, Metrics.attributes("result", "miss"));
+                return partyId;
+            }
+        }
+        if (canonical != partyId) {
+            lookups.add(1, Metrics.attributes("result", "hit"));
+        }
+        return canonical;
+    }
+
+    /**
+     * Returns {@code value} with every party in it, at any depth, replaced by its canonical string. Values
+     * without parties are returned as they are.
+     */
+    public ValueOuterClass.Value intern(ValueOuterClass.Value value) {
+        switch (value.getSumCase()) {
+            case PARTY: {
+                String party = value.getParty();
+                String canonical = intern(party);
+                return canonical == party ? value : value.toBuilder().setParty(canonical).build();
+            }
+            case RECORD: {
+                ValueOuterClass.Record record = value.getRecord();
+                ValueOuterClass.Record.Builder builder = null;
+                for (int i = 0; i < record.getFieldsCount(); i++) {
+                    ValueOuterClass.Value field = record.getFields(i).getValue();
+                    ValueOuterClass.Value interned = intern(field);
+                    if (interned != field) {
+                        if (builder == null) {
+                            builder = record.toBuilder();
+                        }
+                        builder.getFieldsBuilder(i).setValue(interned);
+                    }
+                }
+                return builder == null ? value : value.toBuilder().setRecord(builder).build();
+            }
+            case VARIANT: {
+                ValueOuterClass.Value inner = value.getVariant().getValue();
+                ValueOuterClass.Value interned = intern(inner);
+                return interned == inner ? value : value.toBuilder().setVariant(value.getVariant().toBuilder().setValue(interned)).build();
+            }
+            case OPTIONAL: {
+                if (!value.getOptional().hasValue()) {
+                    return value;
+                }
+                ValueOuterClass.Value inner = value.getOptional().getValue();
+                ValueOuterClass.Value interned = intern(inner);
+                return interned == inner ? value : value.toBuilder().setOptional(value.getOptional().toBuilder().setValue(interned)).build();
+            }
+            case LIST: {
+                ValueOuterClass.List list = value.getList();
+                ValueOuterClass.List.Builder builder = null;
+                for (int i = 0; i < list.getElementsCount(); i++) {
+                    ValueOuterClass.Value element = list.getElements(i);
+                    ValueOuterClass.Value interned = intern(element);
+                    if (interned != element) {
+                        if (builder == null) {
+                            builder = list.toBuilder();
+                        }
+                        builder.setElements(i, interned);
+                    }
+                }
+                return builder == null ? value : value.toBuilder().setList(builder).build();
+            }
+            case TEXT_MAP: {
+                ValueOuterClass.TextMap map = value.getTextMap();
+                ValueOuterClass.TextMap.Builder builder = null;
+                for (int i = 0; i < map.getEntriesCount(); i++) {
+                    ValueOuterClass.Value entry = map.getEntries(i).getValue();
+                    ValueOuterClass.Value interned = intern(entry);
+                    if (interned != entry) {
+                        if (builder == null) {
+                            builder = map.toBuilder();
+                        }
+                        builder.getEntriesBuilder(i).setValue(interned);
+                    }
+                }
+                return builder == null ? value : value.toBuilder().setTextMap(builder).build();
+            }
+            case GEN_MAP: {
+                ValueOuterClass.GenMap map = value.getGenMap();
+                ValueOuterClass.GenMap.Builder builder = null;
+                for (int i = 0; i < map.getEntriesCount(); i++) {
+                    ValueOuterClass.GenMap.Entry entry = map.getEntries(i);
+                    ValueOuterClass.Value key = intern(entry.getKey());
+                    ValueOuterClass.Value entryValue = intern(entry.getValue());
+                    if (key != entry.getKey() || entryValue != entry.getValue()) {
+                        if (builder == null) {
+                            builder = map.toBuilder();
+                        }
+                        builder.getEntriesBuilder(i).setKey(key).setValue(entryValue);
+                    }
+                }
+                return builder == null ? value : value.toBuilder().setGenMap(builder).build();
+            }
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.ImplicitContextKeyed;
+
+/**
+ * How urgent a piece of ledger or PQS work is, carried in the OpenTelemetry {@link Context}.
+ * <p>
+ * Work runs as {@link #INTERACTIVE} unless a caller opts out, e.g. with
+ * {@code try (Scope ignored = PriorityClass.BATCH.makeCurrent()) { ... }}. When a dependency is at its
+ * concurrency limit, waiting work is admitted by weighted round robin across classes ({@link #weight}), and
+ * lower classes may only use part of the limit ({@link #share}), which keeps headroom for interactive requests.
+ */
+public enum PriorityClass implements ImplicitContextKeyed {
+    INTERACTIVE(8, 1.0),
+    BATCH(3, 0.75),
+    MAINTENANCE(1, 0.5);
+
+    private static final ContextKey<PriorityClass> KEY = ContextKey.named("backend-priority-class");
+
+    final int weight;
+    final double share;
+
+    PriorityClass(int weight, double share) {
+        this.weight = weight;
+        this.share = share;
+    }
+
+    public static PriorityClass current() {
+        PriorityClass priority = Context.current().get(KEY);
+        return priority != null ? priority : INTERACTIVE;
+    }
+
+    @Override
+    public Context storeInContext(Context context) {
+        return context.with(KEY, this);
+    }
+}
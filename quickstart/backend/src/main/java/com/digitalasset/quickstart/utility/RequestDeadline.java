@@ -0,0 +1,102 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.ImplicitContextKeyed;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * The point in time by which the HTTP request being served must be answered, carried in the OpenTelemetry
+ * {@link Context} and set by {@link RequestDeadlineFilter}.
+ * <p>
+ * Downstream calls made within the request's context derive their own timeouts from it: gRPC deadlines on ledger
+ * calls, statement timeouts on PQS queries and request timeouts on scan proxy calls. When the client goes away or
+ * the deadline passes, the request is {@link #cancel() cancelled}, which cancels every future registered with
+ * {@link #cancelOnAbort}, so in-flight downstream work is abandoned rather than completed for nobody.
+ */
+public final class RequestDeadline implements ImplicitContextKeyed {
+
+    private static final ContextKey<RequestDeadline> KEY = ContextKey.named("backend-request-deadline");
+    // marks work detached from the request it was started by
+    private static final RequestDeadline NONE = new RequestDeadline(Duration.ZERO);
+
+    private final long deadlineNanos;
+    // guarded by this; null once cancelled
+    private List<CompletableFuture<?>> registered = new ArrayList<>();
+
+    public RequestDeadline(Duration timeout) {
+        this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+    }
+
+    public static Optional<RequestDeadline> current() {
+        RequestDeadline deadline = Context.current().get(KEY);
+        return deadline == null || deadline == NONE ? Optional.empty() : Optional.of(deadline);
+    }
+
+    /**
+     * Runs {@code work} outside of any request deadline, for work shared by several requests, such as a cache
+     * load other requests may be waiting for, which must not be cut short by whichever request started it.
+     */
+    public static <T> T detached(Supplier<T> work) {
+        return Context.current().with(KEY, NONE).wrapSupplier(work).get();
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Cancels {@code future} if the request is aborted before it completes. Futures of requests that were
+     * already aborted are cancelled right away.
+     */
+    public <T> CompletableFuture<T> cancelOnAbort(CompletableFuture<T> future) {
+        boolean cancelled;
+        synchronized (this) {
+            cancelled = registered == null;
+            if (!cancelled && !future.isDone()) {
+                registered.add(future);
+            }
+        }
+        if (cancelled) {
+            future.cancel(true);
+        } else {
+            future.whenComplete((result, ex) -> unregister(future));
+        }
+        return future;
+    }
+
+    public void cancel() {
+        List<CompletableFuture<?>> toCancel;
+        synchronized (this) {
+            toCancel = registered;
+            registered = null;
+        }
+        if (toCancel != null) {
+            toCancel.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private synchronized void unregister(CompletableFuture<?> future) {
+        if (registered != null) {
+            registered.remove(future);
+        }
+    }
+
+    @Override
+    public Context storeInContext(Context context) {
+        return context.with(KEY, this);
+    }
+}
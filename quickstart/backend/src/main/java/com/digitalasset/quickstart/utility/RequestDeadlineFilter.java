@@ -0,0 +1,127 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import com.digitalasset.quickstart.config.RequestDeadlineConfig;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives every HTTP request a {@link RequestDeadline} and cancels the request's downstream work when the deadline
+ * passes or the async request ends in an error or timeout (e.g. because the client disconnected).
+ * <p>
+ * The timeout is the one the client asks for in {@code X-Request-Timeout-Ms}, capped by
+ * {@code request-deadline.max-timeout-millis}; otherwise the first matching {@code request-deadline.endpoints}
+ * pattern, otherwise {@code request-deadline.default-timeout-millis}.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestDeadlineFilter.class);
+
+    private final RequestDeadlineConfig config;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ScheduledExecutorService expiryScheduler;
+
+    public RequestDeadlineFilter(RequestDeadlineConfig config) {
+        this.config = config;
+        this.expiryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!config.isEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        Duration timeout = timeoutFor(request);
+        RequestDeadline deadline = new RequestDeadline(timeout);
+        ScheduledFuture<?> expiry = expiryScheduler.schedule(() -> {
+            LoggingSpanHelper.logDebug(logger, "Request deadline passed, cancelling downstream work",
+                    Map.of("path", request.getRequestURI(), "timeoutMs", timeout.toMillis()));
+            deadline.cancel();
+        }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        try (Scope ignored = deadline.makeCurrent()) {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        expiry.cancel(false);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        expiry.cancel(false);
+                        deadline.cancel();
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        expiry.cancel(false);
+                        deadline.cancel();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                        // not re-registered for nested async cycles
+                    }
+                });
+            } else {
+                expiry.cancel(false);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        expiryScheduler.shutdownNow();
+    }
+
+    private Duration timeoutFor(HttpServletRequest request) {
+        String requested = request.getHeader(TIMEOUT_HEADER);
+        if (requested != null) {
+            try {
+                return Duration.ofMillis(Math.min(Math.max(1, Long.parseLong(requested.trim())), config.getMaxTimeoutMillis()));
+            } catch (NumberFormatException e) {
+                LoggingSpanHelper.logDebug(logger, "Ignoring malformed request timeout header", Map.of("value", requested));
+            }
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Map.Entry<String, Long> endpoint : config.getEndpoints().entrySet()) {
+            if (pathMatcher.match(endpoint.getKey(), path)) {
+                return Duration.ofMillis(endpoint.getValue());
+            }
+        }
+        return Duration.ofMillis(config.getDefaultTimeoutMillis());
+    }
+}
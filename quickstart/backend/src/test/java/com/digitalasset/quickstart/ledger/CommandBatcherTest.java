@@ -0,0 +1,150 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.CommandsOuterClass;
+import com.daml.ledger.api.v2.TransactionOuterClass;
+import io.grpc.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandBatcherTest {
+
+    private static final String PARTY = "alice::1220";
+
+    private final List<Submission> submissions = new CopyOnWriteArrayList<>();
+    private final CommandBatcher batcher = new CommandBatcher(this::record, 60_000, 2);
+
+    @AfterEach
+    void shutdown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void splitsBatchResultByRootEvent() throws Exception {
+        CompletableFuture<CommandResult> first = batcher.submit(PARTY, exercise("c1"), null);
+        CompletableFuture<CommandResult> second = batcher.submit(PARTY, exercise("c2"), null);
+
+        assertEquals(1, submissions.size());
+        Submission batch = submissions.get(0);
+        assertEquals(2, batch.commands.size());
+        assertTrue(batch.commandId.startsWith("batch-"));
+
+        batch.result.complete(tree("#1:0", "#1:1"));
+        assertEquals("#1:0", first.get().rootEventId);
+        assertEquals("#1:1", second.get().rootEventId);
+    }
+
+    @Test
+    void failsAllCommandsOnAmbiguousError() {
+        CompletableFuture<CommandResult> first = batcher.submit(PARTY, exercise("c1"), null);
+        CompletableFuture<CommandResult> second = batcher.submit(PARTY, exercise("c2"), null);
+
+        submissions.get(0).result.completeExceptionally(Status.DEADLINE_EXCEEDED.asRuntimeException());
+
+        assertEquals(1, submissions.size(), "an ambiguous failure must not be resubmitted");
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+    }
+
+    @Test
+    void failsAllCommandsOnUnexpectedRootEvents() {
+        CompletableFuture<CommandResult> first = batcher.submit(PARTY, exercise("c1"), null);
+        CompletableFuture<CommandResult> second = batcher.submit(PARTY, exercise("c2"), null);
+
+        submissions.get(0).result.complete(tree("#1:0"));
+
+        assertEquals(1, submissions.size(), "a batch that may have committed must not be resubmitted");
+        ExecutionException failure = assertThrows(ExecutionException.class, first::get);
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertTrue(second.isCompletedExceptionally());
+    }
+
+    @Test
+    void fallsBackToSingleSubmissionsOnRejection() throws Exception {
+        CompletableFuture<CommandResult> first = batcher.submit(PARTY, exercise("c1"), null);
+        CompletableFuture<CommandResult> second = batcher.submit(PARTY, exercise("c2"), null);
+
+        submissions.get(0).result.completeExceptionally(Status.INVALID_ARGUMENT.asRuntimeException());
+
+        assertEquals(3, submissions.size());
+        assertEquals(List.of(exercise("c1")), submissions.get(1).commands);
+        assertEquals(List.of(exercise("c2")), submissions.get(2).commands);
+        assertTrue(submissions.get(1).commandId.startsWith("batched-"));
+        submissions.get(1).result.complete(tree("#2:0"));
+        submissions.get(2).result.completeExceptionally(Status.INVALID_ARGUMENT.asRuntimeException());
+
+        assertEquals("#2:0", first.get().rootEventId);
+        assertTrue(second.isCompletedExceptionally());
+    }
+
+    @Test
+    void submitsCommandsWithACallerCommandIdOnTheirOwn() {
+        batcher.submit(PARTY, exercise("c1"), null);
+        CompletableFuture<CommandResult> own = batcher.submit(PARTY, exercise("c2"), "cmd-2");
+
+        assertEquals(1, submissions.size(), "the open batch keeps waiting for its window");
+        assertEquals("cmd-2", submissions.get(0).commandId, "the ledger deduplicates retries under the caller's id");
+        assertEquals(List.of(exercise("c2")), submissions.get(0).commands);
+        assertFalse(own.isDone());
+    }
+
+    @Test
+    void neverBatchesCommandsOnTheSameContract() {
+        CompletableFuture<CommandResult> first = batcher.submit(PARTY, exercise("c1"), null);
+        batcher.submit(PARTY, exercise("c1"), null);
+
+        assertEquals(1, submissions.size(), "the open batch is flushed before the conflicting command");
+        assertEquals(List.of(exercise("c1")), submissions.get(0).commands);
+
+        batcher.submit(PARTY, exercise("c2"), null);
+        assertEquals(2, submissions.size());
+        assertEquals(List.of(exercise("c1"), exercise("c2")), submissions.get(1).commands);
+        assertFalse(first.isDone());
+    }
+
+    private CompletableFuture<TransactionOuterClass.TransactionTree> record(
+            String party,
+            List<CommandsOuterClass.Command> commands,
+            String commandId
+    ) {
+        Submission submission = new Submission(commands, commandId);
+        submissions.add(submission);
+        return submission.result;
+    }
+
+    private static CommandsOuterClass.Command exercise(String contractId) {
+        CommandsOuterClass.Command.Builder command = CommandsOuterClass.Command.newBuilder();
+        command.getExerciseBuilder().setContractId(contractId).setChoice("Archive");
+        return command.build();
+    }
+
+    private static TransactionOuterClass.TransactionTree tree(String... rootEventIds) {
+        return TransactionOuterClass.TransactionTree.newBuilder()
+                .addAllRootEventIds(List.of(rootEventIds))
+                .build();
+    }
+
+    private static final class Submission {
+        private final List<CommandsOuterClass.Command> commands;
+        private final String commandId;
+        private final CompletableFuture<TransactionOuterClass.TransactionTree> result = new CompletableFuture<>();
+
+        private Submission(List<CommandsOuterClass.Command> commands, String commandId) {
+            this.commands = commands;
+            this.commandId = commandId;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.EventOuterClass;
+import com.daml.ledger.api.v2.TransactionOuterClass;
+import com.daml.ledger.api.v2.ValueOuterClass;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContractSequencerTest {
+
+    private static final ValueOuterClass.Identifier TEMPLATE = ValueOuterClass.Identifier.newBuilder()
+            .setPackageId("pkg")
+            .setModuleName("Licensing.AppInstall")
+            .setEntityName("AppInstall")
+            .build();
+
+    private final ContractSequencer sequencer = new ContractSequencer();
+
+    @Test
+    void runsCommandsOnTheSameContractOneAfterTheOther() {
+        CompletableFuture<CommandResult> first = new CompletableFuture<>();
+        List<String> started = new CopyOnWriteArrayList<>();
+
+        sequencer.sequence("c1", id -> {
+            started.add("first");
+            return first;
+        });
+        CompletableFuture<CommandResult> second = sequencer.sequence("c1", id -> {
+            started.add("second");
+            return CompletableFuture.completedFuture(nonConsuming());
+        });
+
+        assertEquals(List.of("first"), started);
+        first.complete(nonConsuming());
+        assertEquals(List.of("first", "second"), started);
+        assertTrue(second.isDone());
+    }
+
+    @Test
+    void runsTheNextCommandAgainstTheRecreatedContract() {
+        CompletableFuture<CommandResult> first = new CompletableFuture<>();
+        List<String> targets = new CopyOnWriteArrayList<>();
+
+        sequencer.sequence("c1", id -> first);
+        sequencer.sequence("c1", id -> {
+            targets.add(id);
+            return CompletableFuture.completedFuture(nonConsuming());
+        });
+        first.complete(recreated("c2"));
+
+        assertEquals(List.of("c2"), targets);
+    }
+
+    @Test
+    void aSubmissionThatThrowsDoesNotBlockTheLane() {
+        CompletableFuture<CommandResult> failed = sequencer.sequence("c1", id -> {
+            throw new IllegalStateException("encoding failed");
+        });
+        CompletableFuture<CommandResult> next = sequencer.sequence("c1",
+                id -> CompletableFuture.completedFuture(nonConsuming()));
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertTrue(next.isDone());
+        assertFalse(next.isCompletedExceptionally());
+    }
+
+    @Test
+    void neverRunsCommandsOnOneContractConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        int commands = 2_000;
+        CountDownLatch done = new CountDownLatch(commands);
+        try {
+            for (int i = 0; i < commands; i++) {
+                executor.execute(() -> sequencer.sequence("c1", id -> CompletableFuture.supplyAsync(() -> {
+                    if (running.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    Thread.yield();
+                    running.decrementAndGet();
+                    return nonConsuming();
+                }, executor)).whenComplete((result, ex) -> done.countDown()));
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, overlaps.get());
+    }
+
+    private static CommandResult nonConsuming() {
+        return new CommandResult(TransactionOuterClass.TransactionTree.getDefaultInstance(), null);
+    }
+
+    private static CommandResult recreated(String successor) {
+        TransactionOuterClass.TreeEvent root = TransactionOuterClass.TreeEvent.newBuilder()
+                .setExercised(EventOuterClass.ExercisedEvent.newBuilder()
+                        .setTemplateId(TEMPLATE)
+                        .setConsuming(true)
+                        .addChildEventIds("#1:1"))
+                .build();
+        TransactionOuterClass.TreeEvent created = TransactionOuterClass.TreeEvent.newBuilder()
+                .setCreated(EventOuterClass.CreatedEvent.newBuilder()
+                        .setTemplateId(TEMPLATE)
+                        .setContractId(successor))
+                .build();
+        TransactionOuterClass.TransactionTree tree = TransactionOuterClass.TransactionTree.newBuilder()
+                .addRootEventIds("#1:0")
+                .putEventsById("#1:0", root)
+                .putEventsById("#1:1", created)
+                .build();
+        return new CommandResult(tree, "#1:0");
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.daml.ledger.api.v2.CommandServiceOuterClass;
+import com.daml.ledger.api.v2.EventOuterClass;
+import com.daml.ledger.api.v2.TransactionOuterClass;
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.quickstart.config.LedgerConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeanExerciseTest {
+
+    private static final String PROVIDER = "app_provider_quickstart-1::1220" + "a".repeat(64);
+    private static final String USER = "app_user_quickstart-1::1220" + "b".repeat(64);
+    private static final String LICENSE_ID = "00" + "c".repeat(136);
+
+    /**
+     * The response of a {@code License_Expire}, the smallest of the choices moved to the lean path: the tree path
+     * transfers the exercised event with its argument and witnesses, the lean path only the update id and offset.
+     */
+    @Test
+    void leanResponseOfAnExpireIsAFractionOfTheTreeResponse() {
+        CommandServiceOuterClass.SubmitAndWaitForTransactionTreeResponse tree =
+                CommandServiceOuterClass.SubmitAndWaitForTransactionTreeResponse.newBuilder()
+                        .setTransaction(expireTree())
+                        .build();
+        CommandServiceOuterClass.SubmitAndWaitResponse lean = CommandServiceOuterClass.SubmitAndWaitResponse.newBuilder()
+                .setUpdateId("1220" + "d".repeat(64))
+                .setCompletionOffset(1_000_000)
+                .build();
+
+        assertTrue(lean.getSerializedSize() * 4 < tree.getSerializedSize(),
+                "lean " + lean.getSerializedSize() + " bytes, tree " + tree.getSerializedSize() + " bytes");
+    }
+
+    @Test
+    void archivedContractIsHiddenWithoutATree() {
+        WriteThroughContractCache cache = new WriteThroughContractCache(new LedgerConfig(), null, null);
+        assertFalse(cache.isArchived(LICENSE_ID));
+
+        cache.archive(LICENSE_ID);
+
+        assertTrue(cache.isArchived(LICENSE_ID));
+    }
+
+    static TransactionOuterClass.TransactionTree expireTree() {
+        ValueOuterClass.Value meta = ValueOuterClass.Value.newBuilder()
+                .setRecord(ValueOuterClass.Record.newBuilder()
+                        .addFields(ValueOuterClass.RecordField.newBuilder()
+                                .setLabel("reason")
+                                .setValue(ValueOuterClass.Value.newBuilder().setText("expired"))))
+                .build();
+        ValueOuterClass.Value argument = ValueOuterClass.Value.newBuilder()
+                .setRecord(ValueOuterClass.Record.newBuilder()
+                        .addFields(ValueOuterClass.RecordField.newBuilder()
+                                .setLabel("actor")
+                                .setValue(ValueOuterClass.Value.newBuilder().setParty(PROVIDER)))
+                        .addFields(ValueOuterClass.RecordField.newBuilder().setLabel("meta").setValue(meta)))
+                .build();
+        TransactionOuterClass.TreeEvent exercised = TransactionOuterClass.TreeEvent.newBuilder()
+                .setExercised(EventOuterClass.ExercisedEvent.newBuilder()
+                        .setEventId("#1220" + "d".repeat(64) + ":0")
+                        .setContractId(LICENSE_ID)
+                        .setTemplateId(ValueOuterClass.Identifier.newBuilder()
+                                .setPackageId("e".repeat(64))
+                                .setModuleName("Licensing.License")
+                                .setEntityName("License"))
+                        .setChoice("License_Expire")
+                        .setChoiceArgument(argument)
+                        .addActingParties(PROVIDER)
+                        .setConsuming(true)
+                        .addWitnessParties(PROVIDER)
+                        .addWitnessParties(USER)
+                        .setExerciseResult(ValueOuterClass.Value.newBuilder()
+                                .setUnit(com.google.protobuf.Empty.getDefaultInstance()))
+                        .setPackageName("quickstart-licensing"))
+                .build();
+        return TransactionOuterClass.TransactionTree.newBuilder()
+                .setUpdateId("1220" + "d".repeat(64))
+                .setCommandId("f".repeat(36))
+                .setWorkflowId("")
+                .setEffectiveAt(com.google.protobuf.Timestamp.newBuilder().setSeconds(1_760_000_000))
+                .setOffset(1_000_000)
+                .putEventsById("#1220" + "d".repeat(64) + ":0", exercised)
+                .addRootEventIds("#1220" + "d".repeat(64) + ":0")
+                .setDomainId("global-domain::1220" + "9".repeat(64))
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.ledger;
+
+import com.digitalasset.quickstart.config.ScanProxyConfig;
+import com.digitalasset.quickstart.validatorproxy.client.api.ScanProxyApi;
+import com.digitalasset.quickstart.validatorproxy.client.model.Contract;
+import com.digitalasset.quickstart.validatorproxy.client.model.ContractPayload;
+import com.digitalasset.quickstart.validatorproxy.client.model.ContractPayloadRound;
+import com.digitalasset.quickstart.validatorproxy.client.model.ContractWithState;
+import com.digitalasset.quickstart.validatorproxy.client.model.GetOpenAndIssuingMiningRoundsProxyResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ScanProxyTest {
+
+    private final StubScanProxyApi api = new StubScanProxyApi();
+    private final ScanProxy scanProxy = new ScanProxy(api, config());
+
+    @AfterEach
+    void shutdown() {
+        scanProxy.shutdown();
+    }
+
+    @Test
+    void malformedRoundNumberFailsTheRefreshAndTheNextOneRuns() throws Exception {
+        api.responses.add(() -> CompletableFuture.completedFuture(response(round("c1", "not-a-number"))));
+        api.responses.add(() -> CompletableFuture.completedFuture(response(round("c1", "7"))));
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> scanProxy.getOpenMiningRound(7).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(NumberFormatException.class, failure.getCause());
+
+        assertEquals("c1", scanProxy.getOpenMiningRound(7).get(5, TimeUnit.SECONDS).getContractId());
+    }
+
+    @Test
+    void missingPayloadFailsTheRefreshAndTheNextOneRuns() throws Exception {
+        api.responses.add(() -> CompletableFuture.completedFuture(response(new Contract().contractId("c1"))));
+        api.responses.add(() -> CompletableFuture.completedFuture(response(round("c1", "7"))));
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> scanProxy.getOpenMiningRound(7).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(NullPointerException.class, failure.getCause());
+
+        assertEquals("c1", scanProxy.getOpenMiningRound(7).get(5, TimeUnit.SECONDS).getContractId());
+    }
+
+    @Test
+    void callThatThrowsFailsTheRefreshAndTheNextOneRuns() throws Exception {
+        api.responses.add(() -> {
+            throw new IllegalStateException("client closed");
+        });
+        api.responses.add(() -> CompletableFuture.completedFuture(response(round("c1", "7"))));
+
+        assertThrows(ExecutionException.class, () -> scanProxy.getOpenMiningRound(7).get(5, TimeUnit.SECONDS));
+
+        assertEquals("c1", scanProxy.getOpenMiningRound(7).get(5, TimeUnit.SECONDS).getContractId());
+    }
+
+    private static ScanProxyConfig config() {
+        ScanProxyConfig config = new ScanProxyConfig();
+        // keep the background refresh out of the way of the calls made by the tests
+        config.setOpenRoundsMinRefreshMillis(60_000);
+        config.setWarmUp(false);
+        return config;
+    }
+
+    private static Contract round(String contractId, String number) {
+        return new Contract()
+                .contractId(contractId)
+                .payload(new ContractPayload().round(new ContractPayloadRound().number(number)));
+    }
+
+    private static GetOpenAndIssuingMiningRoundsProxyResponse response(Contract round) {
+        return new GetOpenAndIssuingMiningRoundsProxyResponse()
+                .addOpenMiningRoundsItem(new ContractWithState().contract(round));
+    }
+
+    private static final class StubScanProxyApi extends ScanProxyApi {
+        private final Deque<Supplier<CompletableFuture<GetOpenAndIssuingMiningRoundsProxyResponse>>> responses =
+                new ArrayDeque<>();
+
+        @Override
+        public synchronized CompletableFuture<GetOpenAndIssuingMiningRoundsProxyResponse> getOpenAndIssuingMiningRounds() {
+            return responses.remove().get();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final Duration QUEUE_TIME = Duration.ofSeconds(10);
+
+    @Test
+    void sharesFreedSlotsByPriorityWeight() {
+        AdaptiveConcurrencyLimiter limiter = fixedLimit(1, QUEUE_TIME);
+        CompletableFuture<Void> blocker = hold(limiter, PriorityClass.INTERACTIVE);
+        List<PriorityClass> admitted = new CopyOnWriteArrayList<>();
+        for (PriorityClass priority : PriorityClass.values()) {
+            keepQueued(limiter, priority, admitted);
+        }
+
+        blocker.complete(null);
+
+        // every lane always has a call waiting, so one round of 8 + 3 + 1 slots splits by weight
+        List<PriorityClass> round = admitted.subList(0, 12);
+        assertEquals(8, count(round, PriorityClass.INTERACTIVE));
+        assertEquals(3, count(round, PriorityClass.BATCH));
+        assertEquals(1, count(round, PriorityClass.MAINTENANCE));
+        assertEquals(PriorityClass.INTERACTIVE, round.get(0));
+    }
+
+    @Test
+    void admitsLowerPrioritiesOnlyWithinTheirShare() {
+        // shares of a limit of 4: interactive 4, batch 3, maintenance 2
+        AdaptiveConcurrencyLimiter limiter = fixedLimit(4, QUEUE_TIME);
+        hold(limiter, PriorityClass.MAINTENANCE);
+        hold(limiter, PriorityClass.MAINTENANCE);
+
+        AtomicBoolean maintenance = started(limiter, PriorityClass.MAINTENANCE);
+        AtomicBoolean firstBatch = started(limiter, PriorityClass.BATCH);
+        AtomicBoolean secondBatch = started(limiter, PriorityClass.BATCH);
+        AtomicBoolean interactive = started(limiter, PriorityClass.INTERACTIVE);
+
+        assertFalse(maintenance.get());
+        assertTrue(firstBatch.get());
+        assertFalse(secondBatch.get());
+        assertTrue(interactive.get());
+    }
+
+    @Test
+    void rejectsCallsBeyondTheQueueBoundOfTheirPriority() {
+        AdaptiveConcurrencyLimiter limiter = fixedLimit(2, QUEUE_TIME);
+        hold(limiter, PriorityClass.INTERACTIVE);
+        hold(limiter, PriorityClass.INTERACTIVE);
+        CompletableFuture<Void> firstQueued = hold(limiter, PriorityClass.INTERACTIVE);
+        CompletableFuture<Void> secondQueued = hold(limiter, PriorityClass.INTERACTIVE);
+
+        CompletableFuture<Void> rejected = hold(limiter, PriorityClass.INTERACTIVE);
+        CompletableFuture<Void> otherLane = hold(limiter, PriorityClass.BATCH);
+
+        assertFalse(firstQueued.isDone());
+        assertFalse(secondQueued.isDone());
+        assertCause(ConcurrencyLimitExceededException.class, rejected);
+        assertFalse(otherLane.isDone());
+    }
+
+    @Test
+    void rejectsCallsThatWaitTooLong() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = fixedLimit(1, Duration.ofMillis(50));
+        CompletableFuture<Void> blocker = hold(limiter, PriorityClass.INTERACTIVE);
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Void> queued = limiter.execute(PriorityClass.INTERACTIVE, () -> {
+            ran.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ConcurrencyLimitExceededException.class, failure.getCause());
+
+        blocker.complete(null);
+        assertFalse(ran.get());
+        // the timed out call did not take the freed slot
+        assertTrue(started(limiter, PriorityClass.INTERACTIVE).get());
+    }
+
+    @Test
+    void withdrawsCancelledCallsFromTheQueue() {
+        AdaptiveConcurrencyLimiter limiter = fixedLimit(1, QUEUE_TIME);
+        CompletableFuture<Void> blocker = hold(limiter, PriorityClass.INTERACTIVE);
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        CompletableFuture<Void> cancelled = limiter.execute(PriorityClass.INTERACTIVE, () -> {
+            cancelledRan.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        cancelled.cancel(true);
+        // the queue holds one call at a limit of 1, so this one is only accepted if the cancelled call left it
+        AtomicBoolean next = started(limiter, PriorityClass.INTERACTIVE);
+        blocker.complete(null);
+
+        assertFalse(cancelledRan.get());
+        assertTrue(next.get());
+    }
+
+    private static AdaptiveConcurrencyLimiter fixedLimit(int limit, Duration maxQueueTime) {
+        return new AdaptiveConcurrencyLimiter("test", limit, limit, limit, maxQueueTime, ex -> false);
+    }
+
+    /**
+     * Starts a call at {@code priority} that holds its slot until the returned future is completed.
+     */
+    private static CompletableFuture<Void> hold(AdaptiveConcurrencyLimiter limiter, PriorityClass priority) {
+        CompletableFuture<Void> held = new CompletableFuture<>();
+        limiter.execute(priority, () -> held).whenComplete((result, ex) -> {
+            if (ex != null) {
+                held.completeExceptionally(ex);
+            }
+        });
+        return held;
+    }
+
+    private static AtomicBoolean started(AdaptiveConcurrencyLimiter limiter, PriorityClass priority) {
+        AtomicBoolean started = new AtomicBoolean();
+        limiter.execute(priority, () -> {
+            started.set(true);
+            return new CompletableFuture<Void>();
+        });
+        return started;
+    }
+
+    private static void keepQueued(AdaptiveConcurrencyLimiter limiter, PriorityClass priority, List<PriorityClass> admitted) {
+        limiter.execute(priority, () -> {
+            admitted.add(priority);
+            if (admitted.size() < 12) {
+                keepQueued(limiter, priority, admitted);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private static long count(List<PriorityClass> admitted, PriorityClass priority) {
+        return admitted.stream().filter(priority::equals).count();
+    }
+
+    private static void assertCause(Class<? extends Throwable> type, CompletableFuture<?> future) {
+        assertTrue(future.isCompletedExceptionally());
+        ExecutionException failure = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(type, failure.getCause());
+    }
+}
@@ -0,0 +1,84 @@
+// Copyright (c) 2025, Digital Asset (Switzerland) GmbH and/or its affiliates. All rights reserved.
+// SPDX-License-Identifier: 0BSD
+
+package com.digitalasset.quickstart.utility;
+
+import com.daml.ledger.api.v2.ValueOuterClass;
+import com.digitalasset.quickstart.config.LedgerConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PartyInternerTest {
+
+    private static final String PROVIDER = "app_provider::1220" + "a".repeat(64);
+
+    @Test
+    void sharesPartyStringsAtAnyDepth() throws Exception {
+        PartyInterner interner = new PartyInterner(new LedgerConfig());
+        ValueOuterClass.Value first = interner.intern(parse(payload()));
+        ValueOuterClass.Value second = interner.intern(parse(payload()));
+
+        assertEquals(payload(), second);
+        assertSame(provider(first), provider(second));
+        assertSame(provider(first), optionalParty(second));
+        assertSame(provider(first), listedParty(second));
+    }
+
+    @Test
+    void returnsValuesWithoutUninternedPartiesUnchanged() throws Exception {
+        PartyInterner interner = new PartyInterner(new LedgerConfig());
+        ValueOuterClass.Value text = ValueOuterClass.Value.newBuilder().setText("hello").build();
+        ValueOuterClass.Value interned = interner.intern(parse(payload()));
+
+        assertSame(text, interner.intern(text));
+        assertSame(interned, interner.intern(interned));
+    }
+
+    @Test
+    void passesUnseenPartiesThroughOnceFull() {
+        LedgerConfig config = new LedgerConfig();
+        config.setPartyInternMaxEntries(1);
+        PartyInterner interner = new PartyInterner(config);
+        interner.intern(PROVIDER);
+
+        String other = new String("app_user::1220" + "b".repeat(64));
+        assertSame(other, interner.intern(other));
+        assertNotSame(other, interner.intern(new String(other)));
+    }
+
+    private static ValueOuterClass.Value payload() {
+        ValueOuterClass.Value party = ValueOuterClass.Value.newBuilder().setParty(PROVIDER).build();
+        return ValueOuterClass.Value.newBuilder()
+                .setRecord(ValueOuterClass.Record.newBuilder()
+                        .addFields(ValueOuterClass.RecordField.newBuilder().setLabel("provider").setValue(party))
+                        .addFields(ValueOuterClass.RecordField.newBuilder().setLabel("count")
+                                .setValue(ValueOuterClass.Value.newBuilder().setInt64(3)))
+                        .addFields(ValueOuterClass.RecordField.newBuilder().setLabel("approver")
+                                .setValue(ValueOuterClass.Value.newBuilder()
+                                        .setOptional(ValueOuterClass.Optional.newBuilder().setValue(party))))
+                        .addFields(ValueOuterClass.RecordField.newBuilder().setLabel("observers")
+                                .setValue(ValueOuterClass.Value.newBuilder()
+                                        .setList(ValueOuterClass.List.newBuilder().addElements(party)))))
+                .build();
+    }
+
+    // parsing gives every party its own string, as on the wire
+    private static ValueOuterClass.Value parse(ValueOuterClass.Value value) throws Exception {
+        return ValueOuterClass.Value.parseFrom(value.toByteArray());
+    }
+
+    private static String provider(ValueOuterClass.Value payload) {
+        return payload.getRecord().getFields(0).getValue().getParty();
+    }
+
+    private static String optionalParty(ValueOuterClass.Value payload) {
+        return payload.getRecord().getFields(2).getValue().getOptional().getValue().getParty();
+    }
+
+    private static String listedParty(ValueOuterClass.Value payload) {
+        return payload.getRecord().getFields(3).getValue().getList().getElements(0).getParty();
+    }
+}
@@ -19,6 +19,12 @@ object Deps {
         val netty get() = "io.grpc:grpc-netty:$version"
     }
 
+    object netty {
+        // Must match the Netty version grpc-netty is built against
+        val version get() = "4.1.110.Final"
+        val epoll get() = "io.netty:netty-transport-native-epoll:$version"
+    }
+
     object transcode {
         val version get() = "0.0.1-main.20250207.69.405.v29f4d2c-SNAPSHOT"
         val plugin get() = "com.daml.codegen-java-daml3_2:com.daml.codegen-java-daml3_2.gradle.plugin:$version"